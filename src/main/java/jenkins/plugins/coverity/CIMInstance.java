@@ -22,10 +22,13 @@ import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 
+import javax.xml.transform.Source;
+import javax.xml.ws.Dispatch;
 import javax.xml.ws.soap.SOAPFaultException;
 
 import org.apache.commons.lang.StringUtils;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 
 import com.coverity.ws.v9.ConfigurationService;
 import com.coverity.ws.v9.ConfigurationServiceService;
@@ -50,6 +53,10 @@ import com.coverity.ws.v9.UserDataObj;
 import com.google.common.collect.ImmutableList;
 
 import hudson.util.FormValidation;
+import jenkins.plugins.coverity.ws.MetadataLookups;
+import jenkins.plugins.coverity.ws.WebServiceExecutors;
+import jenkins.plugins.coverity.ws.CoalescingWebServices;
+import jenkins.plugins.coverity.ws.ResilientWebServices;
 import jenkins.plugins.coverity.ws.WebServiceFactory;
 
 /**
@@ -63,6 +70,11 @@ public class CIMInstance {
      */
     public static final String STREAM_NAME_IGNORE_PATTERN = "__internal_.*";
 
+    /**
+     * Number of defect pages requested concurrently when no value has been configured
+     */
+    public static final int DEFAULT_DEFECT_PAGE_CONCURRENCY = 4;
+
     /**
      * The id for this instance, used as a key in CoverityPublisher
      */
@@ -98,6 +110,21 @@ public class CIMInstance {
      */
     private final boolean useSSL;
 
+    /**
+     * Maximum number of defect pages requested concurrently from this instance
+     */
+    private int defectPageConcurrency;
+
+    /**
+     * Ask Coverity Connect to gzip web service responses
+     */
+    private boolean useCompression;
+
+    /**
+     * Maximum number of web service requests per second in each traffic lane, zero or less for no limit
+     */
+    private double maxRequestsPerSecond;
+
     /**
      * cached webservice port for Configuration service
      */
@@ -142,18 +169,61 @@ public class CIMInstance {
         return dataPort;
     }
 
+    public int getDefectPageConcurrency() {
+        return defectPageConcurrency > 0 ? defectPageConcurrency : DEFAULT_DEFECT_PAGE_CONCURRENCY;
+    }
+
+    @DataBoundSetter
+    public void setDefectPageConcurrency(int defectPageConcurrency) {
+        this.defectPageConcurrency = defectPageConcurrency;
+    }
+
+    public boolean isUseCompression() {
+        return useCompression;
+    }
+
+    @DataBoundSetter
+    public void setUseCompression(boolean useCompression) {
+        this.useCompression = useCompression;
+    }
+
+    public double getMaxRequestsPerSecond() {
+        return maxRequestsPerSecond;
+    }
+
+    @DataBoundSetter
+    public void setMaxRequestsPerSecond(double maxRequestsPerSecond) {
+        this.maxRequestsPerSecond = maxRequestsPerSecond;
+    }
+
     /**
-     * Returns a Defect service client using v9 web services.
+     * Returns a Defect service client using v9 web services. Read operations are retried on connection failures.
      */
     public DefectService getDefectService() throws IOException {
-        return WebServiceFactory.getInstance().getDefectService(this);
+        return ResilientWebServices.wrap(DefectService.class, WebServiceFactory.getInstance().getDefectService(this), this);
     }
 
     /**
-     * Returns a Configuration service client using v9 web services.
+     * Returns a payload dispatch client for the v9 Defect service.
+     */
+    public Dispatch<Source> getDefectServiceDispatch() throws IOException {
+        return WebServiceFactory.getInstance().getDefectServiceDispatch(this);
+    }
+
+    /**
+     * Returns a Configuration service client using v9 web services. Read operations are retried on connection failures,
+     * and identical lookups made at the same time share one request.
      */
     public ConfigurationService getConfigurationService() throws IOException {
-        return WebServiceFactory.getInstance().getConfigurationService(this);
+        return CoalescingWebServices.wrap(ConfigurationService.class,
+            ResilientWebServices.wrap(ConfigurationService.class, WebServiceFactory.getInstance().getConfigurationService(this), this), this);
+    }
+
+    /**
+     * Returns the lookups of filter metadata of this instance, which run concurrently on the shared lookup pool.
+     */
+    public MetadataLookups getMetadataLookups() throws IOException {
+        return new MetadataLookups(getConfigurationService(), WebServiceExecutors.getExecutor());
     }
 
     public ProjectDataObj getProject(String projectId) throws IOException, CovRemoteServiceException_Exception {
@@ -365,15 +435,4 @@ public class CIMInstance {
 
         return canCommit && canViewIssues;
     }
-
-    @Override
-    public int hashCode() {
-        int result = name != null ? name.hashCode() : 0;
-        result = 31 * result + (host != null ? host.hashCode() : 0);
-        result = 31 * result + port;
-        result = 31 * result + dataPort;
-        result = 31 * result + (user != null ? user.hashCode() : 0);
-        result = 31 * result + (password != null ? password.hashCode() : 0);
-        return result;
-    }
 }
@@ -33,6 +33,7 @@ import hudson.util.FormValidation;
 import hudson.util.ListBoxModel;
 import jenkins.model.Jenkins;
 import jenkins.plugins.coverity.ws.CimCache;
+import jenkins.plugins.coverity.ws.CimMetadataCatalog;
 
 public class CIMStream extends AbstractDescribableImpl<CIMStream> {
     private static final Logger logger = Logger.getLogger(CIMStream.class.getName());
@@ -117,6 +118,11 @@ public class CIMStream extends AbstractDescribableImpl<CIMStream> {
     @Extension
     public static class DescriptorImpl extends Descriptor<CIMStream> {
 
+        /**
+         * Number of project or stream names put in a dropdown at a time, the rest is reached through the filter box
+         */
+        public static final int NAME_PAGE_SIZE = Integer.getInteger(CIMStream.class.getName() + ".namePageSize", 200);
+
         @Override
         public String getDisplayName() {
             return "";
@@ -159,6 +165,7 @@ public class CIMStream extends AbstractDescribableImpl<CIMStream> {
 
                 // initialize cache for instance
                 CimCache.getInstance().cacheCimInstance(cimInstance);
+                CimMetadataCatalog.getInstance().cacheCimInstance(cimInstance);
 
                 // return FormValidation.ok in order to suppress any success messages, these don't need to show automatically here
                 return checkResult.kind.equals(FormValidation.Kind.OK) ? FormValidation.ok() : checkResult;
@@ -173,9 +180,8 @@ public class CIMStream extends AbstractDescribableImpl<CIMStream> {
             if (!StringUtils.isEmpty(instance)) {
                 CIMInstance cimInstance = getInstance(instance);
                 if (cimInstance != null) {
-                    for(String projectFromCim : CimCache.getInstance().getProjects(cimInstance)) {
-                        projects.add(projectFromCim);
-                    }
+                    // only the first page, the rest is found by searching
+                    projects.addAll(CimCache.getInstance().getProjectIndex(cimInstance).search(null, 0, NAME_PAGE_SIZE).getItems());
                 }
             }
 
@@ -192,12 +198,8 @@ public class CIMStream extends AbstractDescribableImpl<CIMStream> {
                 return true;
 
             CIMInstance cimInstance = getInstance(instance);
-            if (cimInstance != null){
-                for (String projectName : CimCache.getInstance().getProjects(cimInstance)){
-                    if (projectName.equalsIgnoreCase(project)){
-                        return true;
-                    }
-                }
+            if (cimInstance != null && CimCache.getInstance().getProjectIndex(cimInstance).contains(project)){
+                return true;
             }
 
             // project not found for cim instance is invalid
@@ -211,9 +213,8 @@ public class CIMStream extends AbstractDescribableImpl<CIMStream> {
             if (!StringUtils.isEmpty(instance) && !StringUtils.isEmpty(project)) {
                 CIMInstance cimInstance = getInstance(instance);
                 if (cimInstance != null) {
-                    for (String streamFromCim : CimCache.getInstance().getStreams(cimInstance, project)) {
-                        streams.add(streamFromCim);
-                    }
+                    // only the first page, the rest is found by searching
+                    streams.addAll(CimCache.getInstance().getStreamIndex(cimInstance, project).search(null, 0, NAME_PAGE_SIZE).getItems());
                 }
             }
 
@@ -230,12 +231,9 @@ public class CIMStream extends AbstractDescribableImpl<CIMStream> {
                 return true;
 
             CIMInstance cimInstance = getInstance(instance);
-            if (cimInstance != null && !StringUtils.isEmpty(project)){
-                for (String streamFromCIM : CimCache.getInstance().getStreams(cimInstance, project)){
-                    if (streamFromCIM.equalsIgnoreCase(stream)){
-                        return true;
-                    }
-                }
+            if (cimInstance != null && !StringUtils.isEmpty(project)
+                    && CimCache.getInstance().getStreamIndex(cimInstance, project).contains(stream)){
+                return true;
             }
 
             // stream not found for the project is invalid
@@ -243,31 +241,11 @@ public class CIMStream extends AbstractDescribableImpl<CIMStream> {
         }
 
         public ListBoxModel doFillClassificationDefectFilterItems(@QueryParameter(value = "../cimInstance") String cimInstance) throws IOException, CovRemoteServiceException_Exception {
-            ListBoxModel result = new ListBoxModel();
-            CIMInstance instance = getInstance(cimInstance);
-            if(instance != null) {
-                com.coverity.ws.v9.AttributeDefinitionIdDataObj adido = new com.coverity.ws.v9.AttributeDefinitionIdDataObj();
-                adido.setName("Classification");
-                com.coverity.ws.v9.AttributeDefinitionDataObj addo = instance.getConfigurationService().getAttribute(adido);
-                for(com.coverity.ws.v9.AttributeValueDataObj classification : addo.getConfigurableValues()) {
-                    result.add(classification.getAttributeValueId().getName());
-                }
-            }
-            return result;
+            return fillAttributeValues(cimInstance, "Classification");
         }
 
         public ListBoxModel doFillActionDefectFilterItems(@QueryParameter(value = "../cimInstance") String cimInstance) throws IOException, CovRemoteServiceException_Exception {
-            ListBoxModel result = new ListBoxModel();
-            CIMInstance instance = getInstance(cimInstance);
-            if(instance != null) {
-                com.coverity.ws.v9.AttributeDefinitionIdDataObj adido = new com.coverity.ws.v9.AttributeDefinitionIdDataObj();
-                adido.setName("Action");
-                com.coverity.ws.v9.AttributeDefinitionDataObj addo = instance.getConfigurationService().getAttribute(adido);
-                for(com.coverity.ws.v9.AttributeValueDataObj classification : addo.getConfigurableValues()) {
-                    result.add(classification.getAttributeValueId().getName());
-                }
-            }
-            return result;
+            return fillAttributeValues(cimInstance, "Action");
         }
 
         public ListBoxModel doFillImpactDefectFilterItems(@QueryParameter(value = "../cimInstance") String cimInstance) throws IOException, CovRemoteServiceException_Exception {
@@ -279,17 +257,7 @@ public class CIMStream extends AbstractDescribableImpl<CIMStream> {
         }
 
         public ListBoxModel doFillSeveritiesDefectFilterItems(@QueryParameter(value = "../cimInstance") String cimInstance) throws IOException, CovRemoteServiceException_Exception {
-            ListBoxModel result = new ListBoxModel();
-            CIMInstance instance = getInstance(cimInstance);
-            if(instance != null) {
-                com.coverity.ws.v9.AttributeDefinitionIdDataObj adido = new com.coverity.ws.v9.AttributeDefinitionIdDataObj();
-                adido.setName("Severity");
-                com.coverity.ws.v9.AttributeDefinitionDataObj addo = instance.getConfigurationService().getAttribute(adido);
-                for(com.coverity.ws.v9.AttributeValueDataObj classification : addo.getConfigurableValues()) {
-                    result.add(classification.getAttributeValueId().getName());
-                }
-            }
-            return result;
+            return fillAttributeValues(cimInstance, "Severity");
         }
 
         public ListBoxModel doFillComponentDefectFilterItems(@QueryParameter(value = "../cimInstance") String cimInstance, @QueryParameter(value = "../stream") String streamId) throws IOException, CovRemoteServiceException_Exception {
@@ -297,21 +265,8 @@ public class CIMStream extends AbstractDescribableImpl<CIMStream> {
             CIMInstance instance = getInstance(cimInstance);
 
             if(instance != null) {
-                com.coverity.ws.v9.ComponentMapFilterSpecDataObj componentMapFilterSpec = new com.coverity.ws.v9.ComponentMapFilterSpecDataObj();
-
-                if (!StringUtils.isEmpty(streamId)) {
-                    StreamDataObj stream = instance.getStream(streamId);
-                    String componentMapId = stream.getComponentMapId().getName();
-
-                    componentMapFilterSpec.setNamePattern(componentMapId);
-                } else {
-                    componentMapFilterSpec.setNamePattern("*");
-                }
-
-                for(com.coverity.ws.v9.ComponentMapDataObj map : instance.getConfigurationService().getComponentMaps(componentMapFilterSpec)) {
-                    for(com.coverity.ws.v9.ComponentDataObj component : map.getComponents()) {
-                        result.add(component.getComponentId().getName());
-                    }
+                for(String component : CimMetadataCatalog.getInstance().getComponents(instance, streamId)) {
+                    result.add(component);
                 }
             }
             return result;
@@ -323,7 +278,7 @@ public class CIMStream extends AbstractDescribableImpl<CIMStream> {
             if(instance == null) return new ListBoxModel();
 
             // Retrieve all checkers for a specific cim instance.
-            List<String> checkers = instance.getCimInstanceCheckers();
+            List<String> checkers = CimMetadataCatalog.getInstance().getCheckerNames(instance);
 
             ListBoxModel result = new ListBoxModel();
             for (String checker : checkers) {
@@ -332,5 +287,16 @@ public class CIMStream extends AbstractDescribableImpl<CIMStream> {
 
             return result;
         }
+
+        private ListBoxModel fillAttributeValues(String cimInstance, String attribute) throws IOException, CovRemoteServiceException_Exception {
+            ListBoxModel result = new ListBoxModel();
+            CIMInstance instance = getInstance(cimInstance);
+            if(instance != null) {
+                for(String value : CimMetadataCatalog.getInstance().getAttributeValues(instance, attribute)) {
+                    result.add(value);
+                }
+            }
+            return result;
+        }
     }
 }
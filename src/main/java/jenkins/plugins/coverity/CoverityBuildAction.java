@@ -14,11 +14,19 @@ import com.coverity.ws.v9.CovRemoteServiceException_Exception;
 
 import hudson.model.AbstractBuild;
 import hudson.model.Action;
+import hudson.model.Computer;
+import hudson.model.TaskListener;
 import jenkins.model.Jenkins;
+import jenkins.plugins.coverity.ws.DefectFetcher;
 
+import java.io.File;
 import java.io.IOException;
+import java.lang.ref.SoftReference;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import org.apache.commons.lang.StringUtils;
 
@@ -28,6 +36,8 @@ import org.apache.commons.lang.StringUtils;
  * that build.
  */
 public class CoverityBuildAction implements Action {
+    private static final Logger logger = Logger.getLogger(CoverityBuildAction.class.getName());
+
     public static final String BUILD_ACTION_IDENTIFIER = "coverity_defects";
 
     // deprecated defectIds field
@@ -39,12 +49,82 @@ public class CoverityBuildAction implements Action {
     private final String cimInstance;
     private final List<CoverityDefect> defects;
 
+    /**
+     * Number of defects stored in the build's {@link DefectRecordFile}. Null for builds which keep their defects in
+     * the defects field.
+     */
+    private final Integer defectCount;
+
+    /**
+     * Id of the Coverity Connect snapshot the defects were read from, and a signature of the stream and defect filters
+     * used. Null for older builds, or if the latest snapshot of the stream could not be determined.
+     */
+    private final Long snapshotId;
+    private final String filterSignature;
+
+    /**
+     * Stream and defect filters of defects which were only counted during the build. The defects are fetched into the
+     * build's {@link DefectRecordFile} the first time they are displayed.
+     */
+    private final CIMStream deferredStream;
+
+    private transient SoftReference<List<CoverityDefect>> recordedDefects;
+
+    /**
+     * Background fetch of the deferred defects, null until the defects were first displayed
+     */
+    private transient Future<?> deferredFetch;
+
     public CoverityBuildAction(AbstractBuild build, String projectId, String streamId, String cimInstance, List<CoverityDefect> defects) {
         this.build = build;
         this.projectId = projectId;
         this.streamId = streamId;
         this.cimInstance = cimInstance;
         this.defects = defects;
+        this.defectCount = null;
+        this.snapshotId = null;
+        this.filterSignature = null;
+        this.deferredStream = null;
+    }
+
+    /**
+     * Creates an action for defects which have been written to the {@link DefectRecordFile} of the build. The defects
+     * are only read from disk when they are displayed.
+     */
+    public CoverityBuildAction(AbstractBuild build, String projectId, String streamId, String cimInstance, int defectCount) {
+        this(build, projectId, streamId, cimInstance, defectCount, null, null);
+    }
+
+    /**
+     * Creates an action for recorded defects which were read from the given snapshot, so that the next build is able to
+     * only fetch the defects which changed since this snapshot.
+     */
+    public CoverityBuildAction(AbstractBuild build, String projectId, String streamId, String cimInstance, int defectCount, Long snapshotId, String filterSignature) {
+        this.build = build;
+        this.projectId = projectId;
+        this.streamId = streamId;
+        this.cimInstance = cimInstance;
+        this.defects = null;
+        this.defectCount = defectCount;
+        this.snapshotId = snapshotId;
+        this.filterSignature = filterSignature;
+        this.deferredStream = null;
+    }
+
+    /**
+     * Creates an action for defects which were only counted during the build. The defects of the given snapshot (or the
+     * latest snapshot if null) are fetched when they are first displayed.
+     */
+    public CoverityBuildAction(AbstractBuild build, CIMStream cimStream, int defectCount, Long snapshotId) {
+        this.build = build;
+        this.projectId = cimStream.getProject();
+        this.streamId = cimStream.getStream();
+        this.cimInstance = cimStream.getInstance();
+        this.defects = null;
+        this.defectCount = defectCount;
+        this.snapshotId = snapshotId;
+        this.filterSignature = null;
+        this.deferredStream = cimStream;
     }
 
     /**
@@ -66,8 +146,94 @@ public class CoverityBuildAction implements Action {
                 covDefects.add(new CoverityDefect(defectId, "---", "View in Coverity Connect", StringUtils.EMPTY));
             }
             return covDefects;
-        }  else {
-            return defects != null ? defects : new ArrayList<CoverityDefect>();
+        }  else if (defects != null) {
+            return defects;
+        } else if (defectCount != null) {
+            return getRecordedDefects();
+        } else {
+            return new ArrayList<CoverityDefect>();
+        }
+    }
+
+    /**
+     * The number of defects that were captured for this build, without reading the defects recorded on disk.
+     */
+    public int getDefectCount() {
+        if (defectCount != null && (defectIds == null || defectIds.isEmpty())) {
+            return defectCount;
+        }
+        return getDefects().size();
+    }
+
+    /**
+     * The id of the snapshot the defects were read from, or null if it was not recorded.
+     */
+    public Long getSnapshotId() {
+        return snapshotId;
+    }
+
+    /**
+     * Signature of the stream and defect filters used to fetch the defects, or null if it was not recorded.
+     */
+    public String getFilterSignature() {
+        return filterSignature;
+    }
+
+    /**
+     * Whether the defects which were only counted during the build are being fetched from Coverity Connect. Until the
+     * fetch completes, no defects are returned.
+     */
+    public synchronized boolean isFetchingDefects() {
+        return deferredFetch != null && !deferredFetch.isDone();
+    }
+
+    private synchronized List<CoverityDefect> getRecordedDefects() {
+        List<CoverityDefect> result = recordedDefects != null ? recordedDefects.get() : null;
+        if (result == null) {
+            final DefectRecordFile recordFile = DefectRecordFile.forBuild(build);
+            if (!recordFile.exists() && deferredStream != null) {
+                // never fetch on the request thread, the page shows that the defects are being fetched
+                if (deferredFetch == null || deferredFetch.isDone()) {
+                    deferredFetch = Computer.threadPoolForRemoting.submit(new Runnable() {
+                        public void run() {
+                            try {
+                                fetchDeferredDefects(recordFile);
+                            } catch (IOException | CovRemoteServiceException_Exception | RuntimeException e) {
+                                logger.log(Level.WARNING, "Unable to fetch Coverity defects for stream " + streamId, e);
+                            }
+                        }
+                    });
+                }
+                return new ArrayList<>();
+            }
+            try {
+                result = recordFile.exists() ? recordFile.readAll() : new ArrayList<CoverityDefect>();
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Unable to read Coverity defects from " + recordFile.getFile(), e);
+                return new ArrayList<>();
+            }
+            recordedDefects = new SoftReference<>(result);
+        }
+        return result;
+    }
+
+    /**
+     * Fetches the defects which were only counted during the build into the given record file. The file is written
+     * under a temporary name first, so a failed fetch is retried the next time the defects are displayed.
+     */
+    private void fetchDeferredDefects(DefectRecordFile recordFile) throws IOException, CovRemoteServiceException_Exception {
+        CIMInstance instance = Jenkins.getInstance().getDescriptorByType(CoverityPublisher.DescriptorImpl.class).getInstance(cimInstance);
+        if (instance == null) {
+            logger.warning("Unable to fetch Coverity defects, instance " + cimInstance + " is no longer configured");
+            return;
+        }
+
+        DefectRecordFile partialFile = new DefectRecordFile(new File(recordFile.getFile().getPath() + ".tmp"));
+        new DefectFetcher(instance, deferredStream, TaskListener.NULL.getLogger())
+            .getDefectsForSnapshot(snapshotId != null ? String.valueOf(snapshotId) : DefectFetcher.LAST_SNAPSHOT, partialFile);
+
+        if (!partialFile.getFile().renameTo(recordFile.getFile())) {
+            throw new IOException("Unable to rename " + partialFile.getFile() + " to " + recordFile.getFile());
         }
     }
 
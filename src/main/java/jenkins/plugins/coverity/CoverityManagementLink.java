@@ -0,0 +1,172 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+
+import org.kohsuke.stapler.HttpResponse;
+import org.kohsuke.stapler.HttpResponses;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+import org.kohsuke.stapler.interceptor.RequirePOST;
+
+import hudson.Extension;
+import hudson.model.ManagementLink;
+import jenkins.model.Jenkins;
+import jenkins.plugins.coverity.ws.CircuitBreaker;
+import jenkins.plugins.coverity.ws.CoalescingWebServices;
+import jenkins.plugins.coverity.ws.RateLimiter;
+import jenkins.plugins.coverity.ws.ResilientWebServices;
+import jenkins.plugins.coverity.ws.WebServiceCallStatistics;
+import jenkins.plugins.coverity.ws.WebServiceMetrics;
+import jenkins.plugins.coverity.ws.WebServiceMetrics.OperationMetrics;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+/**
+ * Management page showing the web service call metrics of each Coverity Connect server, also available as JSON from
+ * {@code /coverity/metrics}. Only administrators can see the metrics.
+ */
+@Extension
+public class CoverityManagementLink extends ManagementLink {
+    public String getIconFileName() {
+        return "/plugin/coverity/icons/coverity-logo-400px.png";
+    }
+
+    public String getDisplayName() {
+        return "Coverity Connect";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Web service calls to Coverity Connect: latency, errors and payload sizes per operation";
+    }
+
+    public String getUrlName() {
+        return "coverity";
+    }
+
+    public Map<String, Map<String, OperationMetrics>> getMetrics() {
+        return WebServiceMetrics.getMetrics();
+    }
+
+    public Map<String, CircuitBreaker.State> getCircuitBreakerStates() {
+        return ResilientWebServices.getCircuitBreakerStates();
+    }
+
+    public CircuitBreaker.State getCircuitBreakerState(String server) {
+        CircuitBreaker.State state = getCircuitBreakerStates().get(server);
+        return state != null ? state : CircuitBreaker.State.CLOSED;
+    }
+
+    public Map<String, WebServiceCallStatistics> getCallStatistics() {
+        return ResilientWebServices.getStatistics();
+    }
+
+    /**
+     * Returns the rate limiter of the given server, or null if no request was made to it yet
+     */
+    public RateLimiter getRateLimiter(String server) {
+        return RateLimiter.getLimiters().get(server);
+    }
+
+    public RateLimiter.Lane[] getLanes() {
+        return RateLimiter.Lane.values();
+    }
+
+    /**
+     * Number of calls which shared an identical in-flight request instead of sending their own
+     */
+    public long getCoalescedCalls() {
+        return CoalescingWebServices.getCoalescedCalls();
+    }
+
+    /**
+     * Formats the latency bucket of the given percentile of calls for display
+     */
+    public String getLatencyPercentile(OperationMetrics metrics, int percentile) {
+        long latency = metrics.getLatencyPercentileMillis(percentile);
+        long[] buckets = WebServiceMetrics.LATENCY_BUCKETS_MILLIS;
+        return latency >= 0 ? "<= " + latency : "> " + buckets[buckets.length - 1];
+    }
+
+    public void doMetrics(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+
+        rsp.setContentType("application/json;charset=UTF-8");
+        JSONObject json = toJSON(getMetrics(), getCircuitBreakerStates(), getCallStatistics(), RateLimiter.getLimiters());
+        json.put("coalescedCalls", getCoalescedCalls());
+        rsp.getWriter().print(json.toString(2));
+    }
+
+    @RequirePOST
+    public HttpResponse doReset() {
+        Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+
+        WebServiceMetrics.reset();
+        return HttpResponses.redirectToDot();
+    }
+
+    static JSONObject toJSON(Map<String, Map<String, OperationMetrics>> metrics, Map<String, CircuitBreaker.State> circuitBreakerStates,
+                             Map<String, WebServiceCallStatistics> callStatistics, Map<String, RateLimiter> rateLimiters) {
+        JSONArray servers = new JSONArray();
+        for (Map.Entry<String, Map<String, OperationMetrics>> server : metrics.entrySet()) {
+            JSONArray operations = new JSONArray();
+            for (Map.Entry<String, OperationMetrics> operation : server.getValue().entrySet()) {
+                OperationMetrics operationMetrics = operation.getValue();
+                JSONObject json = new JSONObject();
+                json.put("operation", operation.getKey());
+                json.put("calls", operationMetrics.getCalls());
+                json.put("errors", operationMetrics.getErrors());
+                json.put("totalLatencyMillis", operationMetrics.getTotalLatencyMillis());
+                json.put("averageLatencyMillis", operationMetrics.getAverageLatencyMillis());
+                json.put("latencyHistogram", JSONArray.fromObject(operationMetrics.getLatencyHistogram()));
+                operations.add(json);
+            }
+
+            JSONObject json = new JSONObject();
+            json.put("server", server.getKey());
+            CircuitBreaker.State state = circuitBreakerStates.get(server.getKey());
+            if (state != null) {
+                json.put("circuitBreaker", state.name());
+            }
+            WebServiceCallStatistics statistics = callStatistics.get(server.getKey());
+            if (statistics != null) {
+                json.put("retries", statistics.getRetries());
+                json.put("rejected", statistics.getRejected());
+            }
+            RateLimiter rateLimiter = rateLimiters.get(server.getKey());
+            if (rateLimiter != null) {
+                JSONObject rateLimit = new JSONObject();
+                rateLimit.put("requestsPerSecond", rateLimiter.getRequestsPerSecond());
+                for (RateLimiter.Lane lane : RateLimiter.Lane.values()) {
+                    RateLimiter.LaneStatistics laneStatistics = rateLimiter.getStatistics(lane);
+                    JSONObject laneJson = new JSONObject();
+                    laneJson.put("requests", laneStatistics.getRequests());
+                    laneJson.put("delayedRequests", laneStatistics.getDelayedRequests());
+                    laneJson.put("totalWaitMillis", laneStatistics.getTotalWaitMillis());
+                    laneJson.put("maxWaitMillis", laneStatistics.getMaxWaitMillis());
+                    rateLimit.put(lane.name().toLowerCase(Locale.ENGLISH), laneJson);
+                }
+                json.put("rateLimit", rateLimit);
+            }
+            json.put("operations", operations);
+            servers.add(json);
+        }
+
+        JSONObject result = new JSONObject();
+        result.put("latencyBucketsMillis", JSONArray.fromObject(WebServiceMetrics.LATENCY_BUCKETS_MILLIS));
+        result.put("servers", servers);
+        return result;
+    }
+}
@@ -78,8 +78,9 @@ public class CoverityProjectAction implements Action {
                 final List<CoverityBuildAction> actions = build.getActions(CoverityBuildAction.class);
 
                 for(CoverityBuildAction action : actions) {
-                    if(action != null && action.getDefects() != null && action.getGraphDisplayName() != null) {
-                        data.add(action.getDefects().size(), action.getGraphDisplayName(), new ChartLabel(build));
+                    // only the recorded count, so rendering the graph never reads or fetches the defects themselves
+                    if(action != null && action.getGraphDisplayName() != null) {
+                        data.add(action.getDefectCount(), action.getGraphDisplayName(), new ChartLabel(build));
                     }
                 }
                 build = build.getPreviousBuild();
@@ -171,7 +172,7 @@ public class CoverityProjectAction implements Action {
             ChartLabel label = (ChartLabel) dataset.getColumnKey(column);
             int defects = 0;
             for(CoverityBuildAction a : label.build.getActions(CoverityBuildAction.class)) {
-                defects += a.getDefects().size();
+                defects += a.getDefectCount();
             }
             return label.build.getDisplayName() + " has " + defects + " total defects";
         }
@@ -28,11 +28,17 @@ import hudson.util.ListBoxModel;
 import jenkins.model.Jenkins;
 import jenkins.plugins.coverity.CoverityTool.CoverityToolHandler;
 import jenkins.plugins.coverity.ws.CimCache;
+import jenkins.plugins.coverity.ws.CimMetadataCatalog;
+import jenkins.plugins.coverity.ws.DefectReader;
+import jenkins.plugins.coverity.ws.NameIndex;
+import jenkins.plugins.coverity.ws.RateLimiter;
+import jenkins.plugins.coverity.ws.WebServiceFactory;
 import net.sf.json.JSON;
 import net.sf.json.JSONArray;
 import net.sf.json.JSONObject;
 import org.apache.commons.lang.StringUtils;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
@@ -49,6 +55,9 @@ import java.io.IOException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -99,6 +108,14 @@ public class CoverityPublisher extends Recorder {
      * Hide the chart to make page loads faster
      */
     private final boolean hideChart;
+    /**
+     * Should only the defects introduced or fixed since the previous build be fetched?
+     */
+    private boolean fetchDefectsIncrementally;
+    /**
+     * Should only the number of defects be fetched during the build? The defects are fetched when they are displayed.
+     */
+    private boolean countDefectsOnly;
 
     private final TaOptionBlock taOptionBlock;
 
@@ -224,6 +241,24 @@ public class CoverityPublisher extends Recorder {
         return hideChart;
     }
 
+    public boolean isFetchDefectsIncrementally() {
+        return fetchDefectsIncrementally;
+    }
+
+    @DataBoundSetter
+    public void setFetchDefectsIncrementally(boolean fetchDefectsIncrementally) {
+        this.fetchDefectsIncrementally = fetchDefectsIncrementally;
+    }
+
+    public boolean isCountDefectsOnly() {
+        return countDefectsOnly;
+    }
+
+    @DataBoundSetter
+    public void setCountDefectsOnly(boolean countDefectsOnly) {
+        this.countDefectsOnly = countDefectsOnly;
+    }
+
     public boolean isUnstable(){
         return unstable;
     }
@@ -267,15 +302,24 @@ public class CoverityPublisher extends Recorder {
             }
 
             CoverityToolHandler cth = new CoverityToolHandler(version);
-            cth.perform(build, launcher, listener, this);
-            
-            if(isUnstableBuild()){
-                build.setResult(Result.UNSTABLE);
-            }
+            boolean committed = cth.perform(build, launcher, listener, this);
 
             // Delete intermediate directory unless user checked to preserve the intermediate directory option.
             // Deletion of the intermediate directory will occurr regardless of the result of the build job.
-            deleteIntermediateDirectory(listener, build.getAction(CoverityTempDir.class));
+            // The defects are fetched from Coverity Connect at the same time, since neither depends on the other.
+            Future<?> deletion = startIntermediateDirectoryDeletion(listener, build.getAction(CoverityTempDir.class));
+            try {
+                if(committed && !isSkipFetchingDefects()) {
+                    DefectReader defectReader = new DefectReader(build, listener, this);
+                    defectReader.getLatestDefectsForBuild();
+                }
+            } finally {
+                waitForIntermediateDirectoryDeletion(deletion);
+            }
+
+            if(isUnstableBuild()){
+                build.setResult(Result.UNSTABLE);
+            }
 
             return true;
         } catch(com.coverity.ws.v9.CovRemoteServiceException_Exception e){
@@ -287,6 +331,34 @@ public class CoverityPublisher extends Recorder {
         }
     }
 
+    /**
+     * Deletes the intermediate directory on a background thread, see {@link #deleteIntermediateDirectory}
+     */
+    private Future<?> startIntermediateDirectoryDeletion(final BuildListener listener, final CoverityTempDir temp) {
+        if (temp == null) {
+            return null;
+        }
+        return Computer.threadPoolForRemoting.submit(new Runnable() {
+            public void run() {
+                deleteIntermediateDirectory(listener, temp);
+            }
+        });
+    }
+
+    private void waitForIntermediateDirectoryDeletion(Future<?> deletion) throws InterruptedException {
+        if (deletion == null) {
+            return;
+        }
+        try {
+            deletion.get();
+        } catch (InterruptedException e) {
+            deletion.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            logger.log(Level.WARNING, "Unable to delete the intermediate directory", e.getCause());
+        }
+    }
+
     public void deleteIntermediateDirectory(BuildListener listener, CoverityTempDir temp) {
         if (temp != null) {
             try{
@@ -319,6 +391,9 @@ public class CoverityPublisher extends Recorder {
         public DescriptorImpl() {
             super(CoverityPublisher.class);
             load();
+            if (instances != null) {
+                RateLimiter.configure(instances);
+            }
         }
 
         public CIMStream.DescriptorImpl getCIMStreamDescriptor() {
@@ -342,6 +417,14 @@ public class CoverityPublisher extends Recorder {
 
             home = Util.fixEmpty(home);
 
+            // release the web service ports of servers or credentials which are no longer configured
+            if (instances != null) {
+                WebServiceFactory.getInstance().retainAll(instances);
+                CimCache.getInstance().retainAll(instances);
+                CimMetadataCatalog.getInstance().retainAll(instances);
+                RateLimiter.configure(instances);
+            }
+
             save();
 
             return true;
@@ -475,7 +558,6 @@ public class CoverityPublisher extends Recorder {
             CoverityPublisher publisher = (CoverityPublisher) super.newInstance(req, formData);
 
             CIMStream cimStream = publisher.getCimStream();
-            CIMStream.DescriptorImpl cimStreamDescriptor = ((CIMStream.DescriptorImpl) cimStream.getDescriptor());
 
             String cimInstance = cimStream.getInstance();
 
@@ -483,10 +565,11 @@ public class CoverityPublisher extends Recorder {
                 if(cimStream.isValid()) {
                     DefectFilters defectFilters = cimStream.getDefectFilters();
                     if(defectFilters != null) {
-                        List<String> allCheckers = getInstance(cimStream.getInstance()).getCimInstanceCheckers();
-                        List<String> allComponents = toStrings(cimStreamDescriptor.doFillComponentDefectFilterItems(cimInstance, cimStream.getStream()));
-                        defectFilters.invertCheckers(allCheckers);
-                        defectFilters.invertComponents(allComponents);
+                        // served from the metadata catalog, only loaded from Coverity Connect the first time
+                        CimMetadataCatalog catalog = CimMetadataCatalog.getInstance();
+                        CIMInstance instance = getInstance(cimInstance);
+                        defectFilters.invertCheckers(catalog.getCheckerNames(instance));
+                        defectFilters.invertComponents(catalog.getComponents(instance, cimStream.getStream()));
                     }
                 }
             } catch (CovRemoteServiceException_Exception | WebServiceException e) {
@@ -560,16 +643,18 @@ public class CoverityPublisher extends Recorder {
                     } else {
                         //initialize 'new' defectFilters item with default values selected
 
-                        List<String> allCheckers = getInstance(cimStream.getInstance()).getCimInstanceCheckers();
+                        // served from the metadata catalog, only loaded from Coverity Connect the first time
+                        CimMetadataCatalog catalog = CimMetadataCatalog.getInstance();
+                        CIMInstance instance = getInstance(cimStream.getInstance());
                         DefectFilters defectFilters = cimStream.getDefectFilters();
                         if (defectFilters != null) {
                             try {
                                 cimStream.getDefectFilters().initializeFilter(
-                                    allCheckers,
-                                    toStrings(cimStreamDescriptor.doFillClassificationDefectFilterItems(cimStream.getInstance())),
-                                    toStrings(cimStreamDescriptor.doFillActionDefectFilterItems(cimStream.getInstance())),
-                                    toStrings(cimStreamDescriptor.doFillSeveritiesDefectFilterItems(cimStream.getInstance())),
-                                    toStrings(cimStreamDescriptor.doFillComponentDefectFilterItems(cimStream.getInstance(), cimStream.getStream())),
+                                    catalog.getCheckerNames(instance),
+                                    catalog.getAttributeValues(instance, "Classification"),
+                                    catalog.getAttributeValues(instance, "Action"),
+                                    catalog.getAttributeValues(instance, "Severity"),
+                                    catalog.getComponents(instance, cimStream.getStream()),
                                     toStrings(cimStreamDescriptor.doFillImpactDefectFilterItems(cimStream.getInstance())));
                             } catch (CovRemoteServiceException_Exception e) {
                                 throw new IOException(e);
@@ -594,12 +679,14 @@ public class CoverityPublisher extends Recorder {
 
                 if (cimStream != null) {
                     CIMInstance cimInstance = publisher.getDescriptor().getInstance(cimStream.getInstance());
-                    final List<String> projects = new ArrayList<>(CimCache.getInstance().getProjects(cimInstance));
+                    final NameIndex index = CimCache.getInstance().getProjectIndex(cimInstance);
+                    final NameIndex.Page page = index.search(null, 0, CIMStream.DescriptorImpl.NAME_PAGE_SIZE);
+                    final List<String> projects = new ArrayList<>(page.getItems());
                     final String selectedProject = cimStream.getProject();
                     boolean selectedProjectIsvalid = true;
                     if (!StringUtils.isEmpty(selectedProject) && !projects.contains(selectedProject)) {
                         projects.add(selectedProject);
-                        selectedProjectIsvalid = false;
+                        selectedProjectIsvalid = index.contains(selectedProject);
                     }
 
                     rsp.setContentType("application/json; charset=utf-8");
@@ -607,6 +694,7 @@ public class CoverityPublisher extends Recorder {
 
                     JSONObject responseObject = new JSONObject();
                     responseObject.put("projects", projects);
+                    responseObject.put("more", page.hasMore());
                     responseObject.put("selectedProject", selectedProject);
                     responseObject.put("validSelection", selectedProjectIsvalid);
 
@@ -628,13 +716,15 @@ public class CoverityPublisher extends Recorder {
 
                 if (cimStream != null) {
                     CIMInstance cimInstance = publisher.getDescriptor().getInstance(cimStream.getInstance());
-                    final List<String> streams = new ArrayList<>(CimCache.getInstance().getStreams(cimInstance ,cimStream.getProject()));
+                    final NameIndex index = CimCache.getInstance().getStreamIndex(cimInstance, cimStream.getProject());
+                    final NameIndex.Page page = index.search(null, 0, CIMStream.DescriptorImpl.NAME_PAGE_SIZE);
+                    final List<String> streams = new ArrayList<>(page.getItems());
                     final String selectedStream = cimStream.getStream();
                     boolean selectedStreamIsvalid = true;
 
                     if (!StringUtils.isEmpty(selectedStream) && !streams.contains(selectedStream)) {
                         streams.add(selectedStream);
-                        selectedStreamIsvalid = false;
+                        selectedStreamIsvalid = index.contains(selectedStream);
                     }
 
                     rsp.setContentType("application/json; charset=utf-8");
@@ -642,6 +732,7 @@ public class CoverityPublisher extends Recorder {
 
                     JSONObject responseObject = new JSONObject();
                     responseObject.put("streams", streams);
+                    responseObject.put("more", page.hasMore());
                     responseObject.put("selectedStream", selectedStream);
                     responseObject.put("validSelection", selectedStreamIsvalid);
 
@@ -650,5 +741,38 @@ public class CoverityPublisher extends Recorder {
                 }
             }
         }
+
+        /**
+         * Returns one page of the cached project names of an instance which match the typed filter, as JSON
+         * <code>{"items": [...], "more": true|false}</code>. Used by the filter box above the project dropdown.
+         */
+        public void doSearchProjects(@QueryParameter String instance, @QueryParameter String query, @QueryParameter int offset, StaplerResponse rsp) throws IOException {
+            CIMInstance cimInstance = getInstance(instance);
+            NameIndex index = cimInstance != null ? CimCache.getInstance().getProjectIndex(cimInstance) : NameIndex.EMPTY;
+            writeSearchResult(index.search(query, offset, CIMStream.DescriptorImpl.NAME_PAGE_SIZE), rsp);
+        }
+
+        /**
+         * Returns one page of the cached stream names of a project which match the typed filter, as JSON
+         * <code>{"items": [...], "more": true|false}</code>. Used by the filter box above the stream dropdown.
+         */
+        public void doSearchStreams(@QueryParameter String instance, @QueryParameter String project, @QueryParameter String query, @QueryParameter int offset, StaplerResponse rsp) throws IOException {
+            CIMInstance cimInstance = getInstance(instance);
+            NameIndex index = cimInstance != null && !StringUtils.isEmpty(project)
+                ? CimCache.getInstance().getStreamIndex(cimInstance, project) : NameIndex.EMPTY;
+            writeSearchResult(index.search(query, offset, CIMStream.DescriptorImpl.NAME_PAGE_SIZE), rsp);
+        }
+
+        private void writeSearchResult(NameIndex.Page page, StaplerResponse rsp) throws IOException {
+            rsp.setContentType("application/json; charset=utf-8");
+            final ServletOutputStream outputStream = rsp.getOutputStream();
+
+            JSONObject responseObject = new JSONObject();
+            responseObject.put("items", page.getItems());
+            responseObject.put("more", page.hasMore());
+
+            String jsonString = responseObject.toString();
+            outputStream.write(jsonString.getBytes("UTF-8"));
+        }
     }
 }
@@ -31,7 +31,6 @@ import jenkins.plugins.coverity.CoverityVersion;
 import jenkins.plugins.coverity.InvocationAssistance;
 import jenkins.plugins.coverity.ScmOptionBlock;
 import jenkins.plugins.coverity.TaOptionBlock;
-import jenkins.plugins.coverity.ws.DefectReader;
 
 /**
  * CoverityToolHandler handles the actual executing of Coverity executables.
@@ -44,7 +43,12 @@ public class CoverityToolHandler {
         this.version = version;
     }
 
-    public void perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener, CoverityPublisher publisher) throws Exception {
+    /**
+     * Runs the Coverity tools and commits the defects.
+     *
+     * @return true if the defects were committed, false if one of the tools failed
+     */
+    public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener, CoverityPublisher publisher) throws Exception {
         EnvVars envVars = build.getEnvironment(listener);
 
         CoverityTempDir temp = build.getAction(CoverityTempDir.class);
@@ -91,7 +95,7 @@ public class CoverityToolHandler {
             if(result != 0) {
                 listener.getLogger().println("[Coverity] cov-build returned " + result + ", aborting...");
                 build.setResult(Result.FAILURE);
-                return;
+                return false;
             }
 
         } finally {
@@ -107,7 +111,7 @@ public class CoverityToolHandler {
             if(result != 0) {
                 listener.getLogger().println("[Coverity] post cov-build command returned " + result + ", aborting...");
                 build.setResult(Result.FAILURE);
-                return;
+                return false;
             }
 
         } finally {
@@ -123,7 +127,7 @@ public class CoverityToolHandler {
             if(result != 0) {
                 listener.getLogger().println("[Coverity] cov-emit-java returned " + result + ", aborting...");
                 build.setResult(Result.FAILURE);
-                return;
+                return false;
             }
         } finally {
             CoverityLauncherDecorator.CoverityPostBuildAction.set(false);
@@ -138,7 +142,7 @@ public class CoverityToolHandler {
             if(result != 0) {
                 listener.getLogger().println("[Coverity] cov-capture returned " + result + ", aborting...");
                 build.setResult(Result.FAILURE);
-                return;
+                return false;
             }
         } finally {
             CoverityLauncherDecorator.CoverityPostBuildAction.set(false);
@@ -155,7 +159,7 @@ public class CoverityToolHandler {
                 listener.getLogger().println("[Coverity] cov-manage-history returned " + result + ", aborting...");
 
                 build.setResult(Result.FAILURE);
-                return;
+                return false;
             }
         } finally {
             CoverityLauncherDecorator.CoverityPostBuildAction.set(false);
@@ -172,7 +176,7 @@ public class CoverityToolHandler {
                 listener.getLogger().println("[Coverity] cov-import-scm returned " + result + ", aborting...");
 
                 build.setResult(Result.FAILURE);
-                return;
+                return false;
             }
         } finally {
             CoverityLauncherDecorator.CoverityPostBuildAction.set(false);
@@ -187,7 +191,7 @@ public class CoverityToolHandler {
             if(result != 0) {
                 listener.getLogger().println("[Coverity] cov-analyze returned " + result + ", aborting...");
                 build.setResult(Result.FAILURE);
-                return;
+                return false;
             }
 
         } finally {
@@ -203,7 +207,7 @@ public class CoverityToolHandler {
             if(result != 0) {
                 listener.getLogger().println("[Coverity] post cov-analyze command returned " + result + ", aborting...");
                 build.setResult(Result.FAILURE);
-                return;
+                return false;
             }
 
         } finally {
@@ -219,7 +223,7 @@ public class CoverityToolHandler {
             if(result != 0) {
                 listener.getLogger().println("[Coverity] cov-import-msvsca returned " + result + ", aborting...");
                 build.setResult(Result.FAILURE);
-                return;
+                return false;
             }
 
         }finally{
@@ -235,15 +239,12 @@ public class CoverityToolHandler {
             if(result != 0) {
                 listener.getLogger().println("[Coverity] cov-commit-defects returned " + result + ", aborting...");
                 build.setResult(Result.FAILURE);
-                return;
+                return false;
             }
         } finally {
             CoverityLauncherDecorator.CoverityPostBuildAction.set(false);
         }
 
-        if(!publisher.isSkipFetchingDefects()) {
-            DefectReader defectReader = new DefectReader(build, listener, publisher);
-            defectReader.getLatestDefectsForBuild();
-        }
+        return true;
     }
 }
@@ -0,0 +1,234 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import hudson.model.AbstractBuild;
+
+/**
+ * Compact on-disk list of {@link CoverityDefect}s for a single build. Defects are appended one page at a time while
+ * they are fetched from Coverity Connect, so the full defect list never has to be held in memory during a build.
+ */
+public class DefectRecordFile {
+    public static final String FILE_NAME = "coverity-defects.bin";
+
+    private static final int MAGIC = 0x434F5644; // "COVD"
+    /**
+     * Version 1 wrote strings with {@link DataOutputStream#writeUTF(String)}, which fails for strings longer than 64KB.
+     * Version 2 writes the length of the UTF-8 bytes as an int instead. Both versions can be read.
+     */
+    private static final int VERSION = 2;
+    private static final int VERSION_1 = 1;
+
+    private final File file;
+
+    public DefectRecordFile(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Returns the record file stored in the root directory of the given build
+     */
+    public static DefectRecordFile forBuild(AbstractBuild<?, ?> build) {
+        return new DefectRecordFile(new File(build.getRootDir(), FILE_NAME));
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public boolean exists() {
+        return file.isFile();
+    }
+
+    /**
+     * Opens a writer which replaces any existing records in this file
+     */
+    public Writer openWriter() throws IOException {
+        return new Writer(file);
+    }
+
+    /**
+     * Opens a writer which keeps the first records of this file and appends after them, for example to continue an
+     * interrupted fetch. Anything written after the given length is discarded.
+     *
+     * @param length the length in bytes of the records to keep, as returned by {@link Writer#getLength()}
+     * @param count the number of records to keep
+     */
+    public Writer openWriter(long length, int count) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            if (raf.length() < length) {
+                throw new IOException("Coverity defect record file " + file + " is shorter than " + length + " bytes");
+            }
+            if (raf.readInt() != MAGIC || raf.readInt() != VERSION) {
+                throw new IOException("Unable to append to Coverity defect record file " + file + " of an older version");
+            }
+            raf.setLength(length);
+        }
+        return new Writer(file, length, count);
+    }
+
+    /**
+     * Reads all defect records from this file
+     */
+    public List<CoverityDefect> readAll() throws IOException {
+        final List<CoverityDefect> defects = new ArrayList<>();
+        read(new RecordHandler() {
+            public void handle(CoverityDefect defect) {
+                defects.add(defect);
+            }
+        });
+        return defects;
+    }
+
+    /**
+     * Appends all defect records from this file to the given writer, one record at a time
+     *
+     * @return the number of records appended
+     */
+    public int appendTo(final Writer writer) throws IOException {
+        final int[] count = new int[1];
+        read(new RecordHandler() {
+            public void handle(CoverityDefect defect) throws IOException {
+                writer.append(defect);
+                count[0]++;
+            }
+        });
+        return count[0];
+    }
+
+    /**
+     * Passes all defect records of this file to the given handler, one record at a time and in the order they were
+     * written
+     */
+    public void read(RecordHandler handler) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            int version = in.readInt() == MAGIC ? in.readInt() : -1;
+            if (version != VERSION && version != VERSION_1) {
+                throw new IOException("Unsupported Coverity defect record file: " + file);
+            }
+
+            while (true) {
+                long cid;
+                try {
+                    cid = in.readLong();
+                } catch (EOFException e) {
+                    break;
+                }
+                handler.handle(new CoverityDefect(cid, readString(in, version), readString(in, version), readString(in, version)));
+            }
+        }
+    }
+
+    private static String readString(DataInputStream in, int version) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        if (version == VERSION_1) {
+            return in.readUTF();
+        }
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Appends defect records to a {@link DefectRecordFile}
+     */
+    public static class Writer implements Closeable {
+        private final DataOutputStream out;
+        private final long initialLength;
+        private int count;
+
+        private Writer(File file) throws IOException {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            initialLength = 0;
+        }
+
+        private Writer(File file, long length, int count) throws IOException {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+            this.initialLength = length;
+            this.count = count;
+        }
+
+        public void append(CoverityDefect defect) throws IOException {
+            out.writeLong(defect.getCid() != null ? defect.getCid() : 0L);
+            writeString(defect.getCheckerName());
+            writeString(defect.getFunctionDisplayName());
+            writeString(defect.getFilePathname());
+            count++;
+        }
+
+        public void append(List<CoverityDefect> defects) throws IOException {
+            for (CoverityDefect defect : defects) {
+                append(defect);
+            }
+        }
+
+        /**
+         * Number of defects written so far
+         */
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * Length in bytes of the records written so far, including the file header
+         */
+        public long getLength() {
+            return initialLength + out.size();
+        }
+
+        /**
+         * Writes all buffered records to the file
+         */
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        private void writeString(String value) throws IOException {
+            out.writeBoolean(value != null);
+            if (value != null) {
+                // not writeUTF, which is limited to 64KB
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /**
+     * Receives the records read from a {@link DefectRecordFile}
+     */
+    public interface RecordHandler {
+        void handle(CoverityDefect defect) throws IOException;
+    }
+}
@@ -10,16 +10,27 @@
  *******************************************************************************/
 package jenkins.plugins.coverity.ws;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
-import javax.xml.datatype.XMLGregorianCalendar;
+import javax.xml.ws.WebServiceException;
+import javax.xml.ws.soap.SOAPFaultException;
 
 import com.coverity.ws.v9.ConfigurationService;
 import com.coverity.ws.v9.CovRemoteServiceException_Exception;
@@ -28,99 +39,464 @@ import com.coverity.ws.v9.ProjectDataObj;
 import com.coverity.ws.v9.ProjectFilterSpecDataObj;
 import com.coverity.ws.v9.StreamDataObj;
 
+import jenkins.model.Jenkins;
 import jenkins.plugins.coverity.CIMInstance;
 
 /**
- * Temporary cache of cim data to improve job configuration behavior
+ * Cache of the projects and streams of each Coverity Connect instance, used by the job configuration page.
+ *
+ * Only the project names of an instance are loaded up front. The streams of a project are loaded when they are first
+ * looked up, and cached per project.
+ *
+ * Cached data is served until it is older than {@link #TTL_MILLIS}. After that it is still served while it is
+ * refreshed in the background, so only the very first lookup of an instance or project waits for Coverity Connect. A
+ * refresh first asks Connect for the last update times of its projects and streams, and only reloads them if they
+ * changed.
+ *
+ * Loaded data is also written to a {@link CimCacheFile} in JENKINS_HOME. After a restart, the file is read on the first
+ * lookup and its data is served right away while it is revalidated in the background.
  */
 public final class CimCache {
+    private static final Logger logger = Logger.getLogger(CimCache.class.getName());
+
+    /**
+     * How long cached data is used before checking Coverity Connect for changes
+     */
+    public static final long TTL_MILLIS = Long.getLong(CimCache.class.getName() + ".ttl", TimeUnit.MINUTES.toMillis(5));
+
+    /**
+     * How long to wait before trying again after Coverity Connect could not be reached
+     */
+    private static final long RETRY_MILLIS = Math.min(TTL_MILLIS, TimeUnit.SECONDS.toMillis(30));
 
     private static CimCache instance = null;
 
-    private Map<CIMInstance, CachedData> cache;
+    private final ConcurrentMap<String, CacheEntry> cache;
+
+    private final CimCacheFile file;
+
+    /**
+     * Snapshots read from the file and not yet replaced by newer data, null until the file was read
+     */
+    private Map<String, CimCacheFile.Snapshot> persisted;
 
-    private CimCache(){
-        cache = new HashMap<>();
+    CimCache(CimCacheFile file){
+        cache = new ConcurrentHashMap<>();
+        this.file = file;
     }
 
     public static CimCache getInstance() {
         synchronized (CimCache.class) {
             if (instance == null) {
-                instance = new CimCache();
+                Jenkins jenkins = Jenkins.getInstance();
+                instance = new CimCache(jenkins != null ? new CimCacheFile(new File(jenkins.getRootDir(), CimCacheFile.FILE_NAME)) : null);
             }
             return instance;
         }
     }
 
     /**
-     * Adds or replaces the cached data for this instance
+     * Checks the instance for changed projects and streams in the background, regardless of the age of the cached data.
+     * The current data, if any, is served until the check completes.
      * @param cimInstance {@link CIMInstance} to cache data for
      */
     public void cacheCimInstance(CIMInstance cimInstance) {
-        cache.put(cimInstance, new CachedData(cimInstance));
+        refreshInBackground(cimInstance, getEntry(cimInstance));
     }
 
     public List<String> getProjects(CIMInstance cimInstance) {
-        if (cache.containsKey(cimInstance)) {
-            final CachedData cachedData = cache.get(cimInstance);
-            return cachedData.getAvailableProjects();
+        return new ArrayList<>(getProjectIndex(cimInstance).getNames());
+    }
+
+    public List<String> getStreams(CIMInstance cimInstance, String project) {
+        return new ArrayList<>(getStreamIndex(cimInstance, project).getNames());
+    }
+
+    /**
+     * Returns the searchable project names of the instance
+     */
+    public NameIndex getProjectIndex(CIMInstance cimInstance) {
+        return getData(cimInstance).projectIndex;
+    }
+
+    /**
+     * Returns the searchable stream names of the project, empty if the instance has no such project
+     */
+    public NameIndex getStreamIndex(CIMInstance cimInstance, String project) {
+        CacheEntry entry = getEntry(cimInstance);
+        ProjectStreams streams = getData(cimInstance).getProjectStreams(project);
+        if (streams == null) {
+            return NameIndex.EMPTY;
         }
 
-        final CachedData cachedData = new CachedData(cimInstance);
-        cache.put(cimInstance, cachedData);
-        return cachedData.getAvailableProjects();
+        NameIndex index = streams.index;
+        if (index == null) {
+            // nothing to serve yet, so this lookup has to wait
+            index = loadStreams(cimInstance, entry, project, streams, false);
+        } else if (System.currentTimeMillis() >= streams.expiresAt) {
+            refreshStreamsInBackground(cimInstance, entry, project, streams);
+        }
+        return index;
     }
 
-    public List<String> getStreams(CIMInstance cimInstance, String project) {
-        if (cache.containsKey(cimInstance)) {
-            final CachedData cachedData = cache.get(cimInstance);
-            return cachedData.getStreamsForProject(project);
+    /**
+     * Drops the cached data of all instances except the given ones
+     */
+    public void retainAll(List<CIMInstance> instances) {
+        Set<String> keys = new HashSet<>();
+        for (CIMInstance cimInstance : instances) {
+            keys.add(CimCacheFile.getInstanceKey(cimInstance));
         }
+        cache.keySet().retainAll(keys);
+        synchronized (this) {
+            if (persisted != null) {
+                persisted.keySet().retainAll(keys);
+            }
+        }
+    }
 
-        final CachedData cachedData = new CachedData(cimInstance);
-        cache.put(cimInstance, cachedData);
-        return cachedData.getStreamsForProject(project);
+    /**
+     * Drops the cached data of the instance, so the next lookup loads it again
+     */
+    public void invalidate(CIMInstance cimInstance) {
+        cache.remove(CimCacheFile.getInstanceKey(cimInstance));
     }
 
-    private static class CachedData {
-        private Map<String, List<String>> projectStreams;
+    private CacheEntry getEntry(CIMInstance cimInstance) {
+        String instanceKey = CimCacheFile.getInstanceKey(cimInstance);
+        CacheEntry entry = cache.get(instanceKey);
+        if (entry == null) {
+            CacheEntry newEntry = new CacheEntry();
+            CimCacheFile.Snapshot snapshot = getPersistedSnapshot(cimInstance);
+            if (snapshot != null) {
+                // served right away, but revalidated on first use
+                newEntry.data = CachedData.fromSnapshot(snapshot.getProjectStreams());
+                newEntry.updateSignature = snapshot.getUpdateSignature();
+            }
+            cache.putIfAbsent(instanceKey, newEntry);
+            entry = cache.get(instanceKey);
+        }
+        return entry;
+    }
+
+    private synchronized CimCacheFile.Snapshot getPersistedSnapshot(CIMInstance cimInstance) {
+        if (file == null) {
+            return null;
+        }
+        if (persisted == null) {
+            try {
+                persisted = file.read();
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Unable to read Coverity Connect cache file " + file.getFile(), e);
+                persisted = new HashMap<>();
+            }
+        }
+        return persisted.get(CimCacheFile.getInstanceKey(cimInstance));
+    }
+
+    /**
+     * Writes the data of all instances to the cache file, keeping the snapshots of instances not used since startup
+     */
+    private synchronized void save() {
+        if (file == null) {
+            return;
+        }
+
+        Map<String, CimCacheFile.Snapshot> snapshots = new HashMap<>();
+        if (persisted != null) {
+            snapshots.putAll(persisted);
+        }
+        for (Map.Entry<String, CacheEntry> entry : cache.entrySet()) {
+            CacheEntry cacheEntry = entry.getValue();
+            CachedData data = cacheEntry.data;
+            if (data != null && data.loaded) {
+                String instanceKey = entry.getKey();
+                snapshots.put(instanceKey, new CimCacheFile.Snapshot(instanceKey, cacheEntry.updateSignature, data.toSnapshot()));
+            }
+        }
+
+        try {
+            file.write(snapshots.values());
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Unable to write Coverity Connect cache file " + file.getFile(), e);
+        }
+    }
+
+    private CachedData getData(CIMInstance cimInstance) {
+        CacheEntry entry = getEntry(cimInstance);
+        CachedData data = entry.data;
+        if (data == null) {
+            // nothing to serve yet, so this lookup has to wait; concurrent lookups wait for the same load
+            return load(cimInstance, entry, false);
+        }
+
+        if (System.currentTimeMillis() >= entry.expiresAt) {
+            refreshInBackground(cimInstance, entry);
+        }
+        return data;
+    }
+
+    private void refreshInBackground(final CIMInstance cimInstance, final CacheEntry entry) {
+        if (!entry.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            WebServiceExecutors.submitInBackground(new Callable<Void>() {
+                public Void call() {
+                    try {
+                        load(cimInstance, entry, true);
+                    } finally {
+                        entry.refreshing.set(false);
+                    }
+                    return null;
+                }
+            });
+        } catch (RuntimeException e) {
+            entry.refreshing.set(false);
+            throw e;
+        }
+    }
+
+    private void refreshStreamsInBackground(final CIMInstance cimInstance, final CacheEntry entry, final String project, final ProjectStreams streams) {
+        if (!streams.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            WebServiceExecutors.submitInBackground(new Callable<Void>() {
+                public Void call() {
+                    try {
+                        loadStreams(cimInstance, entry, project, streams, true);
+                    } finally {
+                        streams.refreshing.set(false);
+                    }
+                    return null;
+                }
+            });
+        } catch (RuntimeException e) {
+            streams.refreshing.set(false);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a value which changes whenever projects or streams are updated on Coverity Connect
+     */
+    static String getUpdateSignature(List<FeatureUpdateTimeDataObj> updateTimes) {
+        Map<String, String> all = new TreeMap<>();
+        Map<String, String> relevant = new TreeMap<>();
+        for (FeatureUpdateTimeDataObj updateTime : updateTimes) {
+            String feature = String.valueOf(updateTime.getFeatureName());
+            String date = updateTime.getLastUpdateDate() != null ? updateTime.getLastUpdateDate().toXMLFormat() : "";
+            all.put(feature, date);
+            String name = feature.toLowerCase(Locale.ENGLISH);
+            if (name.contains("project") || name.contains("stream")) {
+                relevant.put(feature, date);
+            }
+        }
+        // if the server names its features differently, any update counts as a change
+        return (relevant.isEmpty() ? all : relevant).toString();
+    }
+
+    /**
+     * Loads the data of the instance, or only checks whether it changed if there already is data to compare with
+     */
+    private CachedData load(CIMInstance cimInstance, CacheEntry entry, boolean force) {
+        boolean changed = false;
+        synchronized (entry) {
+            if (entry.data != null && !force) {
+                // loaded by another lookup while this one was waiting
+                return entry.data;
+            }
 
-        public CachedData(CIMInstance cimInstance) {
-            projectStreams = new HashMap<>();
             try {
                 ConfigurationService configurationService = cimInstance.getConfigurationService();
-                final List<ProjectDataObj> projects = configurationService.getProjects(new ProjectFilterSpecDataObj());
+                String signature = null;
+                try {
+                    signature = getUpdateSignature(configurationService.getLastUpdateTimes());
+                } catch (SOAPFaultException e) {
+                    // the server answered but does not report update times, reload everything then
+                    logger.log(Level.FINE, "Unable to get the last update times of Coverity Connect instance " + cimInstance.getName(), e);
+                }
 
-                for (ProjectDataObj project : projects){
-                    List<String> streamNames = new ArrayList<>();
+                if (entry.data != null && signature != null && signature.equals(entry.updateSignature)) {
+                    logger.fine("Projects and streams of Coverity Connect instance " + cimInstance.getName() + " are unchanged");
+                } else {
+                    ProjectFilterSpecDataObj filterSpec = new ProjectFilterSpecDataObj();
+                    filterSpec.setIncludeStreams(false);
+                    entry.data = new CachedData(configurationService.getProjects(filterSpec), entry.data);
+                    entry.updateSignature = signature;
+                    changed = true;
+                }
+                entry.expiresAt = System.currentTimeMillis() + TTL_MILLIS;
+            } catch (IOException | CovRemoteServiceException_Exception | WebServiceException e) {
+                // keep serving what was loaded before, or nothing, and try again soon
+                logger.log(Level.WARNING, "Unable to load projects and streams of Coverity Connect instance " + cimInstance.getName(), e);
+                if (entry.data == null) {
+                    entry.data = new CachedData();
+                }
+                entry.expiresAt = System.currentTimeMillis() + RETRY_MILLIS;
+            }
+        }
 
-                    for (StreamDataObj stream : project.getStreams()) {
-                        streamNames.add(stream.getId().getName());
+        if (changed) {
+            save();
+        }
+        return entry.data;
+    }
+
+    /**
+     * Loads the streams of a project, or only checks whether they changed if there already are streams to compare with
+     */
+    private NameIndex loadStreams(CIMInstance cimInstance, CacheEntry entry, String project, ProjectStreams streams, boolean force) {
+        boolean changed = false;
+        synchronized (streams) {
+            if (streams.index != null && !force) {
+                return streams.index;
+            }
+
+            String signature = entry.updateSignature;
+            if (streams.index != null && signature != null && signature.equals(streams.updateSignature)) {
+                // nothing changed on Coverity Connect since the streams were loaded
+                streams.expiresAt = System.currentTimeMillis() + TTL_MILLIS;
+                return streams.index;
+            }
+
+            try {
+                // getStreams cannot be used here: its filter only matches stream names, descriptions and languages, so
+                // it would return the streams of all projects, and a stream's primary project does not cover the
+                // other projects it belongs to. Filtering the projects by name returns just this project's streams.
+                ProjectFilterSpecDataObj filterSpec = new ProjectFilterSpecDataObj();
+                filterSpec.setNamePattern(project);
+                filterSpec.setIncludeStreams(true);
+                List<String> streamNames = new ArrayList<>();
+                for (ProjectDataObj projectData : cimInstance.getConfigurationService().getProjects(filterSpec)) {
+                    // the name is a pattern, only take the project itself
+                    if (project.equals(projectData.getId().getName())) {
+                        for (StreamDataObj stream : projectData.getStreams()) {
+                            streamNames.add(stream.getId().getName());
+                        }
                     }
+                }
+                streams.index = new NameIndex(streamNames);
+                streams.updateSignature = signature;
+                streams.expiresAt = System.currentTimeMillis() + TTL_MILLIS;
+                changed = true;
+            } catch (IOException | CovRemoteServiceException_Exception | WebServiceException e) {
+                logger.log(Level.WARNING, "Unable to load streams of project " + project + " on Coverity Connect instance " + cimInstance.getName(), e);
+                if (streams.index == null) {
+                    streams.index = NameIndex.EMPTY;
+                }
+                streams.expiresAt = System.currentTimeMillis() + RETRY_MILLIS;
+            }
+        }
+
+        if (changed) {
+            save();
+        }
+        return streams.index;
+    }
+
+    private static class CacheEntry {
+        private volatile CachedData data;
+        private volatile long expiresAt;
+        /**
+         * Update times of the loaded data, null unless it was loaded successfully
+         */
+        private volatile String updateSignature;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+    }
 
-                    Collections.sort(streamNames, String.CASE_INSENSITIVE_ORDER);
+    /**
+     * The project names of an instance, with the streams of each project once they were loaded
+     */
+    private static class CachedData {
+        private final NameIndex projectIndex;
+        private final Map<String, ProjectStreams> projectStreams;
+        /**
+         * False for the empty placeholder used when loading failed
+         */
+        private final boolean loaded;
+
+        CachedData() {
+            projectIndex = NameIndex.EMPTY;
+            projectStreams = Collections.emptyMap();
+            loaded = false;
+        }
 
-                    projectStreams.put(project.getId().getName(), streamNames);
+        /**
+         * Creates the data for the given projects, keeping the streams already loaded for projects which still exist.
+         * Those streams are revalidated on their next lookup.
+         */
+        CachedData(List<ProjectDataObj> projects, CachedData previous) {
+            projectStreams = new ConcurrentHashMap<>();
+            for (ProjectDataObj project : projects) {
+                String name = project.getId().getName();
+                ProjectStreams streams = previous != null ? previous.projectStreams.get(name) : null;
+                if (streams != null) {
+                    streams.expiresAt = 0;
+                } else {
+                    streams = new ProjectStreams();
                 }
-            } catch (IOException e) {
-                // ignore exceptions here (nothing will be cached in this case)
-            } catch (CovRemoteServiceException_Exception e) {
-                // ignore exceptions here (nothing will be cached in this case)
+                projectStreams.put(name, streams);
             }
+            projectIndex = new NameIndex(projectStreams.keySet());
+            loaded = true;
         }
 
-        public List<String> getAvailableProjects() {
-            final ArrayList<String> projectNames = new ArrayList<>(projectStreams.keySet());
-            Collections.sort(projectNames, String.CASE_INSENSITIVE_ORDER);
-            return projectNames;
+        private CachedData(Map<String, ProjectStreams> projectStreams) {
+            this.projectStreams = projectStreams;
+            projectIndex = new NameIndex(projectStreams.keySet());
+            loaded = true;
         }
 
-        public List<String> getStreamsForProject(String projectName) {
-            if (projectStreams.containsKey(projectName)) {
-                return projectStreams.get(projectName);
+        /**
+         * Creates the data from a persisted snapshot, with streams that are not loaded as null. Persisted streams are
+         * revalidated on their first lookup.
+         */
+        static CachedData fromSnapshot(Map<String, List<String>> snapshot) {
+            Map<String, ProjectStreams> projectStreams = new ConcurrentHashMap<>();
+            for (Map.Entry<String, List<String>> project : snapshot.entrySet()) {
+                ProjectStreams streams = new ProjectStreams();
+                if (project.getValue() != null) {
+                    streams.index = new NameIndex(project.getValue());
+                }
+                projectStreams.put(project.getKey(), streams);
             }
+            return new CachedData(projectStreams);
+        }
 
-            return new ArrayList<>();
+        Map<String, List<String>> toSnapshot() {
+            Map<String, List<String>> snapshot = new HashMap<>();
+            for (Map.Entry<String, ProjectStreams> project : projectStreams.entrySet()) {
+                NameIndex index = project.getValue().index;
+                snapshot.put(project.getKey(), index != null ? index.getNames() : null);
+            }
+            return snapshot;
+        }
+
+        /**
+         * Returns the streams of the project, or null if there is no such project
+         */
+        public ProjectStreams getProjectStreams(String projectName) {
+            return projectName != null ? projectStreams.get(projectName) : null;
         }
     }
+
+    /**
+     * The streams of a single project
+     */
+    private static class ProjectStreams {
+        /**
+         * Stream names, null until they were loaded
+         */
+        private volatile NameIndex index;
+        private volatile long expiresAt;
+        /**
+         * Update times of the instance when the streams were loaded
+         */
+        private volatile String updateSignature;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+    }
 }
@@ -0,0 +1,167 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import jenkins.plugins.coverity.CIMInstance;
+
+/**
+ * Compact on-disk snapshot of the {@link CimCache}, so project and stream lists can be shown right after Jenkins
+ * restarts instead of waiting for Coverity Connect. Passwords are not stored; instances are identified by name, host,
+ * port and user.
+ */
+public class CimCacheFile {
+    public static final String FILE_NAME = "coverity-cim-cache.bin";
+
+    private static final int MAGIC = 0x434F5643; // "COVC"
+    private static final int VERSION = 2;
+
+    private final File file;
+
+    public CimCacheFile(File file) {
+        this.file = file;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the key under which the data of the instance is stored. It stays the same for the new instances created
+     * when the global configuration is saved, so the in-memory caches use it as well.
+     */
+    static String getInstanceKey(CIMInstance cimInstance) {
+        return cimInstance.getName() + "\n" + cimInstance.getHost() + ":" + cimInstance.getPort() + "\n" + cimInstance.getUser();
+    }
+
+    /**
+     * Reads all snapshots from the file, keyed by instance key. Returns an empty map if the file does not exist.
+     */
+    public Map<String, Snapshot> read() throws IOException {
+        Map<String, Snapshot> snapshots = new HashMap<>();
+        if (!file.isFile()) {
+            return snapshots;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            int magic = in.readInt();
+            int version = in.readInt();
+            // version 1 files only differ in always having the streams of every project
+            if (magic != MAGIC || version < 1 || version > VERSION) {
+                throw new IOException("Unsupported Coverity Connect cache file: " + file);
+            }
+
+            int instanceCount = in.readInt();
+            for (int i = 0; i < instanceCount; i++) {
+                String instanceKey = in.readUTF();
+                String updateSignature = in.readBoolean() ? in.readUTF() : null;
+                int projectCount = in.readInt();
+                Map<String, List<String>> projectStreams = new LinkedHashMap<>();
+                for (int j = 0; j < projectCount; j++) {
+                    String project = in.readUTF();
+                    int streamCount = in.readInt();
+                    List<String> streams = null;
+                    if (streamCount >= 0) {
+                        streams = new ArrayList<>(streamCount);
+                        for (int k = 0; k < streamCount; k++) {
+                            streams.add(in.readUTF());
+                        }
+                    }
+                    projectStreams.put(project, streams);
+                }
+                snapshots.put(instanceKey, new Snapshot(instanceKey, updateSignature, projectStreams));
+            }
+        }
+        return snapshots;
+    }
+
+    /**
+     * Replaces the file with the given snapshots. The file is written next to the old one and then moved over it, so
+     * readers never see a partial file.
+     */
+    public void write(Collection<Snapshot> snapshots) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(snapshots.size());
+            for (Snapshot snapshot : snapshots) {
+                out.writeUTF(snapshot.getInstanceKey());
+                out.writeBoolean(snapshot.getUpdateSignature() != null);
+                if (snapshot.getUpdateSignature() != null) {
+                    out.writeUTF(snapshot.getUpdateSignature());
+                }
+                out.writeInt(snapshot.getProjectStreams().size());
+                for (Map.Entry<String, List<String>> project : snapshot.getProjectStreams().entrySet()) {
+                    out.writeUTF(project.getKey());
+                    if (project.getValue() == null) {
+                        out.writeInt(-1);
+                        continue;
+                    }
+                    out.writeInt(project.getValue().size());
+                    for (String stream : project.getValue()) {
+                        out.writeUTF(stream);
+                    }
+                }
+            }
+        }
+
+        try {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        }
+    }
+
+    /**
+     * The cached projects and streams of one instance. Projects whose streams were not loaded map to null.
+     */
+    public static class Snapshot {
+        private final String instanceKey;
+        private final String updateSignature;
+        private final Map<String, List<String>> projectStreams;
+
+        public Snapshot(String instanceKey, String updateSignature, Map<String, List<String>> projectStreams) {
+            this.instanceKey = instanceKey;
+            this.updateSignature = updateSignature;
+            this.projectStreams = projectStreams;
+        }
+
+        public String getInstanceKey() {
+            return instanceKey;
+        }
+
+        public String getUpdateSignature() {
+            return updateSignature;
+        }
+
+        public Map<String, List<String>> getProjectStreams() {
+            return projectStreams;
+        }
+    }
+}
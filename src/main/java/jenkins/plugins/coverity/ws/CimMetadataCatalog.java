@@ -0,0 +1,331 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.xml.ws.WebServiceException;
+import javax.xml.ws.soap.SOAPFaultException;
+
+import com.coverity.ws.v9.AttributeDefinitionDataObj;
+import com.coverity.ws.v9.AttributeDefinitionIdDataObj;
+import com.coverity.ws.v9.AttributeValueDataObj;
+import com.coverity.ws.v9.ComponentDataObj;
+import com.coverity.ws.v9.ComponentMapDataObj;
+import com.coverity.ws.v9.ComponentMapFilterSpecDataObj;
+import com.coverity.ws.v9.CovRemoteServiceException_Exception;
+import com.coverity.ws.v9.FeatureUpdateTimeDataObj;
+import com.coverity.ws.v9.StreamDataObj;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import jenkins.plugins.coverity.CIMInstance;
+
+/**
+ * Catalog of the metadata of each Coverity Connect instance which the defect filters of a job are built from: the
+ * values of the Classification, Action and Severity attributes, the checker names and the components of each
+ * component map.
+ *
+ * The catalog of an instance is loaded on its first lookup, with all its parts fetched at the same time. Like the
+ * {@link CimCache}, it is served from memory after that and refreshed in the background once it is older than
+ * {@link CimCache#TTL_MILLIS}. A refresh only reloads the catalog if the last update times reported by Coverity Connect
+ * changed.
+ *
+ * Unlike the {@link CimCache}, a failed first load is reported to the caller instead of serving an empty catalog, since
+ * saving a job with an incomplete list of checkers or components would change its defect filters.
+ */
+public final class CimMetadataCatalog {
+    private static final Logger logger = Logger.getLogger(CimMetadataCatalog.class.getName());
+
+    /**
+     * Attributes whose configurable values are offered as defect filters
+     */
+    public static final List<String> ATTRIBUTES = Collections.unmodifiableList(Arrays.asList("Classification", "Action", "Severity"));
+
+    private static final long RETRY_MILLIS = Math.min(CimCache.TTL_MILLIS, TimeUnit.SECONDS.toMillis(30));
+
+    private static CimMetadataCatalog instance = null;
+
+    private final ConcurrentMap<String, CatalogEntry> catalogs = new ConcurrentHashMap<>();
+
+    CimMetadataCatalog() {
+    }
+
+    public static synchronized CimMetadataCatalog getInstance() {
+        if (instance == null) {
+            instance = new CimMetadataCatalog();
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the configurable values of one of the {@link #ATTRIBUTES}, empty for any other attribute
+     */
+    public List<String> getAttributeValues(CIMInstance cimInstance, String attribute) throws IOException, CovRemoteServiceException_Exception {
+        List<String> values = getMetadata(cimInstance).attributeValues.get(attribute);
+        return values != null ? values : Collections.<String>emptyList();
+    }
+
+    /**
+     * Returns the checker names of the instance, sorted
+     */
+    public List<String> getCheckerNames(CIMInstance cimInstance) throws IOException, CovRemoteServiceException_Exception {
+        return getMetadata(cimInstance).checkerNames;
+    }
+
+    /**
+     * Returns the components of the component map used by the stream, or the components of all component maps if no
+     * stream is given
+     */
+    public List<String> getComponents(CIMInstance cimInstance, String stream) throws IOException, CovRemoteServiceException_Exception {
+        Metadata metadata = getMetadata(cimInstance);
+        if (stream == null || stream.isEmpty()) {
+            return metadata.allComponents;
+        }
+
+        String componentMapId = metadata.streamComponentMaps.get(stream);
+        if (componentMapId == null) {
+            StreamDataObj streamData = cimInstance.getStream(stream);
+            componentMapId = streamData.getComponentMapId().getName();
+            metadata.streamComponentMaps.put(stream, componentMapId);
+        }
+
+        List<String> components = metadata.componentMaps.get(componentMapId);
+        if (components == null) {
+            // a component map which was added after the catalog was loaded
+            ComponentMapFilterSpecDataObj filterSpec = new ComponentMapFilterSpecDataObj();
+            filterSpec.setNamePattern(componentMapId);
+            List<String> names = new ArrayList<>();
+            for (ComponentMapDataObj map : cimInstance.getConfigurationService().getComponentMaps(filterSpec)) {
+                names.addAll(getComponentNames(map));
+            }
+            components = Collections.unmodifiableList(names);
+            metadata.componentMaps.put(componentMapId, components);
+        }
+        return components;
+    }
+
+    /**
+     * Checks the instance for changed metadata in the background, or loads it if it was not loaded yet
+     */
+    public void cacheCimInstance(CIMInstance cimInstance) {
+        refreshInBackground(cimInstance, getEntry(cimInstance));
+    }
+
+    /**
+     * Drops the catalogs of all instances except the given ones
+     */
+    public void retainAll(List<CIMInstance> instances) {
+        Set<String> keys = new HashSet<>();
+        for (CIMInstance cimInstance : instances) {
+            keys.add(CimCacheFile.getInstanceKey(cimInstance));
+        }
+        catalogs.keySet().retainAll(keys);
+    }
+
+    /**
+     * Drops the catalog of the instance, so the next lookup loads it again
+     */
+    public void invalidate(CIMInstance cimInstance) {
+        catalogs.remove(CimCacheFile.getInstanceKey(cimInstance));
+    }
+
+    private CatalogEntry getEntry(CIMInstance cimInstance) {
+        String instanceKey = CimCacheFile.getInstanceKey(cimInstance);
+        CatalogEntry entry = catalogs.get(instanceKey);
+        if (entry == null) {
+            catalogs.putIfAbsent(instanceKey, new CatalogEntry());
+            entry = catalogs.get(instanceKey);
+        }
+        return entry;
+    }
+
+    private Metadata getMetadata(CIMInstance cimInstance) throws IOException, CovRemoteServiceException_Exception {
+        CatalogEntry entry = getEntry(cimInstance);
+        Metadata metadata = entry.metadata;
+        if (metadata == null) {
+            // nothing to serve yet, so this lookup has to wait; concurrent lookups wait for the same load
+            return load(cimInstance, entry, false);
+        }
+
+        if (System.currentTimeMillis() >= entry.expiresAt) {
+            refreshInBackground(cimInstance, entry);
+        }
+        return metadata;
+    }
+
+    private void refreshInBackground(final CIMInstance cimInstance, final CatalogEntry entry) {
+        if (!entry.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            WebServiceExecutors.submitInBackground(new Callable<Void>() {
+                public Void call() {
+                    try {
+                        load(cimInstance, entry, true);
+                    } catch (IOException | CovRemoteServiceException_Exception | WebServiceException e) {
+                        // keep serving what was loaded before and try again soon
+                        logger.log(Level.WARNING, "Unable to load the metadata of Coverity Connect instance " + cimInstance.getName(), e);
+                        entry.expiresAt = System.currentTimeMillis() + RETRY_MILLIS;
+                    } finally {
+                        entry.refreshing.set(false);
+                    }
+                    return null;
+                }
+            });
+        } catch (RuntimeException e) {
+            entry.refreshing.set(false);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a value which changes whenever anything is updated on Coverity Connect
+     */
+    static String getUpdateSignature(List<FeatureUpdateTimeDataObj> updateTimes) {
+        Map<String, String> all = new TreeMap<>();
+        for (FeatureUpdateTimeDataObj updateTime : updateTimes) {
+            all.put(String.valueOf(updateTime.getFeatureName()),
+                updateTime.getLastUpdateDate() != null ? updateTime.getLastUpdateDate().toXMLFormat() : "");
+        }
+        return all.toString();
+    }
+
+    /**
+     * Loads the catalog of the instance, or only checks whether it changed if there already is a catalog to compare with
+     */
+    private Metadata load(CIMInstance cimInstance, CatalogEntry entry, boolean force) throws IOException, CovRemoteServiceException_Exception {
+        synchronized (entry) {
+            if (entry.metadata != null && !force) {
+                // loaded by another lookup while this one was waiting
+                return entry.metadata;
+            }
+
+            String signature = null;
+            try {
+                signature = getUpdateSignature(cimInstance.getConfigurationService().getLastUpdateTimes());
+            } catch (SOAPFaultException e) {
+                // the server answered but does not report update times, reload everything then
+                logger.log(Level.FINE, "Unable to get the last update times of Coverity Connect instance " + cimInstance.getName(), e);
+            }
+
+            if (entry.metadata != null && signature != null && signature.equals(entry.updateSignature)) {
+                logger.fine("Metadata of Coverity Connect instance " + cimInstance.getName() + " is unchanged");
+            } else {
+                entry.metadata = fetch(cimInstance);
+                entry.updateSignature = signature;
+            }
+            entry.expiresAt = System.currentTimeMillis() + CimCache.TTL_MILLIS;
+            return entry.metadata;
+        }
+    }
+
+    /**
+     * Fetches all parts of the catalog at the same time
+     */
+    private static Metadata fetch(CIMInstance cimInstance) throws IOException, CovRemoteServiceException_Exception {
+        MetadataLookups service = cimInstance.getMetadataLookups();
+
+        Map<String, ListenableFuture<AttributeDefinitionDataObj>> attributes = new LinkedHashMap<>();
+        for (String attribute : ATTRIBUTES) {
+            AttributeDefinitionIdDataObj attributeId = new AttributeDefinitionIdDataObj();
+            attributeId.setName(attribute);
+            attributes.put(attribute, service.getAttribute(attributeId));
+        }
+        ListenableFuture<List<String>> checkers = service.getCheckerNames();
+        ComponentMapFilterSpecDataObj filterSpec = new ComponentMapFilterSpecDataObj();
+        filterSpec.setNamePattern("*");
+        ListenableFuture<List<ComponentMapDataObj>> componentMaps = service.getComponentMaps(filterSpec);
+
+        Map<String, List<String>> attributeValues = new HashMap<>();
+        for (Map.Entry<String, ListenableFuture<AttributeDefinitionDataObj>> attribute : attributes.entrySet()) {
+            List<String> values = new ArrayList<>();
+            for (AttributeValueDataObj value : WebServiceExecutors.get(attribute.getValue()).getConfigurableValues()) {
+                values.add(value.getAttributeValueId().getName());
+            }
+            attributeValues.put(attribute.getKey(), Collections.unmodifiableList(values));
+        }
+
+        List<String> checkerNames = new ArrayList<>(WebServiceExecutors.get(checkers));
+        Collections.sort(checkerNames);
+
+        Map<String, List<String>> components = new LinkedHashMap<>();
+        for (ComponentMapDataObj map : WebServiceExecutors.get(componentMaps)) {
+            components.put(map.getComponentMapId().getName(), Collections.unmodifiableList(getComponentNames(map)));
+        }
+
+        return new Metadata(attributeValues, checkerNames, components);
+    }
+
+    private static List<String> getComponentNames(ComponentMapDataObj map) {
+        List<String> names = new ArrayList<>();
+        for (ComponentDataObj component : map.getComponents()) {
+            names.add(component.getComponentId().getName());
+        }
+        return names;
+    }
+
+    private static class CatalogEntry {
+        private volatile Metadata metadata;
+        private volatile long expiresAt;
+        /**
+         * Update times of the loaded catalog, null if the server did not report them
+         */
+        private volatile String updateSignature;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+    }
+
+    /**
+     * The metadata of an instance as loaded at one point in time
+     */
+    private static class Metadata {
+        private final Map<String, List<String>> attributeValues;
+        private final List<String> checkerNames;
+        /**
+         * Component names by component map id, in the order Coverity Connect returned them
+         */
+        private final ConcurrentMap<String, List<String>> componentMaps;
+        private final List<String> allComponents;
+        /**
+         * Component map id of each stream looked up so far
+         */
+        private final ConcurrentMap<String, String> streamComponentMaps = new ConcurrentHashMap<>();
+
+        Metadata(Map<String, List<String>> attributeValues, List<String> checkerNames, Map<String, List<String>> componentMaps) {
+            this.attributeValues = Collections.unmodifiableMap(attributeValues);
+            this.checkerNames = Collections.unmodifiableList(checkerNames);
+            this.componentMaps = new ConcurrentHashMap<>(componentMaps);
+
+            List<String> all = new ArrayList<>();
+            for (List<String> components : componentMaps.values()) {
+                all.addAll(components);
+            }
+            allComponents = Collections.unmodifiableList(all);
+        }
+    }
+}
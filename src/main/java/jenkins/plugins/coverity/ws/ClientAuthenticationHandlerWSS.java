@@ -89,18 +89,21 @@ public class ClientAuthenticationHandlerWSS implements SOAPHandler<SOAPMessageCo
 
     public boolean handleMessage(SOAPMessageContext smc) {
         boolean outbound = ((Boolean) smc.get(MessageContext.MESSAGE_OUTBOUND_PROPERTY)).booleanValue();
+        if(!outbound) {
+            // getMessage() would turn the response into a SAAJ message, leave it to be read as a stream
+            return true;
+        }
+
         SOAPMessage msg = smc.getMessage();
-        if(outbound) {
-            try {
-                ProcessingContext context = xwssProcessor.createProcessingContext(msg);
-                context.setSOAPMessage(msg);
-                SOAPMessage secureMsg = xwssProcessor.secureOutboundMessage(context);
-                smc.setMessage(secureMsg);
-            } catch(XWSSecurityException ex) {
-                throw new RuntimeException(ex);
-            } catch(Exception e) {
-                throw new RuntimeException(e);
-            }
+        try {
+            ProcessingContext context = xwssProcessor.createProcessingContext(msg);
+            context.setSOAPMessage(msg);
+            SOAPMessage secureMsg = xwssProcessor.secureOutboundMessage(context);
+            smc.setMessage(secureMsg);
+        } catch(XWSSecurityException ex) {
+            throw new RuntimeException(ex);
+        } catch(Exception e) {
+            throw new RuntimeException(e);
         }
         return true;
     }
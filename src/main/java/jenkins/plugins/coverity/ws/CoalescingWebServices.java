@@ -0,0 +1,235 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.datatype.XMLGregorianCalendar;
+import javax.xml.ws.WebServiceException;
+
+import jenkins.plugins.coverity.CIMInstance;
+
+/**
+ * Wraps a web service client so that concurrent callers making the same read call against the same Coverity Connect
+ * connection share one in-flight request. This keeps bursts of identical lookups, for example when many jobs are
+ * saved or validated at once, from each occupying a thread of the server.
+ *
+ * Only the operations in {@link #COALESCED_OPERATIONS} are coalesced, all other calls go straight to the client.
+ * Each caller receives its own deep copy of the result, since callers sort result lists in place and
+ * {@link CIMInstance} hands the data objects on to code which may change them.
+ */
+public class CoalescingWebServices {
+    /**
+     * Set to true to send every call to Coverity Connect separately
+     */
+    public static final boolean DISABLED = Boolean.getBoolean(CoalescingWebServices.class.getName() + ".disabled");
+
+    static final Set<String> COALESCED_OPERATIONS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+        "getProjects", "getStreams", "getCheckerNames", "getAttribute")));
+
+    private static final SingleFlight<List<Object>, Object> calls = new SingleFlight<>();
+    private static final AtomicLong coalescedCalls = new AtomicLong();
+
+    private CoalescingWebServices() {
+    }
+
+    /**
+     * Wraps the given web service client of the given instance
+     */
+    public static <T> T wrap(Class<T> serviceInterface, T service, CIMInstance cimInstance) {
+        if (DISABLED) {
+            return service;
+        }
+        return wrap(serviceInterface, service, ConnectionKey.of(cimInstance), calls);
+    }
+
+    static <T> T wrap(Class<T> serviceInterface, T service, ConnectionKey connection, SingleFlight<List<Object>, Object> calls) {
+        return serviceInterface.cast(Proxy.newProxyInstance(serviceInterface.getClassLoader(), new Class<?>[] { serviceInterface },
+            new Handler(service, serviceInterface, connection, calls)));
+    }
+
+    /**
+     * Number of calls which shared the result of another caller's in-flight call since startup
+     */
+    public static long getCoalescedCalls() {
+        return coalescedCalls.get();
+    }
+
+    /**
+     * Returns a value identifying the given web service arguments, comparing the fields of the generated data objects
+     * by value since they do not implement equals
+     */
+    static Object describe(Object value) {
+        if (value == null || value instanceof String || value instanceof Number || value instanceof Boolean || value instanceof Enum) {
+            return value;
+        }
+        if (value instanceof Collection) {
+            List<Object> result = new ArrayList<>();
+            for (Object element : (Collection<?>) value) {
+                result.add(describe(element));
+            }
+            return result;
+        }
+        if (value instanceof Object[]) {
+            return describe(Arrays.asList((Object[]) value));
+        }
+        if (!value.getClass().getName().startsWith("com.coverity.ws.")) {
+            // not a generated data object, only coalesce with the very same argument
+            return new IdentityKey(value);
+        }
+
+        List<Object> result = new ArrayList<>();
+        result.add(value.getClass().getName());
+        for (Class<?> type = value.getClass(); type != Object.class; type = type.getSuperclass()) {
+            for (Field field : type.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers())) {
+                    continue;
+                }
+                field.setAccessible(true);
+                try {
+                    result.add(field.getName());
+                    result.add(describe(field.get(value)));
+                } catch (IllegalAccessException e) {
+                    return new IdentityKey(value);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a deep copy of the given web service result. Lists and generated data objects are copied field by field,
+     * other values are immutable or returned as they are.
+     */
+    static Object copy(Object value) {
+        if (value instanceof List) {
+            List<Object> result = new ArrayList<>();
+            for (Object element : (List<?>) value) {
+                result.add(copy(element));
+            }
+            return result;
+        }
+        if (value instanceof XMLGregorianCalendar) {
+            return ((XMLGregorianCalendar) value).clone();
+        }
+        if (value instanceof byte[]) {
+            return ((byte[]) value).clone();
+        }
+        if (value == null || !value.getClass().getName().startsWith("com.coverity.ws.") || value instanceof Enum) {
+            return value;
+        }
+
+        try {
+            Object result = value.getClass().getDeclaredConstructor().newInstance();
+            for (Class<?> type = value.getClass(); type != Object.class; type = type.getSuperclass()) {
+                for (Field field : type.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers())) {
+                        continue;
+                    }
+                    field.setAccessible(true);
+                    field.set(result, copy(field.get(value)));
+                }
+            }
+            return result;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to copy " + value.getClass().getName(), e);
+        }
+    }
+
+    private static final class IdentityKey {
+        private final Object value;
+
+        IdentityKey(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof IdentityKey && ((IdentityKey) o).value == value;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(value);
+        }
+    }
+
+    private static class Handler implements InvocationHandler {
+        private final Object service;
+        private final Class<?> serviceInterface;
+        private final ConnectionKey connection;
+        private final SingleFlight<List<Object>, Object> calls;
+
+        Handler(Object service, Class<?> serviceInterface, ConnectionKey connection, SingleFlight<List<Object>, Object> calls) {
+            this.service = service;
+            this.serviceInterface = serviceInterface;
+            this.connection = connection;
+            this.calls = calls;
+        }
+
+        public Object invoke(Object proxy, final Method method, final Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class || !COALESCED_OPERATIONS.contains(method.getName())) {
+                return invokeService(method, args);
+            }
+
+            List<Object> key = Arrays.asList(connection, serviceInterface.getName(), method.getName(), describe(args != null ? args : new Object[0]));
+            boolean[] joined = new boolean[1];
+            Object result;
+            try {
+                result = calls.execute(key, new Callable<Object>() {
+                    public Object call() throws Exception {
+                        try {
+                            return invokeService(method, args);
+                        } catch (Exception | Error e) {
+                            throw e;
+                        } catch (Throwable t) {
+                            throw new InvocationTargetException(t);
+                        }
+                    }
+                }, joined);
+            } catch (ExecutionException e) {
+                throw e.getCause();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new WebServiceException("Interrupted while waiting for " + method.getName() + " on Coverity Connect", e);
+            }
+
+            if (joined[0]) {
+                coalescedCalls.incrementAndGet();
+            }
+            // the result may be shared with other callers, so each one gets its own copy to change
+            return copy(result);
+        }
+
+        private Object invokeService(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(service, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
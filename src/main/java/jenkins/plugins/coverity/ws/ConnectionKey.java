@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Locale;
+
+import jenkins.plugins.coverity.CIMInstance;
+
+/**
+ * Identity of a connection to Coverity Connect: host, port, SSL, credentials and transport settings. Two {@link CIMInstance}s with the same
+ * connection identity can share their web service ports, whatever their names. The password is only kept as a hash.
+ */
+public final class ConnectionKey {
+    private final String host;
+    private final int port;
+    private final boolean useSSL;
+    private final String user;
+    private final byte[] passwordHash;
+    private final boolean useCompression;
+
+    public ConnectionKey(String host, int port, boolean useSSL, String user, String password) {
+        this(host, port, useSSL, user, password, false);
+    }
+
+    public ConnectionKey(String host, int port, boolean useSSL, String user, String password, boolean useCompression) {
+        this.host = host != null ? host.trim().toLowerCase(Locale.ENGLISH) : "";
+        this.port = port;
+        this.useSSL = useSSL;
+        this.user = user != null ? user : "";
+        this.passwordHash = hash(password != null ? password : "");
+        this.useCompression = useCompression;
+    }
+
+    public static ConnectionKey of(CIMInstance cimInstance) {
+        return new ConnectionKey(cimInstance.getHost(), cimInstance.getPort(), cimInstance.isUseSSL(), cimInstance.getUser(),
+            cimInstance.getPassword(), cimInstance.isUseCompression());
+    }
+
+    private static byte[] hash(String password) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(password.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public boolean isUseSSL() {
+        return useSSL;
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    public boolean isUseCompression() {
+        return useCompression;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ConnectionKey)) return false;
+
+        ConnectionKey that = (ConnectionKey) o;
+        return port == that.port && useSSL == that.useSSL && host.equals(that.host) && user.equals(that.user)
+            && Arrays.equals(passwordHash, that.passwordHash) && useCompression == that.useCompression;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = host.hashCode();
+        result = 31 * result + port;
+        result = 31 * result + (useSSL ? 1 : 0);
+        result = 31 * result + user.hashCode();
+        result = 31 * result + Arrays.hashCode(passwordHash);
+        result = 31 * result + (useCompression ? 1 : 0);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return (useSSL ? "https://" : "http://") + user + "@" + host + ":" + port;
+    }
+}
@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+/**
+ * Progress of a defect fetch which is written to disk after each completed page. Pages are requested in ascending
+ * cid order, so an interrupted fetch can continue with the defects after the last cid written, instead of starting
+ * over.
+ */
+class DefectFetchCheckpoint {
+    private final String query;
+    private final long lastCid;
+    private final int count;
+    private final long length;
+
+    /**
+     * @param query identifies the snapshot and filters of the fetch, a checkpoint is only used for the same query
+     * @param lastCid the highest cid written to the record file
+     * @param count the number of records written to the record file
+     * @param length the length in bytes of the records written to the record file
+     */
+    DefectFetchCheckpoint(String query, long lastCid, int count, long length) {
+        this.query = query;
+        this.lastCid = lastCid;
+        this.count = count;
+        this.length = length;
+    }
+
+    long getLastCid() {
+        return lastCid;
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    long getLength() {
+        return length;
+    }
+
+    void save(File file) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("query", query);
+        properties.setProperty("lastCid", String.valueOf(lastCid));
+        properties.setProperty("count", String.valueOf(count));
+        properties.setProperty("length", String.valueOf(length));
+
+        File tempFile = new File(file.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(tempFile)) {
+            properties.store(out, null);
+        }
+        if (!tempFile.renameTo(file)) {
+            // renameTo does not replace existing files on all platforms
+            if (!file.delete() || !tempFile.renameTo(file)) {
+                throw new IOException("Unable to write checkpoint " + file);
+            }
+        }
+    }
+
+    /**
+     * Loads the checkpoint for the given query, returns null if there is no checkpoint or it belongs to another query
+     */
+    static DefectFetchCheckpoint load(File file, String query) {
+        if (!file.isFile()) {
+            return null;
+        }
+
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            properties.load(in);
+            if (!query.equals(properties.getProperty("query"))) {
+                return null;
+            }
+            return new DefectFetchCheckpoint(query,
+                Long.parseLong(properties.getProperty("lastCid")),
+                Integer.parseInt(properties.getProperty("count")),
+                Long.parseLong(properties.getProperty("length")));
+        } catch (IOException | RuntimeException e) {
+            // an unreadable checkpoint only means the fetch starts over
+            return null;
+        }
+    }
+}
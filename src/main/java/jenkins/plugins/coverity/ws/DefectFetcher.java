@@ -0,0 +1,526 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.PrintStream;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.GregorianCalendar;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.ws.WebServiceException;
+import javax.xml.ws.soap.SOAPFaultException;
+
+import com.coverity.ws.v9.ComponentIdDataObj;
+import com.coverity.ws.v9.CovRemoteServiceException_Exception;
+import com.coverity.ws.v9.DefectService;
+import com.coverity.ws.v9.MergedDefectFilterSpecDataObj;
+import com.coverity.ws.v9.PageSpecDataObj;
+import com.coverity.ws.v9.SnapshotFilterSpecDataObj;
+import com.coverity.ws.v9.SnapshotIdDataObj;
+import com.coverity.ws.v9.SnapshotScopeSpecDataObj;
+import com.coverity.ws.v9.StreamIdDataObj;
+
+import hudson.Util;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkins.plugins.coverity.CIMInstance;
+import jenkins.plugins.coverity.CIMStream;
+import jenkins.plugins.coverity.CoverityDefect;
+import jenkins.plugins.coverity.DefectFilters;
+import jenkins.plugins.coverity.DefectRecordFile;
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Reads the defects of a configured {@link CIMStream} from Coverity Connect. Used by {@link DefectReader} during the
+ * build, and by {@link jenkins.plugins.coverity.CoverityBuildAction} for defects which were only counted during the
+ * build.
+ */
+public class DefectFetcher {
+    /**
+     * Number of defects requested per page
+     */
+    private static final int PAGE_SIZE = 1000;
+
+    /**
+     * Pages are sorted by cid, so the page order is stable and a fetch can continue after a given cid
+     */
+    private static final String SORT_FIELD_CID = "cid";
+
+    /**
+     * Number of attempts for fetching all defects of a snapshot, and the delay before the first retry
+     */
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_DELAY_MILLIS = Long.getLong(DefectFetcher.class.getName() + ".retryDelay", 2000);
+
+    private static final String CHECKPOINT_EXTENSION = ".checkpoint";
+
+    /**
+     * Snapshot selector for the latest snapshot of the stream
+     */
+    public static final String LAST_SNAPSHOT = "last()";
+
+    /**
+     * Number of days to look back for the latest snapshot of a stream. Builds usually read the snapshot they have just
+     * committed, so the snapshots of the last day are asked for first, and only if there are none the lookup is widened
+     * to this many days, instead of listing every snapshot of the stream.
+     */
+    static final int SNAPSHOT_LOOKUP_DAYS = Integer.getInteger(DefectFetcher.class.getName() + ".snapshotLookupDays", 30);
+
+    /**
+     * Values of {@link MergedDefectFilterSpecDataObj#setSnapshotComparisonField(String)} selecting the defects which are
+     * only present in the shown snapshot, or only in the compared snapshot.
+     */
+    private static final String SNAPSHOT_COMPARISON_NEW = "New";
+    private static final String SNAPSHOT_COMPARISON_FIXED = "Fixed";
+
+    /**
+     * Decode defect pages with {@link MergedDefectsPageDecoder} instead of binding the full JAXB response objects
+     */
+    static final boolean STREAMING_DECODER = Boolean.getBoolean(DefectReader.class.getName() + ".streamingDecoder");
+
+    private final CIMInstance cim;
+    private final CIMStream cimStream;
+    private final PrintStream logger;
+
+    public DefectFetcher(CIMInstance cim, CIMStream cimStream, PrintStream logger) {
+        this.cim = cim;
+        this.cimStream = cimStream;
+        this.logger = logger;
+    }
+
+    /**
+     * Returns the number of defects of the given snapshot matching the configured filters, by requesting a single
+     * defect only.
+     */
+    public int countDefects(String showSelector) throws IOException, CovRemoteServiceException_Exception {
+        SnapshotScopeSpecDataObj snapshotScope = new SnapshotScopeSpecDataObj();
+        snapshotScope.setShowSelector(showSelector);
+
+        PageSpecDataObj pageSpec = newPageSpec(0);
+        pageSpec.setPageSize(1);
+
+        return getPageSource(true).getMergedDefectsForStreams(getStreamIds(), newFilterSpec(), pageSpec, snapshotScope).getTotalNumberOfRecords();
+    }
+
+    /**
+     * Fetches all defects of the given snapshot of the stream into the given record file. Progress is checkpointed
+     * after each page, and a fetch which fails with a transient error continues after the last defect written. This is
+     * the only retry of these calls, each page is requested with a single attempt.
+     *
+     * @return the number of defects written
+     */
+    public int getDefectsForSnapshot(String showSelector, DefectRecordFile recordFile) throws IOException, CovRemoteServiceException_Exception {
+        SnapshotScopeSpecDataObj snapshotScope = new SnapshotScopeSpecDataObj();
+        snapshotScope.setShowSelector(showSelector);
+
+        final File checkpointFile = new File(recordFile.getFile().getPath() + CHECKPOINT_EXTENSION);
+        final String query = showSelector + '\n' + getFilterSignature(cimStream);
+        DefectPageSource pageSource = getPageSource(false);
+
+        for (int attempt = 1; ; attempt++) {
+            DefectFetchCheckpoint checkpoint = DefectFetchCheckpoint.load(checkpointFile, query);
+            DefectRecordFile.Writer writer = null;
+            if (checkpoint != null) {
+                try {
+                    writer = recordFile.openWriter(checkpoint.getLength(), checkpoint.getCount());
+                } catch (IOException e) {
+                    // for example a file written by an older version, start over
+                    logger.println("[Coverity] Unable to continue the previous fetch: " + e.getMessage());
+                    checkpoint = null;
+                }
+            }
+            final DefectRecordFile.Writer records = writer != null ? writer : recordFile.openWriter();
+
+            try {
+                // continue after the last defect written, pages are sorted by cid
+                MergedDefectFilterSpecDataObj filter = newFilterSpec();
+                if (checkpoint != null) {
+                    filter.setMinCid(checkpoint.getLastCid() + 1);
+                }
+
+                fetchDefects(pageSource, filter, snapshotScope, records.getCount(), new DefectPageHandler() {
+                    public void handle(List<CoverityDefect> defects) throws IOException {
+                        if (defects.isEmpty()) {
+                            return;
+                        }
+                        records.append(defects);
+                        records.flush();
+                        new DefectFetchCheckpoint(query, defects.get(defects.size() - 1).getCid(), records.getCount(), records.getLength())
+                            .save(checkpointFile);
+                    }
+                });
+            } catch (IOException | WebServiceException e) {
+                if (attempt >= MAX_ATTEMPTS || !isTransient(e)) {
+                    throw e;
+                }
+                logger.println(MessageFormat.format("[Coverity] Fetching defects failed ({0}), continuing after {1} defects (attempt {2} of {3})",
+                    e.getMessage(), records.getCount(), attempt + 1, MAX_ATTEMPTS));
+                waitBeforeRetry(attempt);
+                continue;
+            } finally {
+                records.close();
+            }
+
+            if (checkpointFile.exists() && !checkpointFile.delete()) {
+                logger.println("[Coverity] Unable to delete " + checkpointFile);
+            }
+            return records.getCount();
+        }
+    }
+
+    /**
+     * Whether the defect filters select defects by a triage attribute (classification, action or severity). Triage
+     * can change without a new snapshot, so the defects matching such filters cannot be derived from the defects which
+     * were newly detected or fixed between two snapshots.
+     */
+    public boolean isFilteredByTriage() {
+        DefectFilters defectFilters = cimStream.getDefectFilters();
+        if (defectFilters == null) {
+            return false;
+        }
+
+        MergedDefectFilterSpecDataObj filter = defectFilters.ToFilterSpecDataObj();
+        try {
+            // an empty list, or one with all values, does not filter
+            CimMetadataCatalog catalog = CimMetadataCatalog.getInstance();
+            return !selectsAll(filter.getClassificationNameList(), catalog.getAttributeValues(cim, "Classification"))
+                || !selectsAll(filter.getActionNameList(), catalog.getAttributeValues(cim, "Action"))
+                || !selectsAll(filter.getSeverityNameList(), catalog.getAttributeValues(cim, "Severity"));
+        } catch (IOException | CovRemoteServiceException_Exception | WebServiceException e) {
+            logger.println("[Coverity] Unable to read the triage attribute values: " + e.getMessage());
+            return true;
+        }
+    }
+
+    private static boolean selectsAll(List<String> selected, List<String> values) {
+        return selected.isEmpty() || selected.containsAll(values);
+    }
+
+    /**
+     * Fetches only the defects which were newly detected or fixed between the previous and the current snapshot, and
+     * merges them with the defects recorded for the previous snapshot into the given record file. Only valid if the
+     * filters do not select by triage, see {@link #isFilteredByTriage()}.
+     *
+     * The previous records are streamed, so only the new and fixed defects are held in memory. If the previous records
+     * are not sorted by cid, or their number is not the expected one, all defects of the snapshot are fetched instead.
+     *
+     * @return the number of defects written
+     */
+    public int getDefectsSinceSnapshot(long previousSnapshotId, long snapshotId, DefectRecordFile previousDefects,
+                                       int previousDefectCount, DefectRecordFile recordFile) throws IOException, CovRemoteServiceException_Exception {
+        SnapshotScopeSpecDataObj snapshotScope = new SnapshotScopeSpecDataObj();
+        snapshotScope.setShowSelector(String.valueOf(snapshotId));
+        snapshotScope.setCompareSelector(String.valueOf(previousSnapshotId));
+
+        DefectPageSource pageSource = getPageSource(true);
+        MergedDefectFilterSpecDataObj fixedFilter = newFilterSpec();
+        fixedFilter.setSnapshotComparisonField(SNAPSHOT_COMPARISON_FIXED);
+        final Set<Long> fixedCids = new HashSet<>();
+        fetchDefects(pageSource, fixedFilter, snapshotScope, 0, new DefectPageHandler() {
+            public void handle(List<CoverityDefect> defects) {
+                for (CoverityDefect defect : defects) {
+                    fixedCids.add(defect.getCid());
+                }
+            }
+        });
+
+        // pages are sorted by cid, so the new defects are too
+        MergedDefectFilterSpecDataObj newFilter = newFilterSpec();
+        newFilter.setSnapshotComparisonField(SNAPSHOT_COMPARISON_NEW);
+        final List<CoverityDefect> newDefects = new ArrayList<>();
+        fetchDefects(pageSource, newFilter, snapshotScope, 0, new DefectPageHandler() {
+            public void handle(List<CoverityDefect> defects) {
+                newDefects.addAll(defects);
+            }
+        });
+
+        final DefectRecordFile.Writer records = recordFile.openWriter();
+        final int[] counts = new int[2]; // previous defects read, fixed defects dropped
+        try {
+            final Iterator<CoverityDefect> added = newDefects.iterator();
+            final CoverityDefect[] nextAdded = { added.hasNext() ? added.next() : null };
+            previousDefects.read(new DefectRecordFile.RecordHandler() {
+                private long lastCid = Long.MIN_VALUE;
+
+                public void handle(CoverityDefect defect) throws IOException {
+                    long cid = defect.getCid();
+                    if (cid <= lastCid) {
+                        throw new UnsortedRecordsException();
+                    }
+                    lastCid = cid;
+                    counts[0]++;
+
+                    while (nextAdded[0] != null && nextAdded[0].getCid() <= cid) {
+                        CoverityDefect newDefect = nextAdded[0];
+                        nextAdded[0] = added.hasNext() ? added.next() : null;
+                        records.append(newDefect);
+                        if (newDefect.getCid() == cid) {
+                            // already recorded, the fetched defect replaces it
+                            return;
+                        }
+                    }
+                    if (fixedCids.contains(cid)) {
+                        counts[1]++;
+                    } else {
+                        records.append(defect);
+                    }
+                }
+            });
+            for (CoverityDefect defect = nextAdded[0]; defect != null; defect = added.hasNext() ? added.next() : null) {
+                records.append(defect);
+            }
+        } catch (UnsortedRecordsException e) {
+            records.close();
+            logger.println("[Coverity] The defects of the previous build are not sorted, fetching all defects");
+            return getDefectsForSnapshot(String.valueOf(snapshotId), recordFile);
+        } finally {
+            records.close();
+        }
+
+        if (counts[0] != previousDefectCount) {
+            logger.println("[Coverity] The defects of the previous build are incomplete, fetching all defects");
+            return getDefectsForSnapshot(String.valueOf(snapshotId), recordFile);
+        }
+
+        logger.println(MessageFormat.format("[Coverity] Fetched {0} new and {1} fixed defects since snapshot {2}",
+            newDefects.size(), counts[1], String.valueOf(previousSnapshotId)));
+        return records.getCount();
+    }
+
+    /**
+     * Returns the id of the latest snapshot of the stream, or null if it could not be determined or the stream has no
+     * snapshot within the last {@link #SNAPSHOT_LOOKUP_DAYS} days.
+     */
+    public Long getLatestSnapshotId() {
+        try {
+            Long latest = getLatestSnapshotId(1);
+            if (latest == null && SNAPSHOT_LOOKUP_DAYS > 1) {
+                latest = getLatestSnapshotId(SNAPSHOT_LOOKUP_DAYS);
+            }
+            return latest;
+        } catch (IOException | CovRemoteServiceException_Exception | WebServiceException | DatatypeConfigurationException e) {
+            logger.println("[Coverity] Unable to determine the latest snapshot of the stream: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private Long getLatestSnapshotId(int days) throws IOException, CovRemoteServiceException_Exception, DatatypeConfigurationException {
+        GregorianCalendar startDate = new GregorianCalendar();
+        startDate.add(Calendar.DAY_OF_MONTH, -days);
+        SnapshotFilterSpecDataObj filterSpec = new SnapshotFilterSpecDataObj();
+        filterSpec.setStartDate(DatatypeFactory.newInstance().newXMLGregorianCalendar(startDate));
+        List<SnapshotIdDataObj> snapshotIds = cim.getConfigurationService().getSnapshotsForStream(getStreamIds().get(0), filterSpec);
+
+        Long latest = null;
+        if (snapshotIds != null) {
+            for (SnapshotIdDataObj snapshotId : snapshotIds) {
+                if (latest == null || snapshotId.getId() > latest) {
+                    latest = snapshotId.getId();
+                }
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * Signature of the instance, stream and defect filters used to fetch defects. Defects of a previous build can only
+     * be reused when its signature is the same.
+     */
+    public static String getFilterSignature(CIMStream cimStream) {
+        MergedDefectFilterSpecDataObj filter = newFilterSpec(cimStream);
+        List<String> componentNames = new ArrayList<>();
+        for (ComponentIdDataObj componentId : filter.getComponentIdList()) {
+            componentNames.add(componentId.getName());
+        }
+
+        StringBuilder signature = new StringBuilder();
+        signature.append(cimStream.getInstance()).append('\n');
+        signature.append(cimStream.getStream()).append('\n');
+        appendSorted(signature, filter.getActionNameList());
+        appendSorted(signature, filter.getClassificationNameList());
+        appendSorted(signature, filter.getSeverityNameList());
+        appendSorted(signature, filter.getImpactList());
+        appendSorted(signature, componentNames);
+        appendSorted(signature, filter.getCheckerList());
+        signature.append(filter.getFirstDetectedStartDate());
+        return Util.getDigestOf(signature.toString());
+    }
+
+    private static void appendSorted(StringBuilder signature, List<String> values) {
+        List<String> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        signature.append(StringUtils.join(sorted, ',')).append('\n');
+    }
+
+    /**
+     * Fetches all pages of defects matching the given filter and snapshot scope and passes them, in order, to the
+     * given handler. The record offset is the number of defects fetched before, it is only used for progress messages.
+     */
+    private void fetchDefects(final DefectPageSource pageSource, final MergedDefectFilterSpecDataObj filter, final SnapshotScopeSpecDataObj snapshotScope,
+                              int recordOffset, DefectPageHandler handler) throws IOException, CovRemoteServiceException_Exception {
+
+        final List<StreamIdDataObj> streamIds = getStreamIds();
+
+        // The first page is fetched on its own, its total number of records tells how many more pages are needed
+        DefectPage firstPage = pageSource.getMergedDefectsForStreams(streamIds, filter, newPageSpec(0), snapshotScope);
+        int defectSize = firstPage.getTotalNumberOfRecords();
+        handler.handle(firstPage.getDefects());
+
+        if (defectSize <= PAGE_SIZE) {
+            return;
+        }
+
+        int remainingPages = (defectSize - 1) / PAGE_SIZE;
+        int concurrency = Math.max(1, Math.min(cim.getDefectPageConcurrency(), remainingPages));
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency,
+            new NamingThreadFactory(new DaemonThreadFactory(), "Coverity defect page fetch"));
+        // the fetch threads send their requests in the lane of the build
+        final RateLimiter.Lane lane = RateLimiter.getCurrentLane();
+
+        try {
+            // Keep at most 'concurrency' pages in flight and consume them in order, so the records keep the page order.
+            // Pages are decoded on the fetch threads so the full web service objects are dropped right away.
+            LinkedList<Future<List<CoverityDefect>>> pendingPages = new LinkedList<>();
+            int nextPageStart = PAGE_SIZE;
+            for(int pageStart = PAGE_SIZE; pageStart < defectSize; pageStart += PAGE_SIZE) {
+                while (pendingPages.size() < concurrency && nextPageStart < defectSize) {
+                    final PageSpecDataObj pageSpec = newPageSpec(nextPageStart);
+                    pendingPages.add(executor.submit(new Callable<List<CoverityDefect>>() {
+                        public List<CoverityDefect> call() throws CovRemoteServiceException_Exception {
+                            RateLimiter.Lane previousLane = RateLimiter.setCurrentLane(lane);
+                            try {
+                                return pageSource.getMergedDefectsForStreams(streamIds, filter, pageSpec, snapshotScope).getDefects();
+                            } finally {
+                                RateLimiter.setCurrentLane(previousLane);
+                            }
+                        }
+                    }));
+                    nextPageStart += PAGE_SIZE;
+                }
+
+                logger.println(MessageFormat.format("[Coverity] Fetching defects for stream \"{0}\" (fetched {1} of {2})", cimStream.getStream(), recordOffset + pageStart, recordOffset + defectSize));
+                handler.handle(waitForPage(pendingPages.removeFirst()));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the source of defect pages. Either way the calls go through the circuit breaker of the server, and they
+     * are retried only if requested.
+     */
+    private DefectPageSource getPageSource(boolean retry) throws IOException {
+        if (STREAMING_DECODER) {
+            DefectPageSource pageSource = ResilientWebServices.wrap(DefectPageSource.class,
+                new StreamingDefectPageSource(cim.getDefectServiceDispatch()), cim);
+            return retry ? pageSource : ResilientWebServices.withoutRetries(DefectPageSource.class, pageSource);
+        }
+        DefectService defectService = cim.getDefectService();
+        return new JaxbDefectPageSource(retry ? defectService : ResilientWebServices.withoutRetries(DefectService.class, defectService));
+    }
+
+    private List<StreamIdDataObj> getStreamIds() {
+        StreamIdDataObj streamId = new StreamIdDataObj();
+        streamId.setName(cimStream.getStream());
+        final List<StreamIdDataObj> streamIds = new ArrayList<StreamIdDataObj>();
+        streamIds.add(streamId);
+        return streamIds;
+    }
+
+    private MergedDefectFilterSpecDataObj newFilterSpec() {
+        return newFilterSpec(cimStream);
+    }
+
+    private static MergedDefectFilterSpecDataObj newFilterSpec(CIMStream cimStream) {
+        DefectFilters defectFilters = cimStream.getDefectFilters();
+        return defectFilters != null ? defectFilters.ToFilterSpecDataObj() : new MergedDefectFilterSpecDataObj();
+    }
+
+    private PageSpecDataObj newPageSpec(int pageStart) {
+        PageSpecDataObj pageSpec = new PageSpecDataObj();
+        pageSpec.setPageSize(PAGE_SIZE);
+        pageSpec.setStartIndex(pageStart);
+        pageSpec.setSortAscending(true);
+        pageSpec.setSortField(SORT_FIELD_CID);
+        return pageSpec;
+    }
+
+    /**
+     * Service faults and interrupts are final, other connection and I/O errors are retried
+     */
+    private static boolean isTransient(Exception e) {
+        return !(e instanceof SOAPFaultException) && !(e instanceof InterruptedIOException);
+    }
+
+    private static void waitBeforeRetry(int attempt) throws InterruptedIOException {
+        try {
+            Thread.sleep(RETRY_DELAY_MILLIS * attempt);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while fetching defects");
+        }
+    }
+
+    /**
+     * Waits for a page requested on the fetch executor and rethrows any failure as it would have been thrown by the
+     * web service call itself.
+     */
+    private List<CoverityDefect> waitForPage(Future<List<CoverityDefect>> page) throws IOException, CovRemoteServiceException_Exception {
+        try {
+            return page.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while fetching defects");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof CovRemoteServiceException_Exception) {
+                throw (CovRemoteServiceException_Exception) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Receives the converted defects of each fetched page, in page order
+     */
+    private interface DefectPageHandler {
+        void handle(List<CoverityDefect> defects) throws IOException;
+    }
+
+    /**
+     * Thrown while merging with previous records which are not sorted by cid, for example those written by an older
+     * version of the plugin
+     */
+    private static class UnsortedRecordsException extends IOException {
+    }
+}
@@ -0,0 +1,40 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import java.util.List;
+
+import jenkins.plugins.coverity.CoverityDefect;
+
+/**
+ * A single page of defects returned by getMergedDefectsForStreams, reduced to the fields kept for each
+ * {@link CoverityDefect}.
+ */
+public class DefectPage {
+    private final int totalNumberOfRecords;
+    private final List<CoverityDefect> defects;
+
+    public DefectPage(int totalNumberOfRecords, List<CoverityDefect> defects) {
+        this.totalNumberOfRecords = totalNumberOfRecords;
+        this.defects = defects;
+    }
+
+    /**
+     * Total number of defects matching the query, across all pages
+     */
+    public int getTotalNumberOfRecords() {
+        return totalNumberOfRecords;
+    }
+
+    public List<CoverityDefect> getDefects() {
+        return defects;
+    }
+}
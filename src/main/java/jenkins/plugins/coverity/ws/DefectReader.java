@@ -12,34 +12,19 @@ package jenkins.plugins.coverity.ws;
 
 
 import java.io.IOException;
-import java.io.PrintStream;
 import java.text.MessageFormat;
-import java.util.ArrayList;
-import java.util.List;
 
 import com.coverity.ws.v9.CovRemoteServiceException_Exception;
-import com.coverity.ws.v9.DefectService;
-import com.coverity.ws.v9.MergedDefectDataObj;
-import com.coverity.ws.v9.MergedDefectFilterSpecDataObj;
-import com.coverity.ws.v9.MergedDefectsPageDataObj;
-import com.coverity.ws.v9.PageSpecDataObj;
-import com.coverity.ws.v9.SnapshotScopeSpecDataObj;
-import com.coverity.ws.v9.StreamIdDataObj;
-
-import hudson.Launcher;
-import hudson.Util;
+
 import hudson.model.AbstractBuild;
 import hudson.model.BuildListener;
-import hudson.model.Hudson;
 import hudson.model.Result;
-import hudson.model.TaskListener;
 import jenkins.model.Jenkins;
 import jenkins.plugins.coverity.CIMInstance;
 import jenkins.plugins.coverity.CIMStream;
 import jenkins.plugins.coverity.CoverityBuildAction;
-import jenkins.plugins.coverity.CoverityDefect;
 import jenkins.plugins.coverity.CoverityPublisher;
-import jenkins.plugins.coverity.DefectFilters;
+import jenkins.plugins.coverity.DefectRecordFile;
 import org.apache.commons.lang.StringUtils;
 
 /**
@@ -74,20 +59,67 @@ public class DefectReader {
 
         listener.getLogger().println(MessageFormat.format("[Coverity] Fetching defects for stream \"{0}\"", cimStream.getStream()));
 
-        List<MergedDefectDataObj> defects = null;
-
         try {
-            defects = getDefectsForSnapshot(cimInstance, cimStream, listener.getLogger());
+            DefectFetcher fetcher = new DefectFetcher(cimInstance, cimStream, listener.getLogger());
+
+            // Pin the fetch to the concrete latest snapshot. A snapshot does not change once committed, so the
+            // defects can be reused by the next build or other jobs reading the same stream with the same filters.
+            Long snapshotId = fetcher.getLatestSnapshotId();
+            String filterSignature = DefectFetcher.getFilterSignature(cimStream);
+            String showSelector = snapshotId != null ? String.valueOf(snapshotId) : DefectFetcher.LAST_SNAPSHOT;
+
+            DefectResultCache cache = snapshotId != null ? DefectResultCache.getInstance() : null;
+            boolean incremental = snapshotId != null && publisher.isFetchDefectsIncrementally();
+            // triage can change without a new snapshot, so defects selected by triage are not derived from a snapshot alone
+            boolean filteredByTriage = (cache != null || incremental) && fetcher.isFilteredByTriage();
+            DefectResultCache.Entry cachedDefects = cache != null ? cache.get(filterSignature, snapshotId, filteredByTriage) : null;
+
+            int defectCount;
+            CoverityBuildAction action;
+            if (cachedDefects == null && publisher.isCountDefectsOnly()) {
+                // A single defect is requested, the total number of records is enough to set the build result
+                defectCount = fetcher.countDefects(showSelector);
+                action = new CoverityBuildAction(build, cimStream, defectCount, snapshotId);
+            } else {
+                // Defects are written to the build's record file page by page, so only the pages in flight are kept in memory
+                DefectRecordFile recordFile = DefectRecordFile.forBuild(build);
+                DefectRecordFile previousDefects = null;
+                CoverityBuildAction previousAction = null;
+                if (cachedDefects == null && incremental) {
+                    if (filteredByTriage) {
+                        listener.getLogger().println("[Coverity] The defect filters select by triage, which can change without a new snapshot. Fetching all defects.");
+                    } else {
+                        previousAction = getPreviousAction(filterSignature);
+                        previousDefects = getPreviousDefects(previousAction);
+                    }
+                }
 
-            List<CoverityDefect> matchingDefects = new ArrayList<>();
+                if (cachedDefects != null) {
+                    listener.getLogger().println(MessageFormat.format("[Coverity] Using cached defects of snapshot {0}", String.valueOf(snapshotId)));
+                    try {
+                        DefectRecordFile.Writer records = recordFile.openWriter();
+                        try {
+                            defectCount = cachedDefects.getRecords().appendTo(records);
+                        } finally {
+                            records.close();
+                        }
+                    } finally {
+                        cachedDefects.close();
+                    }
+                } else if (previousDefects != null) {
+                    defectCount = fetcher.getDefectsSinceSnapshot(previousAction.getSnapshotId(), snapshotId, previousDefects, previousAction.getDefectCount(), recordFile);
+                } else {
+                    defectCount = fetcher.getDefectsForSnapshot(showSelector, recordFile);
+                }
 
-            // Loop through all defects create defect objects
-            for(MergedDefectDataObj defect : defects) {
-                matchingDefects.add(new CoverityDefect(defect.getCid(), defect.getCheckerName(), defect.getFunctionDisplayName(), defect.getFilePathname()));
+                if (cache != null && cachedDefects == null) {
+                    cache.put(filterSignature, snapshotId, recordFile);
+                }
+                action = new CoverityBuildAction(build, cimStream.getProject(), cimStream.getStream(), cimStream.getInstance(), defectCount, snapshotId, filterSignature);
             }
 
-            if(!matchingDefects.isEmpty()) {
-                listener.getLogger().println(MessageFormat.format("[Coverity] Found {0} defects matching all filters", matchingDefects.size()));
+            if(defectCount > 0) {
+                listener.getLogger().println(MessageFormat.format("[Coverity] Found {0} defects matching all filters", defectCount));
                 if(publisher.isFailBuild()) {
                     if(build.getResult().isBetterThan(Result.FAILURE)) {
                         build.setResult(Result.FAILURE);
@@ -104,7 +136,6 @@ public class DefectReader {
                 listener.getLogger().println("[Coverity] No defects matched all filters.");
             }
 
-            CoverityBuildAction action = new CoverityBuildAction(build, cimStream.getProject(), cimStream.getStream(), cimStream.getInstance(), matchingDefects);
             build.addAction(action);
 
             String rootUrl = Jenkins.getInstance().getRootUrl();
@@ -120,39 +151,33 @@ public class DefectReader {
         }
     }
 
-    private List<MergedDefectDataObj> getDefectsForSnapshot(CIMInstance cim, CIMStream cimStream, PrintStream logger) throws IOException, CovRemoteServiceException_Exception {
-
-        List<MergedDefectDataObj> mergeList = new ArrayList<MergedDefectDataObj>();
-
-        DefectService ds = cim.getDefectService();
-
-        StreamIdDataObj streamId = new StreamIdDataObj();
-        streamId.setName(cimStream.getStream());
-        List<StreamIdDataObj> streamIds = new ArrayList<StreamIdDataObj>();
-        streamIds.add(streamId);
-
-        DefectFilters defectFilters = cimStream.getDefectFilters();
-        MergedDefectFilterSpecDataObj filter = defectFilters != null ?  defectFilters.ToFilterSpecDataObj() : new MergedDefectFilterSpecDataObj();
-
-        PageSpecDataObj pageSpec = new PageSpecDataObj();
-
-        SnapshotScopeSpecDataObj snapshotScope = new SnapshotScopeSpecDataObj();
-        snapshotScope.setShowSelector("last()");
-
-        // The loop will pull up to the maximum amount of defect, doing per page size
-        int pageSize = 1000; // Size of page to be pulled
-        int defectSize = 3000; // Maximum amount of defect to pull
-        for(int pageStart = 0; pageStart < defectSize; pageStart += pageSize){
-            if (pageStart >= pageSize)
-                logger.println(MessageFormat.format("[Coverity] Fetching defects for stream \"{0}\" (fetched {1} of {2})", cimStream.getStream(), pageStart, defectSize));
+    /**
+     * Returns the build action of the most recent previous build with Coverity defects, if its defects were read from a
+     * known snapshot with the same stream and defect filters.
+     */
+    private CoverityBuildAction getPreviousAction(String filterSignature) {
+        for (AbstractBuild<?, ?> previous = build.getPreviousBuild(); previous != null; previous = previous.getPreviousBuild()) {
+            CoverityBuildAction action = previous.getAction(CoverityBuildAction.class);
+            if (action != null) {
+                if (action.getSnapshotId() != null && filterSignature.equals(action.getFilterSignature())) {
+                    return action;
+                }
+                return null;
+            }
+        }
+        return null;
+    }
 
-            pageSpec.setPageSize(pageSize);
-            pageSpec.setStartIndex(pageStart);
-            pageSpec.setSortAscending(true);
-            MergedDefectsPageDataObj mergedDefectsForStreams = ds.getMergedDefectsForStreams(streamIds, filter, pageSpec, snapshotScope);
-            defectSize = mergedDefectsForStreams.getTotalNumberOfRecords();
-            mergeList.addAll(mergedDefectsForStreams.getMergedDefects());
+    /**
+     * Returns the record file of the previous build, or null if its defects are not available. The file is only read
+     * while merging, see {@link DefectFetcher#getDefectsSinceSnapshot}.
+     */
+    private DefectRecordFile getPreviousDefects(CoverityBuildAction previousAction) {
+        if (previousAction == null) {
+            return null;
         }
-        return mergeList;
+
+        DefectRecordFile recordFile = DefectRecordFile.forBuild(previousAction.getBuild());
+        return recordFile.exists() ? recordFile : null;
     }
 }
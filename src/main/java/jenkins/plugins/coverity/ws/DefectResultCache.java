@@ -0,0 +1,221 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import hudson.Util;
+import jenkins.model.Jenkins;
+import jenkins.plugins.coverity.DefectRecordFile;
+
+/**
+ * Cache of fetched defect record files on the master, keyed by the snapshot the defects were read from and the
+ * signature of the instance, stream and defect filters (see {@link DefectFetcher#getFilterSignature}). A snapshot
+ * never changes once committed, so builds and jobs reading the same snapshot with the same filters can reuse the
+ * defects without any web service calls. Filters selecting by triage are the exception, triage can change at any time,
+ * so such results are only reused for a short time.
+ *
+ * The modification time of an entry is the time it was written, the access time is its last use.
+ */
+public class DefectResultCache {
+    private static final Logger logger = Logger.getLogger(DefectResultCache.class.getName());
+
+    /**
+     * Maximum number of cached results, the least recently used results are removed first
+     */
+    private static final int MAX_ENTRIES = Integer.getInteger(DefectResultCache.class.getName() + ".maxEntries", 100);
+
+    /**
+     * How long results of filters selecting by triage are reused
+     */
+    private static final long TRIAGE_MAX_AGE_MILLIS = TimeUnit.MINUTES.toMillis(
+        Integer.getInteger(DefectResultCache.class.getName() + ".triageMaxAgeMinutes", 5));
+
+    private static final String FILE_EXTENSION = ".bin";
+
+    /**
+     * Number of readers of each entry, entries being read are not pruned. Also guards checking and deleting entries.
+     */
+    private static final Map<File, Integer> readers = new HashMap<>();
+
+    private final File directory;
+    private final int maxEntries;
+
+    public DefectResultCache(File directory) {
+        this(directory, MAX_ENTRIES);
+    }
+
+    DefectResultCache(File directory, int maxEntries) {
+        this.directory = directory;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Returns the cache in the Jenkins root directory, or null if it is not available
+     */
+    public static DefectResultCache getInstance() {
+        Jenkins jenkins = Jenkins.getInstance();
+        File rootDir = jenkins != null ? jenkins.getRootDir() : null;
+        if (rootDir == null) {
+            return null;
+        }
+        return new DefectResultCache(new File(rootDir, "coverity/defect-cache"));
+    }
+
+    /**
+     * Returns the cached defects for the given filter signature and snapshot, or null if they are not cached. The
+     * entry is not removed until it is closed.
+     *
+     * @param filteredByTriage whether the filters select by triage, see {@link DefectFetcher#isFilteredByTriage()}
+     */
+    public Entry get(String filterSignature, long snapshotId, boolean filteredByTriage) {
+        File file = getFile(filterSignature, snapshotId);
+        synchronized (readers) {
+            if (!file.isFile()) {
+                return null;
+            }
+            if (filteredByTriage && System.currentTimeMillis() - file.lastModified() > TRIAGE_MAX_AGE_MILLIS) {
+                logger.fine("Cached defects in " + file + " are older than the triage they were selected by");
+                return null;
+            }
+            Integer count = readers.get(file);
+            readers.put(file, count != null ? count + 1 : 1);
+        }
+
+        try {
+            Files.getFileAttributeView(file.toPath(), BasicFileAttributeView.class)
+                .setTimes(null, FileTime.fromMillis(System.currentTimeMillis()), null);
+        } catch (IOException e) {
+            logger.fine("Unable to update the last use of " + file);
+        }
+        return new Entry(file);
+    }
+
+    /**
+     * Stores a copy of the given record file for the given filter signature and snapshot
+     */
+    public void put(String filterSignature, long snapshotId, DefectRecordFile records) {
+        File file = getFile(filterSignature, snapshotId);
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Unable to create " + directory);
+            }
+
+            // copy to a temporary file first, so concurrent builds never read a partial entry
+            File tempFile = File.createTempFile("defects", ".tmp", directory);
+            try {
+                Files.copy(records.getFile().toPath(), tempFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                if (tempFile.exists() && !tempFile.delete()) {
+                    logger.fine("Unable to delete " + tempFile);
+                }
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Unable to cache Coverity defects in " + file, e);
+            return;
+        }
+
+        prune();
+    }
+
+    /**
+     * Removes the least recently used entries above the maximum number of entries, except those being read
+     */
+    private void prune() {
+        File[] files = directory.listFiles();
+        if (files == null || files.length <= maxEntries) {
+            return;
+        }
+
+        final Map<File, Long> lastUse = new HashMap<>();
+        List<File> entries = new ArrayList<>();
+        for (File file : files) {
+            if (file.getName().endsWith(FILE_EXTENSION)) {
+                lastUse.put(file, getLastUse(file));
+                entries.add(file);
+            }
+        }
+        Collections.sort(entries, new Comparator<File>() {
+            public int compare(File f1, File f2) {
+                long m1 = lastUse.get(f1);
+                long m2 = lastUse.get(f2);
+                return m1 < m2 ? 1 : (m1 == m2 ? 0 : -1);
+            }
+        });
+
+        synchronized (readers) {
+            for (int i = maxEntries; i < entries.size(); i++) {
+                File file = entries.get(i);
+                if (!readers.containsKey(file) && !file.delete()) {
+                    logger.fine("Unable to delete " + file);
+                }
+            }
+        }
+    }
+
+    private static long getLastUse(File file) {
+        try {
+            return Files.readAttributes(file.toPath(), BasicFileAttributes.class).lastAccessTime().toMillis();
+        } catch (IOException e) {
+            return file.lastModified();
+        }
+    }
+
+    private File getFile(String filterSignature, long snapshotId) {
+        return new File(directory, Util.getDigestOf(filterSignature + '\n' + snapshotId) + FILE_EXTENSION);
+    }
+
+    /**
+     * A cached result in use. Closing it allows the entry to be removed again.
+     */
+    public static class Entry implements Closeable {
+        private final File file;
+        private boolean closed;
+
+        private Entry(File file) {
+            this.file = file;
+        }
+
+        public DefectRecordFile getRecords() {
+            return new DefectRecordFile(file);
+        }
+
+        public void close() {
+            synchronized (readers) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                Integer count = readers.remove(file);
+                if (count != null && count > 1) {
+                    readers.put(file, count - 1);
+                }
+            }
+        }
+    }
+}
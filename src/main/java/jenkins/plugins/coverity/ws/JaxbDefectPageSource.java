@@ -0,0 +1,52 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.coverity.ws.v9.CovRemoteServiceException_Exception;
+import com.coverity.ws.v9.DefectService;
+import com.coverity.ws.v9.MergedDefectDataObj;
+import com.coverity.ws.v9.MergedDefectFilterSpecDataObj;
+import com.coverity.ws.v9.MergedDefectsPageDataObj;
+import com.coverity.ws.v9.PageSpecDataObj;
+import com.coverity.ws.v9.SnapshotScopeSpecDataObj;
+import com.coverity.ws.v9.StreamIdDataObj;
+
+import jenkins.plugins.coverity.CoverityDefect;
+
+/**
+ * Reads defect pages through the generated {@link DefectService} client, which binds the complete
+ * {@link MergedDefectDataObj} for every defect before it is converted.
+ */
+public class JaxbDefectPageSource implements DefectPageSource {
+    private final DefectService defectService;
+
+    public JaxbDefectPageSource(DefectService defectService) {
+        this.defectService = defectService;
+    }
+
+    public DefectPage getMergedDefectsForStreams(List<StreamIdDataObj> streamIds, MergedDefectFilterSpecDataObj filterSpec,
+                                                 PageSpecDataObj pageSpec, SnapshotScopeSpecDataObj snapshotScope) throws CovRemoteServiceException_Exception {
+        MergedDefectsPageDataObj page = defectService.getMergedDefectsForStreams(streamIds, filterSpec, pageSpec, snapshotScope);
+        Integer total = page.getTotalNumberOfRecords();
+        return new DefectPage(total != null ? total : 0, toCoverityDefects(page.getMergedDefects()));
+    }
+
+    static List<CoverityDefect> toCoverityDefects(List<MergedDefectDataObj> mergedDefects) {
+        List<CoverityDefect> defects = new ArrayList<>(mergedDefects.size());
+        for(MergedDefectDataObj defect : mergedDefects) {
+            defects.add(new CoverityDefect(defect.getCid(), defect.getCheckerName(), defect.getFunctionDisplayName(), defect.getFilePathname()));
+        }
+        return defects;
+    }
+}
@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import jenkins.plugins.coverity.CoverityDefect;
+
+/**
+ * Decodes a getMergedDefectsForStreams response straight from the XML stream. Only the fields kept for each
+ * {@link CoverityDefect} are read, all other elements of a merged defect are skipped without being bound.
+ */
+public class MergedDefectsPageDecoder {
+    private static final String MERGED_DEFECTS = "mergedDefects";
+    private static final String TOTAL_NUMBER_OF_RECORDS = "totalNumberOfRecords";
+
+    private MergedDefectsPageDecoder() {
+    }
+
+    /**
+     * Reads the remaining events of the given reader and returns the decoded page. The reader can be positioned
+     * anywhere before the mergedDefectsPageDataObj content, for example on the response wrapper element.
+     */
+    public static DefectPage decode(XMLStreamReader reader) throws XMLStreamException {
+        List<CoverityDefect> defects = new ArrayList<>();
+        int totalNumberOfRecords = 0;
+
+        while (reader.hasNext()) {
+            if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+
+            String name = reader.getLocalName();
+            if (MERGED_DEFECTS.equals(name)) {
+                CoverityDefect defect = decodeDefect(reader);
+                if (defect != null) {
+                    defects.add(defect);
+                }
+            } else if (TOTAL_NUMBER_OF_RECORDS.equals(name)) {
+                totalNumberOfRecords = Integer.parseInt(reader.getElementText().trim());
+            }
+        }
+
+        return new DefectPage(totalNumberOfRecords, defects);
+    }
+
+    /**
+     * Decodes a single mergedDefects element, the reader is left on its end element. Returns null for nil elements.
+     */
+    private static CoverityDefect decodeDefect(XMLStreamReader reader) throws XMLStreamException {
+        boolean nil = "true".equals(reader.getAttributeValue(XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI, "nil"));
+
+        Long cid = null;
+        String checkerName = null;
+        String functionDisplayName = null;
+        String filePathname = null;
+
+        // only direct children (depth 1) are fields of the defect, nested elements belong to skipped values
+        int depth = 0;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                if (depth == 0) {
+                    String name = reader.getLocalName();
+                    if ("cid".equals(name)) {
+                        cid = Long.valueOf(reader.getElementText().trim());
+                        continue;
+                    } else if ("checkerName".equals(name)) {
+                        checkerName = reader.getElementText();
+                        continue;
+                    } else if ("functionDisplayName".equals(name)) {
+                        functionDisplayName = reader.getElementText();
+                        continue;
+                    } else if ("filePathname".equals(name)) {
+                        filePathname = reader.getElementText();
+                        continue;
+                    }
+                }
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if (depth == 0) {
+                    break;
+                }
+                depth--;
+            }
+        }
+
+        return nil ? null : new CoverityDefect(cid, checkerName, functionDisplayName, filePathname);
+    }
+}
@@ -0,0 +1,69 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import com.coverity.ws.v9.AttributeDefinitionDataObj;
+import com.coverity.ws.v9.AttributeDefinitionIdDataObj;
+import com.coverity.ws.v9.ComponentMapDataObj;
+import com.coverity.ws.v9.ComponentMapFilterSpecDataObj;
+import com.coverity.ws.v9.ConfigurationService;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * Starts the lookups of filter metadata (attribute values, checker names and component maps) which
+ * {@link CimMetadataCatalog} needs, so they run concurrently instead of one after the other. Each lookup is a blocking
+ * call of the {@link ConfigurationService}, run on the given executor, usually the lookup pool of
+ * {@link WebServiceExecutors}.
+ */
+public class MetadataLookups {
+    private final ConfigurationService service;
+    private final ListeningExecutorService executor;
+
+    public MetadataLookups(ConfigurationService service, ListeningExecutorService executor) {
+        this.service = service;
+        this.executor = executor;
+    }
+
+    public ListenableFuture<AttributeDefinitionDataObj> getAttribute(final AttributeDefinitionIdDataObj attributeDefinitionId) {
+        return submit(new Callable<AttributeDefinitionDataObj>() {
+            public AttributeDefinitionDataObj call() throws Exception {
+                return service.getAttribute(attributeDefinitionId);
+            }
+        });
+    }
+
+    public ListenableFuture<List<ComponentMapDataObj>> getComponentMaps(final ComponentMapFilterSpecDataObj filterSpec) {
+        return submit(new Callable<List<ComponentMapDataObj>>() {
+            public List<ComponentMapDataObj> call() throws Exception {
+                return service.getComponentMaps(filterSpec);
+            }
+        });
+    }
+
+    public ListenableFuture<List<String>> getCheckerNames() {
+        return submit(new Callable<List<String>>() {
+            public List<String> call() throws Exception {
+                return service.getCheckerNames();
+            }
+        });
+    }
+
+    /**
+     * Runs the call on the executor, in the {@link RateLimiter.Lane} of the calling thread
+     */
+    private <T> ListenableFuture<T> submit(Callable<T> call) {
+        return executor.submit(WebServiceExecutors.inLane(RateLimiter.getCurrentLane(), call));
+    }
+}
@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
+import javax.xml.ws.BindingProvider;
+import javax.xml.ws.handler.MessageContext;
+import javax.xml.ws.handler.soap.SOAPHandler;
+import javax.xml.ws.handler.soap.SOAPMessageContext;
+
+/**
+ * SOAP handler which records the latency and outcome of each web service call in {@link WebServiceMetrics}. Calls
+ * which end with a SOAP fault or without any response count as errors. Neither the request nor the response message is
+ * read, so a response can still be streamed to the caller.
+ */
+public class MetricsHandler implements SOAPHandler<SOAPMessageContext> {
+    /**
+     * Request context property naming the operation of a call, see {@link #nameOperations(Class, Object)}
+     */
+    public static final String OPERATION_PROPERTY = MetricsHandler.class.getName() + ".operation";
+    private static final String START_PROPERTY = MetricsHandler.class.getName() + ".start";
+
+    private final String server;
+
+    public MetricsHandler(String server) {
+        this.server = server;
+    }
+
+    /**
+     * Returns a client of the given port which names the operation of each call in the request context of the port.
+     * Ports built without a WSDL have no {@link MessageContext#WSDL_OPERATION} to tell the handler. The port must only be
+     * used by one thread at a time, as pooled ports are.
+     */
+    public static <T> T nameOperations(Class<T> serviceInterface, final T port) {
+        return serviceInterface.cast(Proxy.newProxyInstance(serviceInterface.getClassLoader(),
+            new Class<?>[] { serviceInterface, BindingProvider.class }, new InvocationHandler() {
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    Class<?> declaringClass = method.getDeclaringClass();
+                    if (declaringClass != Object.class && declaringClass != BindingProvider.class) {
+                        ((BindingProvider) port).getRequestContext().put(OPERATION_PROPERTY, method.getName());
+                    }
+                    try {
+                        return method.invoke(port, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                }
+            }));
+    }
+
+    public boolean handleMessage(SOAPMessageContext smc) {
+        boolean outbound = ((Boolean) smc.get(MessageContext.MESSAGE_OUTBOUND_PROPERTY)).booleanValue();
+        if (outbound) {
+            smc.put(START_PROPERTY, System.nanoTime());
+        } else {
+            record(smc, false);
+        }
+        return true;
+    }
+
+    public boolean handleFault(SOAPMessageContext smc) {
+        record(smc, true);
+        return true;
+    }
+
+    public void close(MessageContext mc) {
+        // still started means no response was received, e.g. the connection failed
+        record(mc, true);
+    }
+
+    public Set<QName> getHeaders() {
+        return null;
+    }
+
+    private void record(MessageContext mc, boolean error) {
+        Long start = (Long) mc.remove(START_PROPERTY);
+        if (start == null) {
+            return;
+        }
+
+        WebServiceMetrics.getOperationMetrics(server, getOperation(mc)).record(System.nanoTime() - start, error);
+    }
+
+    /**
+     * The operation named in the request context, or the WSDL operation if the port was built from a WSDL
+     */
+    static String getOperation(MessageContext mc) {
+        Object name = mc.get(OPERATION_PROPERTY);
+        if (name != null) {
+            return name.toString();
+        }
+        QName operation = (QName) mc.get(MessageContext.WSDL_OPERATION);
+        return operation != null ? operation.getLocalPart() : "unknown";
+    }
+}
@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Immutable, case-insensitive index over a list of project or stream names, kept as sorted arrays. Membership checks
+ * and prefix lookups are binary searches; substring searches scan the lower-cased names once and stop as soon as a page
+ * of results is complete.
+ */
+public class NameIndex {
+    public static final NameIndex EMPTY = new NameIndex(Collections.<String>emptyList());
+
+    /**
+     * Names in case-insensitive order
+     */
+    private final String[] names;
+
+    /**
+     * Lower-cased names, in the same order
+     */
+    private final String[] keys;
+
+    public NameIndex(Collection<String> names) {
+        String[][] entries = new String[names.size()][];
+        int i = 0;
+        for (String name : names) {
+            entries[i++] = new String[] { toKey(name), name };
+        }
+        Arrays.sort(entries, new Comparator<String[]>() {
+            public int compare(String[] o1, String[] o2) {
+                int result = o1[0].compareTo(o2[0]);
+                return result != 0 ? result : o1[1].compareTo(o2[1]);
+            }
+        });
+
+        this.names = new String[entries.length];
+        this.keys = new String[entries.length];
+        for (i = 0; i < entries.length; i++) {
+            this.keys[i] = entries[i][0];
+            this.names[i] = entries[i][1];
+        }
+    }
+
+    private static String toKey(String name) {
+        return name.toLowerCase(Locale.ENGLISH);
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * Returns all names in case-insensitive order
+     */
+    public List<String> getNames() {
+        return Collections.unmodifiableList(Arrays.asList(names));
+    }
+
+    /**
+     * Returns whether the index contains the name, ignoring case
+     */
+    public boolean contains(String name) {
+        return name != null && Arrays.binarySearch(keys, toKey(name)) >= 0;
+    }
+
+    /**
+     * Returns a page of the names containing the query, ignoring case. Names starting with the query come first, then
+     * the other names containing it, each in case-insensitive order. An empty query matches all names.
+     *
+     * @param offset number of matching names to skip
+     * @param limit maximum number of names to return
+     */
+    public Page search(String query, int offset, int limit) {
+        String key = query != null ? toKey(query) : "";
+        int prefixStart = lowerBound(key);
+        int prefixEnd = key.isEmpty() ? names.length : lowerBound(key + Character.MAX_VALUE);
+
+        List<String> items = new ArrayList<>(Math.min(Math.max(limit, 0), names.length));
+        // names starting with the query are a contiguous range of the sorted arrays
+        int skipped = Math.min(Math.max(offset, 0), prefixEnd - prefixStart);
+        for (int i = prefixStart + skipped; i < prefixEnd; i++) {
+            if (items.size() == limit) {
+                return new Page(items, true);
+            }
+            items.add(names[i]);
+        }
+
+        for (int i = 0; i < names.length; i++) {
+            if (i >= prefixStart && i < prefixEnd || !keys[i].contains(key)) {
+                continue;
+            }
+            if (skipped++ < offset) {
+                continue;
+            }
+            if (items.size() == limit) {
+                return new Page(items, true);
+            }
+            items.add(names[i]);
+        }
+        return new Page(items, false);
+    }
+
+    /**
+     * Index of the first key not less than the given key
+     */
+    private int lowerBound(String key) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keys[middle].compareTo(key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * A page of search results
+     */
+    public static class Page {
+        private final List<String> items;
+        private final boolean more;
+
+        Page(List<String> items, boolean more) {
+            this.items = Collections.unmodifiableList(items);
+            this.more = more;
+        }
+
+        public List<String> getItems() {
+            return items;
+        }
+
+        /**
+         * Whether there are more matching names after this page
+         */
+        public boolean hasMore() {
+            return more;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import java.util.Collections;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.soap.SOAPEnvelope;
+import javax.xml.soap.SOAPException;
+import javax.xml.soap.SOAPHeader;
+import javax.xml.ws.WebServiceException;
+import javax.xml.ws.handler.MessageContext;
+import javax.xml.ws.handler.soap.SOAPHandler;
+import javax.xml.ws.handler.soap.SOAPMessageContext;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * SOAP handler for user authentication using ws-security, like {@link ClientAuthenticationHandlerWSS}, which builds
+ * the plain text UsernameToken header once and inserts a copy of it into each outbound message, instead of running
+ * the XWSS processing pipeline for every message.
+ */
+public class PrecomputedSecurityHeaderHandler implements SOAPHandler<SOAPMessageContext> {
+    public static final String WSU_URI = "http://docs.oasis-open.org/wss/2004/01/oasis-200401-wss-wssecurity-utility-1.0.xsd";
+    public static final String PASSWORD_TEXT_TYPE = "http://docs.oasis-open.org/wss/2004/01/oasis-200401-wss-username-token-profile-1.0#PasswordText";
+
+    private static final QName SECURITY_HEADER = new QName(ClientAuthenticationHandlerWSS.WSS_AUTH_URI,
+        ClientAuthenticationHandlerWSS.WSS_AUTH_LNAME, ClientAuthenticationHandlerWSS.WSS_AUTH_PREFIX);
+
+    /**
+     * The prepared header; DOM nodes are not safe for concurrent reads, so it is only copied while holding its lock
+     */
+    private final Element securityHeader;
+
+    public PrecomputedSecurityHeaderHandler(String userName, String password) {
+        this.securityHeader = createSecurityHeader(userName, password);
+    }
+
+    private static Element createSecurityHeader(String userName, String password) {
+        Document document;
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(true);
+            document = factory.newDocumentBuilder().newDocument();
+        } catch (ParserConfigurationException e) {
+            throw new IllegalStateException(e);
+        }
+
+        String wsse = ClientAuthenticationHandlerWSS.WSS_AUTH_URI;
+        String prefix = ClientAuthenticationHandlerWSS.WSS_AUTH_PREFIX + ":";
+
+        Element security = document.createElementNS(wsse, prefix + ClientAuthenticationHandlerWSS.WSS_AUTH_LNAME);
+        security.setAttributeNS("http://www.w3.org/2000/xmlns/", "xmlns:" + ClientAuthenticationHandlerWSS.WSS_AUTH_PREFIX, wsse);
+
+        Element token = document.createElementNS(wsse, prefix + "UsernameToken");
+        token.setAttributeNS("http://www.w3.org/2000/xmlns/", "xmlns:wsu", WSU_URI);
+        security.appendChild(token);
+
+        Element user = document.createElementNS(wsse, prefix + "Username");
+        user.setTextContent(userName);
+        token.appendChild(user);
+
+        Element passwordElement = document.createElementNS(wsse, prefix + "Password");
+        passwordElement.setAttribute("Type", PASSWORD_TEXT_TYPE);
+        passwordElement.setTextContent(password);
+        token.appendChild(passwordElement);
+
+        document.appendChild(security);
+        return security;
+    }
+
+    public boolean handleMessage(SOAPMessageContext smc) {
+        boolean outbound = ((Boolean) smc.get(MessageContext.MESSAGE_OUTBOUND_PROPERTY)).booleanValue();
+        if (outbound) {
+            try {
+                SOAPEnvelope envelope = smc.getMessage().getSOAPPart().getEnvelope();
+                SOAPHeader header = envelope.getHeader();
+                if (header == null) {
+                    header = envelope.addHeader();
+                }
+
+                Element security;
+                synchronized (securityHeader) {
+                    security = (Element) header.getOwnerDocument().importNode(securityHeader, true);
+                }
+                security.setAttributeNS(envelope.getNamespaceURI(), envelope.getPrefix() + ":mustUnderstand", "1");
+                header.appendChild(security);
+            } catch (SOAPException e) {
+                throw new WebServiceException("Unable to add the ws-security header", e);
+            }
+        }
+        return true;
+    }
+
+    public boolean handleFault(SOAPMessageContext mc) {
+        return true;
+    }
+
+    public void close(MessageContext mc) {
+    }
+
+    public Set<QName> getHeaders() {
+        return Collections.singleton(SECURITY_HEADER);
+    }
+}
@@ -0,0 +1,278 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import hudson.model.Executor;
+import jenkins.plugins.coverity.CIMInstance;
+
+/**
+ * Token bucket limiting the rate of web service requests sent to a Coverity Connect server. All requests to the server
+ * share one bucket, so the configured number of requests per second is a ceiling for the server, with bursts of up to
+ * one second's worth of requests; a rate of zero or less disables the limit.
+ * <p>
+ * Requests are sorted into {@link Lane}s. Build and background requests first pass a bucket of their lane, which only
+ * admits a share of the rate, so they can never take up the whole budget and interactive requests from the Jenkins UI
+ * do not queue behind a wave of build requests.
+ */
+public class RateLimiter {
+    /**
+     * The kind of traffic a request belongs to
+     */
+    public enum Lane {
+        /**
+         * Requests made while running a build, such as defect fetches and stream checks
+         */
+        BUILD(0.8),
+        /**
+         * Requests made for the Jenkins UI, such as project and stream lists or form validation
+         */
+        INTERACTIVE(1),
+        /**
+         * Requests made to refresh cached data, which nobody is waiting for
+         */
+        BACKGROUND(0.1);
+
+        private final double maxShare;
+
+        Lane(double maxShare) {
+            this.maxShare = maxShare;
+        }
+
+        /**
+         * The largest share of the rate of the server which requests in this lane may use
+         */
+        public double getMaxShare() {
+            return maxShare;
+        }
+    }
+
+    private static final ThreadLocal<Lane> currentLane = new ThreadLocal<>();
+    private static final ConcurrentMap<String, RateLimiter> limiters = new ConcurrentHashMap<>();
+
+    private final Bucket bucket = new Bucket();
+    private final Map<Lane, Bucket> laneBuckets = new EnumMap<>(Lane.class);
+    private final Map<Lane, LaneStatistics> statistics = new EnumMap<>(Lane.class);
+    private volatile double requestsPerSecond;
+
+    RateLimiter(double requestsPerSecond) {
+        for (Lane lane : Lane.values()) {
+            if (lane.getMaxShare() < 1) {
+                laneBuckets.put(lane, new Bucket());
+            }
+            statistics.put(lane, new LaneStatistics());
+        }
+        setRequestsPerSecond(requestsPerSecond);
+    }
+
+    /**
+     * Returns the lane of requests made by the current thread. Unless set explicitly, requests made on a build executor
+     * are build requests and all others are interactive.
+     */
+    public static Lane getCurrentLane() {
+        Lane lane = currentLane.get();
+        if (lane != null) {
+            return lane;
+        }
+        return Executor.currentExecutor() != null ? Lane.BUILD : Lane.INTERACTIVE;
+    }
+
+    /**
+     * Sets the lane of requests made by the current thread, for example on threads a build hands work to
+     *
+     * @param lane the lane, or null to go back to the default
+     * @return the lane set before, to be restored afterwards
+     */
+    public static Lane setCurrentLane(Lane lane) {
+        Lane previous = currentLane.get();
+        if (lane != null) {
+            currentLane.set(lane);
+        } else {
+            currentLane.remove();
+        }
+        return previous;
+    }
+
+    /**
+     * Returns the rate limiter of the given Coverity Connect server, keyed by host and port
+     */
+    public static RateLimiter get(String server) {
+        RateLimiter limiter = limiters.get(server);
+        if (limiter == null) {
+            limiters.putIfAbsent(server, new RateLimiter(0));
+            limiter = limiters.get(server);
+        }
+        return limiter;
+    }
+
+    /**
+     * Applies the request rates configured for the given instances to the rate limiters of their servers. When several
+     * instances use the same server, the lowest of their limits applies. Servers no longer configured are not limited.
+     */
+    public static void configure(List<CIMInstance> cimInstances) {
+        Map<String, Double> rates = new HashMap<>();
+        for (CIMInstance cimInstance : cimInstances) {
+            String server = ResilientWebServices.getServerKey(cimInstance);
+            double rate = cimInstance.getMaxRequestsPerSecond();
+            Double configured = rates.get(server);
+            if (configured == null || (rate > 0 && (configured <= 0 || rate < configured))) {
+                rates.put(server, rate);
+            }
+        }
+
+        for (Map.Entry<String, Double> rate : rates.entrySet()) {
+            get(rate.getKey()).setRequestsPerSecond(rate.getValue());
+        }
+        for (Map.Entry<String, RateLimiter> limiter : limiters.entrySet()) {
+            if (!rates.containsKey(limiter.getKey())) {
+                limiter.getValue().setRequestsPerSecond(0);
+            }
+        }
+    }
+
+    /**
+     * Returns the rate limiters of all Coverity Connect servers, keyed by host and port
+     */
+    public static Map<String, RateLimiter> getLimiters() {
+        return Collections.unmodifiableMap(new HashMap<>(limiters));
+    }
+
+    public double getRequestsPerSecond() {
+        return requestsPerSecond;
+    }
+
+    public void setRequestsPerSecond(double requestsPerSecond) {
+        this.requestsPerSecond = requestsPerSecond;
+        long now = System.nanoTime();
+        bucket.setRate(requestsPerSecond, now);
+        for (Map.Entry<Lane, Bucket> laneBucket : laneBuckets.entrySet()) {
+            laneBucket.getValue().setRate(requestsPerSecond * laneBucket.getKey().getMaxShare(), now);
+        }
+    }
+
+    /**
+     * Waits until a request in the given lane may be sent. A request in a lane with a limited share waits for its lane
+     * first, without holding a token of the server.
+     *
+     * @return the time waited in nanoseconds
+     */
+    public long acquire(Lane lane) throws InterruptedException {
+        long waitNanos = 0;
+        Bucket laneBucket = laneBuckets.get(lane);
+        if (laneBucket != null) {
+            waitNanos += sleep(laneBucket.reserve(System.nanoTime()));
+        }
+        waitNanos += sleep(bucket.reserve(System.nanoTime()));
+        statistics.get(lane).record(waitNanos);
+        return waitNanos;
+    }
+
+    private static long sleep(long nanos) throws InterruptedException {
+        if (nanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        }
+        return nanos;
+    }
+
+    public LaneStatistics getStatistics(Lane lane) {
+        return statistics.get(lane);
+    }
+
+    /**
+     * A token bucket. Requests reserve a token even if none is left, so the bucket goes into debt and waiting requests
+     * are served in the order they arrived.
+     */
+    static class Bucket {
+        private double rate;
+        private double capacity;
+        private double tokens;
+        private long lastRefillNanos;
+
+        synchronized void setRate(double rate, long nowNanos) {
+            boolean limited = this.rate > 0;
+            refill(nowNanos);
+            this.rate = rate;
+            this.capacity = Math.max(1, rate);
+            // start with a full bucket when the limit is switched on
+            this.tokens = limited ? Math.min(tokens, capacity) : capacity;
+        }
+
+        /**
+         * Takes a token and returns how long to wait before it is available
+         */
+        synchronized long reserve(long nowNanos) {
+            if (rate <= 0) {
+                return 0;
+            }
+            refill(nowNanos);
+            tokens -= 1;
+            return tokens >= 0 ? 0 : (long) Math.ceil(-tokens / rate * TimeUnit.SECONDS.toNanos(1));
+        }
+
+        private void refill(long nowNanos) {
+            if (rate > 0) {
+                tokens = Math.min(capacity, tokens + (nowNanos - lastRefillNanos) * rate / TimeUnit.SECONDS.toNanos(1));
+            }
+            lastRefillNanos = nowNanos;
+        }
+    }
+
+    /**
+     * Number of requests and time spent waiting for the rate limit in a lane
+     */
+    public static class LaneStatistics {
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong delayedRequests = new AtomicLong();
+        private final AtomicLong totalWaitNanos = new AtomicLong();
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+
+        void record(long waitNanos) {
+            requests.incrementAndGet();
+            if (waitNanos <= 0) {
+                return;
+            }
+            delayedRequests.incrementAndGet();
+            totalWaitNanos.addAndGet(waitNanos);
+            long max = maxWaitNanos.get();
+            while (waitNanos > max && !maxWaitNanos.compareAndSet(max, waitNanos)) {
+                max = maxWaitNanos.get();
+            }
+        }
+
+        public long getRequests() {
+            return requests.get();
+        }
+
+        /**
+         * Number of requests which had to wait for the rate limit
+         */
+        public long getDelayedRequests() {
+            return delayedRequests.get();
+        }
+
+        public long getTotalWaitMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get());
+        }
+
+        public long getMaxWaitMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+        }
+    }
+}
@@ -0,0 +1,219 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Logger;
+
+import javax.xml.ws.WebServiceException;
+import javax.xml.ws.soap.SOAPFaultException;
+
+import jenkins.plugins.coverity.CIMInstance;
+
+/**
+ * Wraps the web service clients of a {@link CIMInstance} with bounded retries and a circuit breaker per Coverity
+ * Connect server. Only read operations (methods starting with "get") are retried, and only for connection failures;
+ * service faults are returned to the caller right away. All operations go through the circuit breaker, and then wait
+ * for the {@link RateLimiter} of the server before a pooled port is borrowed, so no port is held while waiting. Calls
+ * which were never sent, because the wait was interrupted or no pooled port was available, are neither retried nor
+ * counted as failures.
+ */
+public class ResilientWebServices {
+    private static final Logger logger = Logger.getLogger(ResilientWebServices.class.getName());
+
+    private static final int MAX_ATTEMPTS = Integer.getInteger(ResilientWebServices.class.getName() + ".maxAttempts", 3);
+    private static final long BASE_DELAY_MILLIS = Long.getLong(ResilientWebServices.class.getName() + ".baseDelay", 500);
+    private static final long MAX_DELAY_MILLIS = 10000;
+    private static final int FAILURE_THRESHOLD = 5;
+    private static final long OPEN_MILLIS = Long.getLong(ResilientWebServices.class.getName() + ".openDuration", 30000);
+
+    private static final ConcurrentMap<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, WebServiceCallStatistics> statistics = new ConcurrentHashMap<>();
+
+    private ResilientWebServices() {
+    }
+
+    /**
+     * Wraps the given web service client of the given instance
+     */
+    public static <T> T wrap(Class<T> serviceInterface, T service, CIMInstance cimInstance) {
+        String server = getServerKey(cimInstance);
+        return wrap(serviceInterface, service, server, getCircuitBreaker(server), getStatistics(server), MAX_ATTEMPTS, BASE_DELAY_MILLIS);
+    }
+
+    static <T> T wrap(Class<T> serviceInterface, T service, String server, CircuitBreaker circuitBreaker,
+                      WebServiceCallStatistics callStatistics, int maxAttempts, long baseDelayMillis) {
+        return serviceInterface.cast(Proxy.newProxyInstance(serviceInterface.getClassLoader(), new Class<?>[] { serviceInterface },
+            new Handler(service, server, circuitBreaker, callStatistics, maxAttempts, baseDelayMillis)));
+    }
+
+    /**
+     * Returns a client for the same service, server and circuit breaker as the given wrapped client, which makes a
+     * single attempt per call. For callers which retry on their own, so retries are not multiplied. Clients which
+     * were not created by this class are returned as they are.
+     */
+    public static <T> T withoutRetries(Class<T> serviceInterface, T wrappedService) {
+        if (!Proxy.isProxyClass(wrappedService.getClass()) || !(Proxy.getInvocationHandler(wrappedService) instanceof Handler)) {
+            return wrappedService;
+        }
+        Handler handler = (Handler) Proxy.getInvocationHandler(wrappedService);
+        return wrap(serviceInterface, serviceInterface.cast(handler.service), handler.server, handler.circuitBreaker,
+            handler.callStatistics, 1, handler.baseDelayMillis);
+    }
+
+    /**
+     * Returns the call statistics of all Coverity Connect servers, keyed by host and port
+     */
+    public static Map<String, WebServiceCallStatistics> getStatistics() {
+        return Collections.unmodifiableMap(new HashMap<>(statistics));
+    }
+
+    /**
+     * Returns the circuit breaker states of all Coverity Connect servers, keyed by host and port
+     */
+    public static Map<String, CircuitBreaker.State> getCircuitBreakerStates() {
+        Map<String, CircuitBreaker.State> states = new HashMap<>();
+        for (Map.Entry<String, CircuitBreaker> entry : circuitBreakers.entrySet()) {
+            states.put(entry.getKey(), entry.getValue().getState());
+        }
+        return states;
+    }
+
+    static String getServerKey(CIMInstance cimInstance) {
+        return cimInstance.getHost() + ":" + cimInstance.getPort();
+    }
+
+    private static CircuitBreaker getCircuitBreaker(String server) {
+        CircuitBreaker circuitBreaker = circuitBreakers.get(server);
+        if (circuitBreaker == null) {
+            circuitBreakers.putIfAbsent(server, new CircuitBreaker(FAILURE_THRESHOLD, OPEN_MILLIS));
+            circuitBreaker = circuitBreakers.get(server);
+        }
+        return circuitBreaker;
+    }
+
+    private static WebServiceCallStatistics getStatistics(String server) {
+        WebServiceCallStatistics callStatistics = statistics.get(server);
+        if (callStatistics == null) {
+            statistics.putIfAbsent(server, new WebServiceCallStatistics());
+            callStatistics = statistics.get(server);
+        }
+        return callStatistics;
+    }
+
+    /**
+     * Returns whether the exception is a connection failure, as opposed to a fault reported by the service
+     */
+    static boolean isConnectionFailure(Throwable t) {
+        return t instanceof WebServiceException && !(t instanceof SOAPFaultException);
+    }
+
+    /**
+     * Delay before the given retry, exponentially increasing with full jitter so concurrent builds do not retry in step
+     */
+    static long getRetryDelay(long baseDelayMillis, int retry) {
+        long maxDelay = Math.min(MAX_DELAY_MILLIS, baseDelayMillis << Math.min(retry - 1, 16));
+        return maxDelay <= 0 ? 0 : ThreadLocalRandom.current().nextLong(maxDelay + 1);
+    }
+
+    private static class Handler implements InvocationHandler {
+        private final Object service;
+        private final String server;
+        private final CircuitBreaker circuitBreaker;
+        private final WebServiceCallStatistics callStatistics;
+        private final int maxAttempts;
+        private final long baseDelayMillis;
+
+        Handler(Object service, String server, CircuitBreaker circuitBreaker, WebServiceCallStatistics callStatistics,
+                int maxAttempts, long baseDelayMillis) {
+            this.service = service;
+            this.server = server;
+            this.circuitBreaker = circuitBreaker;
+            this.callStatistics = callStatistics;
+            this.maxAttempts = maxAttempts;
+            this.baseDelayMillis = baseDelayMillis;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                return invokeService(method, args);
+            }
+
+            int attempts = method.getName().startsWith("get") ? maxAttempts : 1;
+            for (int attempt = 1; ; attempt++) {
+                if (!circuitBreaker.allowRequest()) {
+                    callStatistics.recordRejected();
+                    throw new WebServiceException("Coverity Connect at " + server + " is unavailable, not calling " + method.getName()
+                        + " until the connection recovers");
+                }
+
+                try {
+                    RateLimiter.get(server).acquire(RateLimiter.getCurrentLane());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    circuitBreaker.recordNotSent();
+                    throw new WebServiceException("Interrupted while waiting to send " + method.getName() + " to Coverity Connect at " + server, e);
+                }
+
+                callStatistics.recordCall();
+                try {
+                    Object result = invokeService(method, args);
+                    circuitBreaker.recordSuccess();
+                    return result;
+                } catch (Throwable t) {
+                    if (t instanceof ServicePortPool.PortUnavailableException) {
+                        // the call never left this host
+                        circuitBreaker.recordNotSent();
+                        throw t;
+                    }
+                    if (!isConnectionFailure(t)) {
+                        // the server responded, so it is available
+                        circuitBreaker.recordSuccess();
+                        throw t;
+                    }
+
+                    circuitBreaker.recordFailure();
+                    callStatistics.recordFailure();
+                    if (attempt >= attempts) {
+                        throw t;
+                    }
+
+                    long delay = getRetryDelay(baseDelayMillis, attempt);
+                    logger.fine("Retrying " + method.getName() + " on " + server + " in " + delay + "ms after: " + t.getMessage());
+                    callStatistics.recordRetry();
+                    try {
+                        Thread.sleep(delay);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw t;
+                    }
+                }
+            }
+        }
+
+        private Object invokeService(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(service, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.ws.WebServiceException;
+
+/**
+ * Bounded pool of web service ports for a single Coverity Connect instance. JAX-WS port proxies are not guaranteed to be
+ * thread-safe, so each call borrows a port for its exclusive use and returns it afterwards. Ports are created lazily,
+ * up to the maximum size of the pool; when all ports are in use, callers wait for one to be returned.
+ */
+public class ServicePortPool<T> {
+    private final PortFactory<T> factory;
+    private final int maxSize;
+    private final long timeoutMillis;
+
+    private final Object lock = new Object();
+    private final Deque<T> idle = new ArrayDeque<>();
+    private int size;
+
+    public ServicePortPool(PortFactory<T> factory, int maxSize, long timeoutMillis) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be at least 1");
+        }
+        this.factory = factory;
+        this.maxSize = maxSize;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Creates the first pooled port if none was created yet, so the first call does not have to wait for it
+     */
+    public void prepare() throws IOException {
+        synchronized (lock) {
+            if (size > 0) {
+                return;
+            }
+        }
+        try {
+            release(borrow());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Borrows a port for exclusive use. The port must be given back with {@link #release(Object)}.
+     *
+     * @throws IOException if a new port could not be created, or no port was returned within the timeout
+     */
+    public T borrow() throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        synchronized (lock) {
+            while (idle.isEmpty() && size >= maxSize) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    throw new IOException("Timed out after " + timeoutMillis + "ms waiting for one of " + maxSize
+                        + " Coverity Connect web service ports");
+                }
+                lock.wait(remaining);
+            }
+            if (!idle.isEmpty()) {
+                return idle.pop();
+            }
+            // reserve the slot so the port can be created without holding the lock
+            size++;
+        }
+
+        T port = null;
+        try {
+            port = factory.create();
+            return port;
+        } finally {
+            if (port == null) {
+                synchronized (lock) {
+                    size--;
+                    lock.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a borrowed port to the pool
+     */
+    public void release(T port) {
+        synchronized (lock) {
+            idle.push(port);
+            lock.notify();
+        }
+    }
+
+    /**
+     * Number of ports created for {@link #borrow()}
+     */
+    public int getSize() {
+        synchronized (lock) {
+            return size;
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns a client of the given service interface which borrows a port of this pool for each call
+     */
+    public T newClient(Class<T> serviceInterface) {
+        return serviceInterface.cast(Proxy.newProxyInstance(serviceInterface.getClassLoader(), new Class<?>[] { serviceInterface },
+            new PooledInvocationHandler()));
+    }
+
+    /**
+     * Creates the ports of a {@link ServicePortPool}
+     */
+    public interface PortFactory<T> {
+        T create() throws IOException;
+    }
+
+    /**
+     * Thrown by the clients of {@link #newClient(Class)} when no port could be borrowed. The call was not sent, so
+     * this says nothing about the availability of the server.
+     */
+    public static class PortUnavailableException extends WebServiceException {
+        public PortUnavailableException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    private class PooledInvocationHandler implements InvocationHandler {
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                return method.invoke(this, args);
+            }
+
+            T port;
+            try {
+                port = borrow();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new PortUnavailableException("Interrupted while waiting for a Coverity Connect web service port", e);
+            } catch (IOException e) {
+                throw new PortUnavailableException(e.getMessage(), e);
+            }
+
+            try {
+                return method.invoke(port, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            } finally {
+                release(port);
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Lets concurrent callers with the same key share a single execution of a call. The first caller runs the call on its
+ * own thread; callers arriving while it is in flight wait for and receive the same result or exception. Once the call
+ * completes the key is released, so later callers start a new call. Results are never cached beyond that.
+ */
+public class SingleFlight<K, V> {
+    private final ConcurrentMap<K, FutureTask<V>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Runs the call, or joins the call already in flight for the same key
+     *
+     * @throws ExecutionException wrapping the exception thrown by the call
+     */
+    public V execute(K key, Callable<V> call) throws ExecutionException, InterruptedException {
+        return execute(key, call, null);
+    }
+
+    /**
+     * Like {@link #execute(Object, Callable)}, recording in the given array whether the result was shared with another
+     * caller's call rather than computed by this caller
+     */
+    V execute(K key, Callable<V> call, boolean[] joined) throws ExecutionException, InterruptedException {
+        FutureTask<V> task = new FutureTask<>(call);
+        FutureTask<V> existing = inFlight.putIfAbsent(key, task);
+        if (existing != null) {
+            if (joined != null) {
+                joined[0] = true;
+            }
+            return existing.get();
+        }
+
+        try {
+            task.run();
+        } finally {
+            inFlight.remove(key, task);
+        }
+        return task.get();
+    }
+
+    /**
+     * Number of keys with a call currently in flight
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+}
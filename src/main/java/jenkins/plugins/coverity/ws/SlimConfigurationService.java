@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import java.util.List;
+
+import javax.jws.WebMethod;
+import javax.jws.WebParam;
+import javax.jws.WebResult;
+import javax.jws.WebService;
+import javax.xml.ws.RequestWrapper;
+import javax.xml.ws.ResponseWrapper;
+
+import com.coverity.ws.v9.AttributeDefinitionDataObj;
+import com.coverity.ws.v9.AttributeDefinitionIdDataObj;
+import com.coverity.ws.v9.ComponentMapDataObj;
+import com.coverity.ws.v9.ComponentMapFilterSpecDataObj;
+import com.coverity.ws.v9.CovRemoteServiceException_Exception;
+import com.coverity.ws.v9.FeatureUpdateTimeDataObj;
+import com.coverity.ws.v9.GroupDataObj;
+import com.coverity.ws.v9.GroupIdDataObj;
+import com.coverity.ws.v9.ProjectDataObj;
+import com.coverity.ws.v9.ProjectFilterSpecDataObj;
+import com.coverity.ws.v9.RoleDataObj;
+import com.coverity.ws.v9.RoleIdDataObj;
+import com.coverity.ws.v9.SnapshotFilterSpecDataObj;
+import com.coverity.ws.v9.SnapshotIdDataObj;
+import com.coverity.ws.v9.StreamDataObj;
+import com.coverity.ws.v9.StreamFilterSpecDataObj;
+import com.coverity.ws.v9.StreamIdDataObj;
+import com.coverity.ws.v9.UserDataObj;
+import com.coverity.ws.v9.VersionDataObj;
+
+/**
+ * The operations of the v9 {@link com.coverity.ws.v9.ConfigurationService} used by this plugin, with the same web
+ * service annotations. A port of this interface only binds the types reachable from these operations, see
+ * {@link SlimWebServices}.
+ */
+@WebService(name = "ConfigurationService", targetNamespace = "http://ws.coverity.com/v9")
+public interface SlimConfigurationService {
+    @WebMethod
+    @WebResult(targetNamespace = "")
+    @RequestWrapper(localName = "getProjects", targetNamespace = "http://ws.coverity.com/v9", className = "com.coverity.ws.v9.GetProjects")
+    @ResponseWrapper(localName = "getProjectsResponse", targetNamespace = "http://ws.coverity.com/v9", className = "com.coverity.ws.v9.GetProjectsResponse")
+    List<ProjectDataObj> getProjects(
+        @WebParam(name = "filterSpec", targetNamespace = "")
+        ProjectFilterSpecDataObj filterSpec)
+        throws CovRemoteServiceException_Exception
+    ;
+
+    @WebMethod
+    @WebResult(targetNamespace = "")
+    @RequestWrapper(localName = "getStreams", targetNamespace = "http://ws.coverity.com/v9", className = "com.coverity.ws.v9.GetStreams")
+    @ResponseWrapper(localName = "getStreamsResponse", targetNamespace = "http://ws.coverity.com/v9", className = "com.coverity.ws.v9.GetStreamsResponse")
+    List<StreamDataObj> getStreams(
+        @WebParam(name = "filterSpec", targetNamespace = "")
+        StreamFilterSpecDataObj filterSpec)
+        throws CovRemoteServiceException_Exception
+    ;
+
+    @WebMethod
+    @WebResult(targetNamespace = "")
+    @RequestWrapper(localName = "getAttribute", targetNamespace = "http://ws.coverity.com/v9", className = "com.coverity.ws.v9.GetAttribute")
+    @ResponseWrapper(localName = "getAttributeResponse", targetNamespace = "http://ws.coverity.com/v9", className = "com.coverity.ws.v9.GetAttributeResponse")
+    AttributeDefinitionDataObj getAttribute(
+        @WebParam(name = "attributeDefinitionId", targetNamespace = "")
+        AttributeDefinitionIdDataObj attributeDefinitionId)
+        throws CovRemoteServiceException_Exception
+    ;
+
+    @WebMethod
+    @WebResult(targetNamespace = "")
+    @RequestWrapper(localName = "getComponentMaps", targetNamespace = "http://ws.coverity.com/v9", className = "com.coverity.ws.v9.GetComponentMaps")
+    @ResponseWrapper(localName = "getComponentMapsResponse", targetNamespace = "http://ws.coverity.com/v9", className = "com.coverity.ws.v9.GetComponentMapsResponse")
+    List<ComponentMapDataObj> getComponentMaps(
+        @WebParam(name = "filterSpec", targetNamespace = "")
+        ComponentMapFilterSpecDataObj filterSpec)
+        throws CovRemoteServiceException_Exception
+    ;
+
+    @WebMethod
+    @WebResult(targetNamespace = "")
+    @RequestWrapper(localName = "getCheckerNames", targetNamespace = "http://ws.coverity.com/v9", className = "com.coverity.ws.v9.GetCheckerNames")
+    @ResponseWrapper(localName = "getCheckerNamesResponse", targetNamespace = "http://ws.coverity.com/v9", className = "com.coverity.ws.v9.GetCheckerNamesResponse")
+    List<String> getCheckerNames()
+        throws CovRemoteServiceException_Exception
+    ;
+
+    @WebMethod
+    @WebResult(targetNamespace = "")
+    @RequestWrapper(localName = "getUser", targetNamespace = "http://ws.coverity.com/v9", className = "com.coverity.ws.v9.GetUser")
+    @ResponseWrapper(localName = "getUserResponse", targetNamespace = "http://ws.coverity.com/v9", className = "com.coverity.ws.v9.GetUserResponse")
+    UserDataObj getUser(
+        @WebParam(name = "username", targetNamespace = "")
+        String username)
+        throws CovRemoteServiceException_Exception
+    ;
+
+    @WebMethod
+    @WebResult(targetNamespace = "")
+    @RequestWrapper(localName = "getRole", targetNamespace = "http://ws.coverity.com/v9", className = "com.coverity.ws.v9.GetRole")
+    @ResponseWrapper(localName = "getRoleResponse", targetNamespace = "http://ws.coverity.com/v9", className = "com.coverity.ws.v9.GetRoleResponse")
+    RoleDataObj getRole(
+        @WebParam(name = "roleId", targetNamespace = "")
+        RoleIdDataObj roleId)
+        throws CovRemoteServiceException_Exception
+    ;
+
+    @WebMethod
+    @WebResult(targetNamespace = "")
+    @RequestWrapper(localName = "getGroup", targetNamespace = "http://ws.coverity.com/v9", className = "com.coverity.ws.v9.GetGroup")
+    @ResponseWrapper(localName = "getGroupResponse", targetNamespace = "http://ws.coverity.com/v9", className = "com.coverity.ws.v9.GetGroupResponse")
+    GroupDataObj getGroup(
+        @WebParam(name = "groupId", targetNamespace = "")
+        GroupIdDataObj groupId)
+        throws CovRemoteServiceException_Exception
+    ;
+
+    @WebMethod
+    @WebResult(targetNamespace = "")
+    @RequestWrapper(localName = "getSnapshotsForStream", targetNamespace = "http://ws.coverity.com/v9", className = "com.coverity.ws.v9.GetSnapshotsForStream")
+    @ResponseWrapper(localName = "getSnapshotsForStreamResponse", targetNamespace = "http://ws.coverity.com/v9", className = "com.coverity.ws.v9.GetSnapshotsForStreamResponse")
+    List<SnapshotIdDataObj> getSnapshotsForStream(
+        @WebParam(name = "streamId", targetNamespace = "")
+        StreamIdDataObj streamId,
+        @WebParam(name = "filterSpec", targetNamespace = "")
+        SnapshotFilterSpecDataObj filterSpec)
+        throws CovRemoteServiceException_Exception
+    ;
+
+    @WebMethod
+    @WebResult(targetNamespace = "")
+    @RequestWrapper(localName = "getVersion", targetNamespace = "http://ws.coverity.com/v9", className = "com.coverity.ws.v9.GetVersion")
+    @ResponseWrapper(localName = "getVersionResponse", targetNamespace = "http://ws.coverity.com/v9", className = "com.coverity.ws.v9.GetVersionResponse")
+    VersionDataObj getVersion()
+        throws CovRemoteServiceException_Exception
+    ;
+
+    @WebMethod
+    @WebResult(targetNamespace = "")
+    @RequestWrapper(localName = "getLastUpdateTimes", targetNamespace = "http://ws.coverity.com/v9", className = "com.coverity.ws.v9.GetLastUpdateTimes")
+    @ResponseWrapper(localName = "getLastUpdateTimesResponse", targetNamespace = "http://ws.coverity.com/v9", className = "com.coverity.ws.v9.GetLastUpdateTimesResponse")
+    List<FeatureUpdateTimeDataObj> getLastUpdateTimes();
+}
@@ -0,0 +1,51 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import java.util.List;
+
+import javax.jws.WebMethod;
+import javax.jws.WebParam;
+import javax.jws.WebResult;
+import javax.jws.WebService;
+import javax.xml.ws.RequestWrapper;
+import javax.xml.ws.ResponseWrapper;
+
+import com.coverity.ws.v9.CovRemoteServiceException_Exception;
+import com.coverity.ws.v9.MergedDefectFilterSpecDataObj;
+import com.coverity.ws.v9.MergedDefectsPageDataObj;
+import com.coverity.ws.v9.PageSpecDataObj;
+import com.coverity.ws.v9.SnapshotScopeSpecDataObj;
+import com.coverity.ws.v9.StreamIdDataObj;
+
+/**
+ * The operations of the v9 {@link com.coverity.ws.v9.DefectService} used by this plugin, with the same web service
+ * annotations. A port of this interface only binds the types reachable from these operations, see
+ * {@link SlimWebServices}.
+ */
+@WebService(name = "DefectService", targetNamespace = "http://ws.coverity.com/v9")
+public interface SlimDefectService {
+    @WebMethod
+    @WebResult(targetNamespace = "")
+    @RequestWrapper(localName = "getMergedDefectsForStreams", targetNamespace = "http://ws.coverity.com/v9", className = "com.coverity.ws.v9.GetMergedDefectsForStreams")
+    @ResponseWrapper(localName = "getMergedDefectsForStreamsResponse", targetNamespace = "http://ws.coverity.com/v9", className = "com.coverity.ws.v9.GetMergedDefectsForStreamsResponse")
+    MergedDefectsPageDataObj getMergedDefectsForStreams(
+        @WebParam(name = "streamIds", targetNamespace = "")
+        List<StreamIdDataObj> streamIds,
+        @WebParam(name = "filterSpec", targetNamespace = "")
+        MergedDefectFilterSpecDataObj filterSpec,
+        @WebParam(name = "pageSpec", targetNamespace = "")
+        PageSpecDataObj pageSpec,
+        @WebParam(name = "snapshotScope", targetNamespace = "")
+        SnapshotScopeSpecDataObj snapshotScope)
+        throws CovRemoteServiceException_Exception
+    ;
+}
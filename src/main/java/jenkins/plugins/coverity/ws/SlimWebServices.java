@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.xml.ws.BindingProvider;
+
+/**
+ * Adapts ports of the slim service interfaces ({@link SlimDefectService}, {@link SlimConfigurationService}) to the full
+ * generated interfaces used throughout the plugin. The JAX-WS service model and JAXB context of a slim port only cover
+ * the operations the plugin calls and the types reachable from them, instead of the whole v9 API. Calling an
+ * operation which is not part of the slim interface fails with {@link UnsupportedOperationException}.
+ */
+public class SlimWebServices {
+    private static final ConcurrentMap<Class<?>, Map<Method, Method>> methodMappings = new ConcurrentHashMap<>();
+
+    private SlimWebServices() {
+    }
+
+    /**
+     * Returns a client of the full service interface which calls the given slim port. The client is also a
+     * {@link BindingProvider} when the port is one.
+     */
+    public static <T> T adapt(Class<T> serviceInterface, Class<?> slimInterface, Object slimPort) {
+        Class<?>[] interfaces = slimPort instanceof BindingProvider
+            ? new Class<?>[] { serviceInterface, BindingProvider.class }
+            : new Class<?>[] { serviceInterface };
+        return serviceInterface.cast(Proxy.newProxyInstance(serviceInterface.getClassLoader(), interfaces,
+            new Handler(slimPort, getMethodMapping(serviceInterface, slimInterface))));
+    }
+
+    /**
+     * Maps the methods of the full service interface to the methods of the slim interface with the same signature
+     */
+    static Map<Method, Method> getMethodMapping(Class<?> serviceInterface, Class<?> slimInterface) {
+        Map<Method, Method> mapping = methodMappings.get(slimInterface);
+        if (mapping == null) {
+            mapping = new HashMap<>();
+            for (Method slimMethod : slimInterface.getMethods()) {
+                try {
+                    mapping.put(serviceInterface.getMethod(slimMethod.getName(), slimMethod.getParameterTypes()), slimMethod);
+                } catch (NoSuchMethodException e) {
+                    throw new IllegalArgumentException(slimInterface.getName() + "." + slimMethod.getName() + " is not an operation of "
+                        + serviceInterface.getName(), e);
+                }
+            }
+            mapping = Collections.unmodifiableMap(mapping);
+            methodMappings.putIfAbsent(slimInterface, mapping);
+        }
+        return mapping;
+    }
+
+    private static class Handler implements InvocationHandler {
+        private final Object slimPort;
+        private final Map<Method, Method> methodMapping;
+
+        Handler(Object slimPort, Map<Method, Method> methodMapping) {
+            this.slimPort = slimPort;
+            this.methodMapping = methodMapping;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Method target = methodMapping.get(method);
+            if (target == null) {
+                Class<?> declaringClass = method.getDeclaringClass();
+                if (declaringClass != Object.class && declaringClass != BindingProvider.class) {
+                    throw new UnsupportedOperationException(method.getName() + " is not supported by the slim Coverity Connect client");
+                }
+                target = method;
+            }
+
+            try {
+                return target.invoke(slimPort, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
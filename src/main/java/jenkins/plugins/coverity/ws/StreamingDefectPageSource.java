@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.util.JAXBSource;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.Source;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stax.StAXSource;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.ws.Dispatch;
+import javax.xml.ws.WebServiceException;
+import javax.xml.ws.soap.SOAPFaultException;
+
+import com.coverity.ws.v9.CovRemoteServiceException_Exception;
+import com.coverity.ws.v9.GetMergedDefectsForStreams;
+import com.coverity.ws.v9.MergedDefectFilterSpecDataObj;
+import com.coverity.ws.v9.PageSpecDataObj;
+import com.coverity.ws.v9.SnapshotScopeSpecDataObj;
+import com.coverity.ws.v9.StreamIdDataObj;
+
+/**
+ * Reads defect pages through a payload {@link Dispatch} and decodes the response with {@link MergedDefectsPageDecoder},
+ * so no {@link com.coverity.ws.v9.MergedDefectDataObj} graph is created for the returned defects. Only the request is
+ * marshalled with JAXB.
+ */
+public class StreamingDefectPageSource implements DefectPageSource {
+    private static final QName REQUEST_NAME = new QName(WebServiceFactory.COVERITY_V9_NAMESPACE, "getMergedDefectsForStreams");
+
+    private static final XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+    static {
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    }
+
+    private static JAXBContext requestContext;
+
+    private final Dispatch<Source> dispatch;
+
+    public StreamingDefectPageSource(Dispatch<Source> dispatch) {
+        this.dispatch = dispatch;
+    }
+
+    public DefectPage getMergedDefectsForStreams(List<StreamIdDataObj> streamIds, MergedDefectFilterSpecDataObj filterSpec,
+                                                 PageSpecDataObj pageSpec, SnapshotScopeSpecDataObj snapshotScope) throws CovRemoteServiceException_Exception {
+        GetMergedDefectsForStreams request = new GetMergedDefectsForStreams();
+        request.getStreamIds().addAll(streamIds);
+        request.setFilterSpec(filterSpec);
+        request.setPageSpec(pageSpec);
+        request.setSnapshotScope(snapshotScope);
+
+        try {
+            Source response = dispatch.invoke(new JAXBSource(getRequestContext(),
+                new JAXBElement<>(REQUEST_NAME, GetMergedDefectsForStreams.class, request)));
+
+            XMLStreamReader reader = createReader(response);
+            try {
+                return MergedDefectsPageDecoder.decode(reader);
+            } finally {
+                reader.close();
+            }
+        } catch (SOAPFaultException e) {
+            // the generated client reports service faults as CovRemoteServiceException_Exception, keep the same contract
+            throw new CovRemoteServiceException_Exception(e.getFault().getFaultString(), null, e);
+        } catch (JAXBException | XMLStreamException | TransformerException e) {
+            throw new WebServiceException("Unable to read defects from the getMergedDefectsForStreams response", e);
+        }
+    }
+
+    static synchronized JAXBContext getRequestContext() throws JAXBException {
+        if (requestContext == null) {
+            requestContext = JAXBContext.newInstance(GetMergedDefectsForStreams.class);
+        }
+        return requestContext;
+    }
+
+    private static XMLStreamReader createReader(Source response) throws XMLStreamException, TransformerException {
+        if (response instanceof StAXSource && ((StAXSource) response).getXMLStreamReader() != null) {
+            return ((StAXSource) response).getXMLStreamReader();
+        }
+
+        if (response instanceof StreamSource) {
+            return inputFactory.createXMLStreamReader(response);
+        }
+
+        // other sources (e.g. DOM) are serialized first. The JAX-WS runtime only returns those once a handler has read
+        // the response with SOAPMessageContext.getMessage(), the handlers of WebServiceFactory leave responses alone.
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        TransformerFactory.newInstance().newTransformer().transform(response, new StreamResult(buffer));
+        return inputFactory.createXMLStreamReader(new ByteArrayInputStream(buffer.toByteArray()));
+    }
+}
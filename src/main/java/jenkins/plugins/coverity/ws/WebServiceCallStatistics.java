@@ -0,0 +1,67 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters for the web service calls made to a single Coverity Connect instance
+ */
+public class WebServiceCallStatistics {
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    void recordCall() {
+        calls.incrementAndGet();
+    }
+
+    void recordRetry() {
+        retries.incrementAndGet();
+    }
+
+    void recordFailure() {
+        failures.incrementAndGet();
+    }
+
+    void recordRejected() {
+        rejected.incrementAndGet();
+    }
+
+    /**
+     * Number of calls attempted, including retries
+     */
+    public long getCalls() {
+        return calls.get();
+    }
+
+    /**
+     * Number of calls which were retried after a connection failure
+     */
+    public long getRetries() {
+        return retries.get();
+    }
+
+    /**
+     * Number of calls which failed with a connection failure
+     */
+    public long getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * Number of calls which were not made because the circuit breaker was open
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+}
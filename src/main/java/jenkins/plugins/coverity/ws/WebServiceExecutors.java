@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.coverity.ws.v9.CovRemoteServiceException_Exception;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+/**
+ * The thread pools for Coverity Connect web service calls made off the calling thread. The lookup pool runs the
+ * independent {@link MetadataLookups} of {@link CimMetadataCatalog} concurrently. Each call is a blocking call which
+ * holds a pool thread until it returns, and the caller waits for the results in {@link #get(Future)}.
+ * <p>
+ * Background refreshes of cached data run on a separate pool. A refresh may wait for calls on the lookup pool, so
+ * running it on a lookup thread could leave no thread to make those calls.
+ */
+public class WebServiceExecutors {
+    /**
+     * Number of lookup threads, i.e. the maximum number of lookups in progress at the same time
+     */
+    public static final int POOL_SIZE = Integer.getInteger(WebServiceExecutors.class.getName() + ".poolSize", 8);
+
+    /**
+     * Number of threads refreshing cached data in the background
+     */
+    public static final int BACKGROUND_POOL_SIZE = Integer.getInteger(WebServiceExecutors.class.getName() + ".backgroundPoolSize", 2);
+
+    private static ListeningExecutorService executor;
+    private static ListeningExecutorService backgroundExecutor;
+
+    private WebServiceExecutors() {
+    }
+
+    public static synchronized ListeningExecutorService getExecutor() {
+        if (executor == null) {
+            executor = newExecutor(POOL_SIZE, "Coverity Connect lookup");
+        }
+        return executor;
+    }
+
+    static synchronized ListeningExecutorService getBackgroundExecutor() {
+        if (backgroundExecutor == null) {
+            backgroundExecutor = newExecutor(BACKGROUND_POOL_SIZE, "Coverity Connect refresh");
+        }
+        return backgroundExecutor;
+    }
+
+    private static ListeningExecutorService newExecutor(int size, String name) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), new NamingThreadFactory(new DaemonThreadFactory(), name));
+        pool.allowCoreThreadTimeOut(true);
+        return MoreExecutors.listeningDecorator(pool);
+    }
+
+    /**
+     * Runs the given call on the lookup pool, in the {@link RateLimiter.Lane} of the calling thread
+     */
+    public static <T> ListenableFuture<T> submit(Callable<T> call) {
+        return getExecutor().submit(inLane(RateLimiter.getCurrentLane(), call));
+    }
+
+    /**
+     * Runs the given refresh of cached data on the background pool, in the {@link RateLimiter.Lane#BACKGROUND} lane.
+     * The refresh may submit calls to the lookup pool and wait for them.
+     */
+    public static <T> ListenableFuture<T> submitInBackground(Callable<T> call) {
+        return getBackgroundExecutor().submit(inLane(RateLimiter.Lane.BACKGROUND, call));
+    }
+
+    /**
+     * Returns a call which makes its requests in the given lane, for handing work to another thread
+     */
+    static <T> Callable<T> inLane(final RateLimiter.Lane lane, final Callable<T> call) {
+        return new Callable<T>() {
+            public T call() throws Exception {
+                RateLimiter.Lane previousLane = RateLimiter.setCurrentLane(lane);
+                try {
+                    return call.call();
+                } finally {
+                    RateLimiter.setCurrentLane(previousLane);
+                }
+            }
+        };
+    }
+
+    /**
+     * Waits for the result of a call run on a pool, rethrowing the exception of the call itself if it failed
+     */
+    public static <T> T get(Future<T> future) throws IOException, CovRemoteServiceException_Exception {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for Coverity Connect", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof CovRemoteServiceException_Exception) {
+                throw (CovRemoteServiceException_Exception) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+}
@@ -13,14 +13,23 @@ package jenkins.plugins.coverity.ws;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 import javax.xml.namespace.QName;
+import javax.xml.transform.Source;
 import javax.xml.ws.BindingProvider;
+import javax.xml.ws.Dispatch;
+import javax.xml.ws.Service;
 import javax.xml.ws.handler.Handler;
+import javax.xml.ws.handler.MessageContext;
+import javax.xml.ws.soap.SOAPBinding;
 
 import com.coverity.ws.v9.ConfigurationService;
 import com.coverity.ws.v9.ConfigurationServiceService;
@@ -43,13 +52,63 @@ public class WebServiceFactory {
 
     public static final String CONFIGURATION_SERVICE_V9_WSDL = "/ws/v9/configurationservice?wsdl";
 
-    private Map<CIMInstance, DefectService> defectServiceMap;
+    public static final String DEFECT_SERVICE_V9_ENDPOINT = "/ws/v9/defectservice";
 
-    private Map<CIMInstance, ConfigurationService> configurationServiceMap;
+    public static final String CONFIGURATION_SERVICE_V9_ENDPOINT = "/ws/v9/configurationservice";
+
+    private static final QName DEFECT_SERVICE_NAME = new QName(COVERITY_V9_NAMESPACE, "DefectServiceService");
+
+    private static final QName DEFECT_SERVICE_PORT = new QName(COVERITY_V9_NAMESPACE, "DefectServicePort");
+
+    private static final QName CONFIGURATION_SERVICE_NAME = new QName(COVERITY_V9_NAMESPACE, "ConfigurationServiceService");
+
+    private static final QName CONFIGURATION_SERVICE_PORT = new QName(COVERITY_V9_NAMESPACE, "ConfigurationServicePort");
+
+    /**
+     * Download the WSDL from Coverity Connect for each new port, instead of building the service model once from the
+     * bundled web service interfaces
+     */
+    private static final boolean USE_REMOTE_WSDL = Boolean.getBoolean(WebServiceFactory.class.getName() + ".useRemoteWsdl");
+
+    /**
+     * Bind the ports to the slim service interfaces, which only cover the operations used by this plugin
+     */
+    private static final boolean USE_SLIM_CLIENT = Boolean.getBoolean(WebServiceFactory.class.getName() + ".slimClient");
+
+    /**
+     * Authenticate with a prepared ws-security header instead of running XWSS for every message
+     */
+    private static final boolean USE_PRECOMPUTED_SECURITY_HEADER = Boolean.getBoolean(WebServiceFactory.class.getName() + ".precomputedSecurityHeader");
+
+    /**
+     * Maximum number of ports of each web service per CIM instance, i.e. the number of concurrent calls per service
+     */
+    public static final int MAX_PORTS_PER_INSTANCE = Integer.getInteger(WebServiceFactory.class.getName() + ".maxPortsPerInstance", 16);
+
+    /**
+     * Maximum time to wait for a free port when all ports of an instance are in use
+     */
+    public static final long PORT_TIMEOUT_MILLIS = Long.getLong(WebServiceFactory.class.getName() + ".portTimeout", 300000);
+
+    /**
+     * Maximum number of Coverity Connect connections (host, port, SSL and credentials) to keep web service ports for
+     */
+    public static final int MAX_CONNECTIONS = Integer.getInteger(WebServiceFactory.class.getName() + ".maxConnections", 32);
+
+    /**
+     * Time after which the web service ports of an unused connection are released
+     */
+    public static final long CONNECTION_IDLE_TIMEOUT_MILLIS = Long.getLong(WebServiceFactory.class.getName() + ".connectionIdleTimeout",
+        TimeUnit.HOURS.toMillis(1));
+
+    private final WebServiceRegistry<ConnectionServices> registry;
+
+    private Service defectServiceModel;
+
+    private Service configurationServiceModel;
 
     protected WebServiceFactory() {
-        this.defectServiceMap = new HashMap<>();
-        this.configurationServiceMap = new HashMap<>();
+        this.registry = new WebServiceRegistry<>(MAX_CONNECTIONS, CONNECTION_IDLE_TIMEOUT_MILLIS);
     }
 
     public static WebServiceFactory getInstance() {
@@ -65,71 +124,212 @@ public class WebServiceFactory {
     }
 
     /**
-     * Returns a Defect service client using v9 web services.
+     * Returns a Defect service client using v9 web services. The client is thread-safe and borrows a port from the pool
+     * of the instance for each call.
      */
     public DefectService getDefectService(CIMInstance cimInstance) throws IOException {
-        DefectService defectService;
-        synchronized(this) {
-            if(!defectServiceMap.containsKey(cimInstance)) {
-                defectService = createDefectService(cimInstance);
-                defectServiceMap.put(cimInstance, defectService);
-            }
-            else {
-                defectService = defectServiceMap.get(cimInstance);
-            }
-        }
-        return defectService;
+        return getConnectionServices(cimInstance).defectServiceClient;
     }
 
-    protected DefectService createDefectService(CIMInstance cimInstance) throws MalformedURLException {
-        DefectServiceService defectServiceService = new DefectServiceService(
-            new URL(getURL(cimInstance), DEFECT_SERVICE_V9_WSDL),
-            new QName(COVERITY_V9_NAMESPACE, "DefectServiceService"));
+    /**
+     * Returns the pool of Defect service ports of the instance
+     */
+    public ServicePortPool<DefectService> getDefectServicePool(CIMInstance cimInstance) throws IOException {
+        return getConnectionServices(cimInstance).defectServices;
+    }
 
+    protected DefectService createDefectService(CIMInstance cimInstance) throws MalformedURLException {
         ClassLoader cl = Thread.currentThread().getContextClassLoader();
         try {
-            DefectService defectService = defectServiceService.getDefectServicePort();
+            DefectService defectService;
+            if (USE_REMOTE_WSDL) {
+                defectService = new DefectServiceService(new URL(getURL(cimInstance), DEFECT_SERVICE_V9_WSDL), DEFECT_SERVICE_NAME)
+                    .getDefectServicePort();
+            } else {
+                Service service = getDefectServiceModel();
+                if (USE_SLIM_CLIENT) {
+                    SlimDefectService slimDefectService;
+                    synchronized (service) {
+                        slimDefectService = service.getPort(DEFECT_SERVICE_PORT, SlimDefectService.class);
+                    }
+                    defectService = SlimWebServices.adapt(DefectService.class, SlimDefectService.class, slimDefectService);
+                } else {
+                    synchronized (service) {
+                        defectService = service.getPort(DEFECT_SERVICE_PORT, DefectService.class);
+                    }
+                }
+                setEndpointAddress((BindingProvider) defectService, new URL(getURL(cimInstance), DEFECT_SERVICE_V9_ENDPOINT));
+            }
             attachAuthenticationHandler((BindingProvider) defectService, cimInstance);
+            setRequestHeaders((BindingProvider) defectService, cimInstance);
 
-            return defectService;
+            return MetricsHandler.nameOperations(DefectService.class, defectService);
         } finally {
             Thread.currentThread().setContextClassLoader(cl);
         }
     }
 
     /**
-     * Returns a Configuration service client using v9 web services.
+     * Returns a payload dispatch client for the v9 Defect service, used to read responses without binding them to the
+     * generated classes. The client is thread-safe and borrows a dispatch from the pool of the instance for each call.
      */
-    public ConfigurationService getConfigurationService(CIMInstance cimInstance) throws IOException {
-        ConfigurationService configurationService;
-        synchronized (this){
-            if(!configurationServiceMap.containsKey(cimInstance)) {
-                configurationService = createConfigurationService(cimInstance);
-                configurationServiceMap.put(cimInstance, configurationService);
-            }
-            else {
-                configurationService = configurationServiceMap.get(cimInstance);
+    @SuppressWarnings("unchecked")
+    public Dispatch<Source> getDefectServiceDispatch(CIMInstance cimInstance) throws IOException {
+        return getDefectServiceDispatchPool(cimInstance).newClient((Class<Dispatch<Source>>) (Class<?>) Dispatch.class);
+    }
+
+    /**
+     * Returns the pool of Defect service payload dispatches of the instance
+     */
+    public ServicePortPool<Dispatch<Source>> getDefectServiceDispatchPool(CIMInstance cimInstance) throws IOException {
+        return getConnectionServices(cimInstance).defectServiceDispatches;
+    }
+
+    protected Dispatch<Source> createDefectServiceDispatch(CIMInstance cimInstance) throws MalformedURLException {
+        ClassLoader cl = Thread.currentThread().getContextClassLoader();
+        try {
+            Dispatch<Source> dispatch;
+            if (USE_REMOTE_WSDL) {
+                dispatch = new DefectServiceService(new URL(getURL(cimInstance), DEFECT_SERVICE_V9_WSDL), DEFECT_SERVICE_NAME)
+                    .createDispatch(DEFECT_SERVICE_PORT, Source.class, Service.Mode.PAYLOAD);
+            } else {
+                Service service = getDefectServiceModel();
+                synchronized (service) {
+                    dispatch = service.createDispatch(DEFECT_SERVICE_PORT, Source.class, Service.Mode.PAYLOAD);
+                }
+                setEndpointAddress(dispatch, new URL(getURL(cimInstance), DEFECT_SERVICE_V9_ENDPOINT));
             }
+            attachAuthenticationHandler(dispatch, cimInstance);
+            setRequestHeaders(dispatch, cimInstance);
+            // a payload dispatch has no WSDL operation, the only one called through it is named for the metrics
+            dispatch.getRequestContext().put(MetricsHandler.OPERATION_PROPERTY, "getMergedDefectsForStreams");
+
+            return dispatch;
+        } finally {
+            Thread.currentThread().setContextClassLoader(cl);
         }
-        return configurationService;
     }
 
-    protected ConfigurationService createConfigurationService(CIMInstance cimInstance) throws MalformedURLException {
-        ConfigurationServiceService configurationServiceService = new ConfigurationServiceService(
-            new URL(getURL(cimInstance), CONFIGURATION_SERVICE_V9_WSDL),
-            new QName(COVERITY_V9_NAMESPACE, "ConfigurationServiceService"));
+    /**
+     * Returns a Configuration service client using v9 web services. The client is thread-safe and borrows a port from
+     * the pool of the instance for each call.
+     */
+    public ConfigurationService getConfigurationService(CIMInstance cimInstance) throws IOException {
+        return getConnectionServices(cimInstance).configurationServiceClient;
+    }
 
+    /**
+     * Returns the pool of Configuration service ports of the instance
+     */
+    public ServicePortPool<ConfigurationService> getConfigurationServicePool(CIMInstance cimInstance) throws IOException {
+        return getConnectionServices(cimInstance).configurationServices;
+    }
+
+    protected ConfigurationService createConfigurationService(CIMInstance cimInstance) throws MalformedURLException {
         ClassLoader cl = Thread.currentThread().getContextClassLoader();
         try {
-            ConfigurationService configurationService = configurationServiceService.getConfigurationServicePort();
+            ConfigurationService configurationService;
+            if (USE_REMOTE_WSDL) {
+                configurationService = new ConfigurationServiceService(new URL(getURL(cimInstance), CONFIGURATION_SERVICE_V9_WSDL),
+                    CONFIGURATION_SERVICE_NAME).getConfigurationServicePort();
+            } else {
+                Service service = getConfigurationServiceModel();
+                if (USE_SLIM_CLIENT) {
+                    SlimConfigurationService slimConfigurationService;
+                    synchronized (service) {
+                        slimConfigurationService = service.getPort(CONFIGURATION_SERVICE_PORT, SlimConfigurationService.class);
+                    }
+                    configurationService = SlimWebServices.adapt(ConfigurationService.class, SlimConfigurationService.class, slimConfigurationService);
+                } else {
+                    synchronized (service) {
+                        configurationService = service.getPort(CONFIGURATION_SERVICE_PORT, ConfigurationService.class);
+                    }
+                }
+                setEndpointAddress((BindingProvider) configurationService, new URL(getURL(cimInstance), CONFIGURATION_SERVICE_V9_ENDPOINT));
+            }
             attachAuthenticationHandler((BindingProvider) configurationService, cimInstance);
+            setRequestHeaders((BindingProvider) configurationService, cimInstance);
 
-            return configurationService;
+            return MetricsHandler.nameOperations(ConfigurationService.class, configurationService);
         } finally {
             Thread.currentThread().setContextClassLoader(cl);
         }
     }
 
+    /**
+     * Returns the Defect service model shared by the ports of all instances. The model is built from the annotations of
+     * the generated web service interface, so no WSDL has to be downloaded and parsed; each port only gets its own
+     * endpoint address.
+     */
+    private synchronized Service getDefectServiceModel() {
+        if (defectServiceModel == null) {
+            defectServiceModel = Service.create(DEFECT_SERVICE_NAME);
+            // the address is overridden for each port
+            defectServiceModel.addPort(DEFECT_SERVICE_PORT, SOAPBinding.SOAP11HTTP_BINDING, "http://localhost" + DEFECT_SERVICE_V9_ENDPOINT);
+        }
+        return defectServiceModel;
+    }
+
+    /**
+     * Returns the Configuration service model shared by the ports of all instances
+     */
+    private synchronized Service getConfigurationServiceModel() {
+        if (configurationServiceModel == null) {
+            configurationServiceModel = Service.create(CONFIGURATION_SERVICE_NAME);
+            configurationServiceModel.addPort(CONFIGURATION_SERVICE_PORT, SOAPBinding.SOAP11HTTP_BINDING, "http://localhost" + CONFIGURATION_SERVICE_V9_ENDPOINT);
+        }
+        return configurationServiceModel;
+    }
+
+    /**
+     * Asks for gzip compressed responses when compression is enabled for the instance. The JAX-WS HTTP transport
+     * decompresses such responses while reading them, so the decompressed message is never buffered as a whole.
+     */
+    private void setRequestHeaders(BindingProvider service, CIMInstance cimInstance) {
+        if (cimInstance.isUseCompression()) {
+            Map<String, List<String>> headers = new HashMap<>();
+            headers.put("Accept-Encoding", Collections.singletonList("gzip"));
+            service.getRequestContext().put(MessageContext.HTTP_REQUEST_HEADERS, headers);
+        }
+    }
+
+    private void setEndpointAddress(BindingProvider service, URL endpoint) {
+        service.getRequestContext().put(BindingProvider.ENDPOINT_ADDRESS_PROPERTY, endpoint.toString());
+    }
+
+    /**
+     * Releases the web service ports of the instance, for example after its configuration has changed
+     */
+    public void invalidate(CIMInstance cimInstance) {
+        registry.invalidate(ConnectionKey.of(cimInstance));
+    }
+
+    /**
+     * Releases the web service ports of all connections which are not used by the given instances
+     */
+    public void retainAll(List<CIMInstance> cimInstances) {
+        List<ConnectionKey> keys = new ArrayList<>();
+        for (CIMInstance cimInstance : cimInstances) {
+            keys.add(ConnectionKey.of(cimInstance));
+        }
+        registry.retainAll(keys);
+    }
+
+    /**
+     * Returns the connections which currently have web service ports, least recently used first
+     */
+    public List<ConnectionKey> getConnections() {
+        return registry.getKeys();
+    }
+
+    private ConnectionServices getConnectionServices(final CIMInstance cimInstance) throws IOException {
+        return registry.get(ConnectionKey.of(cimInstance), new WebServiceRegistry.Loader<ConnectionServices>() {
+            public ConnectionServices load(ConnectionKey key) {
+                return new ConnectionServices(cimInstance);
+            }
+        });
+    }
+
     /**
      * The root URL for the CIM instance
      *
@@ -141,9 +341,46 @@ public class WebServiceFactory {
     }
 
     /**
-     * Attach an authentication handler to the web service, that uses the configured user and password
+     * Attach an authentication handler to the web service, that uses the configured user and password, followed by a
+     * handler which records the metrics of each call
      */
     private void attachAuthenticationHandler(BindingProvider service, CIMInstance cimInstance) {
-        service.getBinding().setHandlerChain(Arrays.<Handler>asList(new ClientAuthenticationHandlerWSS(cimInstance.getUser(), cimInstance.getPassword())));
+        Handler handler = USE_PRECOMPUTED_SECURITY_HEADER
+            ? new PrecomputedSecurityHeaderHandler(cimInstance.getUser(), cimInstance.getPassword())
+            : new ClientAuthenticationHandlerWSS(cimInstance.getUser(), cimInstance.getPassword());
+        String server = ResilientWebServices.getServerKey(cimInstance);
+        service.getBinding().setHandlerChain(Arrays.<Handler>asList(handler, new MetricsHandler(server)));
+    }
+
+    /**
+     * The port pools of a single connection and the clients borrowing from them. Instances with the same
+     * {@link ConnectionKey} share these pools, so the ports are created for the first of them.
+     */
+    private class ConnectionServices {
+        private final ServicePortPool<DefectService> defectServices;
+        private final ServicePortPool<ConfigurationService> configurationServices;
+        private final ServicePortPool<Dispatch<Source>> defectServiceDispatches;
+        private final DefectService defectServiceClient;
+        private final ConfigurationService configurationServiceClient;
+
+        ConnectionServices(final CIMInstance cimInstance) {
+            defectServices = new ServicePortPool<>(new ServicePortPool.PortFactory<DefectService>() {
+                public DefectService create() throws IOException {
+                    return createDefectService(cimInstance);
+                }
+            }, MAX_PORTS_PER_INSTANCE, PORT_TIMEOUT_MILLIS);
+            configurationServices = new ServicePortPool<>(new ServicePortPool.PortFactory<ConfigurationService>() {
+                public ConfigurationService create() throws IOException {
+                    return createConfigurationService(cimInstance);
+                }
+            }, MAX_PORTS_PER_INSTANCE, PORT_TIMEOUT_MILLIS);
+            defectServiceDispatches = new ServicePortPool<>(new ServicePortPool.PortFactory<Dispatch<Source>>() {
+                public Dispatch<Source> create() throws IOException {
+                    return createDefectServiceDispatch(cimInstance);
+                }
+            }, MAX_PORTS_PER_INSTANCE, PORT_TIMEOUT_MILLIS);
+            defectServiceClient = defectServices.newClient(DefectService.class);
+            configurationServiceClient = configurationServices.newClient(ConfigurationService.class);
+        }
     }
 }
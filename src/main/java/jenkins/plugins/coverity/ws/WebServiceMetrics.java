@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Call count, error count and latency histogram of the web service operations called on each Coverity Connect server,
+ * as recorded by {@link MetricsHandler}.
+ */
+public class WebServiceMetrics {
+    /**
+     * Upper bounds of the latency histogram buckets; the last bucket counts all slower calls
+     */
+    public static final long[] LATENCY_BUCKETS_MILLIS = { 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000 };
+
+    private static final ConcurrentMap<String, ConcurrentMap<String, OperationMetrics>> metrics = new ConcurrentHashMap<>();
+
+    private WebServiceMetrics() {
+    }
+
+    /**
+     * Returns the metrics of the given operation on the given server, keyed by host and port
+     */
+    public static OperationMetrics getOperationMetrics(String server, String operation) {
+        ConcurrentMap<String, OperationMetrics> serverMetrics = metrics.get(server);
+        if (serverMetrics == null) {
+            metrics.putIfAbsent(server, new ConcurrentHashMap<String, OperationMetrics>());
+            serverMetrics = metrics.get(server);
+        }
+
+        OperationMetrics operationMetrics = serverMetrics.get(operation);
+        if (operationMetrics == null) {
+            serverMetrics.putIfAbsent(operation, new OperationMetrics());
+            operationMetrics = serverMetrics.get(operation);
+        }
+        return operationMetrics;
+    }
+
+    /**
+     * Returns the metrics of all servers and operations, sorted by server and operation name
+     */
+    public static Map<String, Map<String, OperationMetrics>> getMetrics() {
+        Map<String, Map<String, OperationMetrics>> result = new TreeMap<>();
+        for (Map.Entry<String, ConcurrentMap<String, OperationMetrics>> entry : metrics.entrySet()) {
+            result.put(entry.getKey(), Collections.unmodifiableMap(new TreeMap<>(entry.getValue())));
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Discards all recorded metrics
+     */
+    public static void reset() {
+        metrics.clear();
+    }
+
+    /**
+     * Metrics of a single operation on a single server
+     */
+    public static class OperationMetrics {
+        private final AtomicLong calls = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong totalLatencyNanos = new AtomicLong();
+        private final AtomicLongArray latencyHistogram = new AtomicLongArray(LATENCY_BUCKETS_MILLIS.length + 1);
+
+        /**
+         * Records a call
+         */
+        public void record(long latencyNanos, boolean error) {
+            calls.incrementAndGet();
+            if (error) {
+                errors.incrementAndGet();
+            }
+            totalLatencyNanos.addAndGet(latencyNanos);
+            latencyHistogram.incrementAndGet(getBucket(TimeUnit.NANOSECONDS.toMillis(latencyNanos)));
+        }
+
+        static int getBucket(long latencyMillis) {
+            for (int i = 0; i < LATENCY_BUCKETS_MILLIS.length; i++) {
+                if (latencyMillis <= LATENCY_BUCKETS_MILLIS[i]) {
+                    return i;
+                }
+            }
+            return LATENCY_BUCKETS_MILLIS.length;
+        }
+
+        public long getCalls() {
+            return calls.get();
+        }
+
+        public long getErrors() {
+            return errors.get();
+        }
+
+        public long getTotalLatencyMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(totalLatencyNanos.get());
+        }
+
+        public long getAverageLatencyMillis() {
+            long count = calls.get();
+            return count > 0 ? TimeUnit.NANOSECONDS.toMillis(totalLatencyNanos.get() / count) : 0;
+        }
+
+        /**
+         * Number of calls in each latency bucket, see {@link #LATENCY_BUCKETS_MILLIS}
+         */
+        public long[] getLatencyHistogram() {
+            long[] histogram = new long[latencyHistogram.length()];
+            for (int i = 0; i < histogram.length; i++) {
+                histogram[i] = latencyHistogram.get(i);
+            }
+            return histogram;
+        }
+
+        /**
+         * Upper bound of the latency bucket containing the given percentile of calls, or -1 if it is in the last,
+         * unbounded bucket
+         */
+        public long getLatencyPercentileMillis(double percentile) {
+            long[] histogram = getLatencyHistogram();
+            long total = 0;
+            for (long count : histogram) {
+                total += count;
+            }
+            long threshold = (long) Math.ceil(total * percentile / 100);
+            long count = 0;
+            for (int i = 0; i < LATENCY_BUCKETS_MILLIS.length; i++) {
+                count += histogram[i];
+                if (count >= threshold) {
+                    return LATENCY_BUCKETS_MILLIS[i];
+                }
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Bounded registry of web service clients keyed by {@link ConnectionKey}. The least recently used entry is evicted when
+ * the registry is full, and entries which have not been used for the idle timeout are evicted on the next access.
+ * Values are created under a lock per key, so creating the clients of one server does not block callers of another.
+ */
+public class WebServiceRegistry<V> {
+    private final int maxEntries;
+    private final long idleTimeoutMillis;
+
+    private final LinkedHashMap<ConnectionKey, Registration<V>> entries;
+    private final ConcurrentMap<ConnectionKey, Object> creationLocks = new ConcurrentHashMap<>();
+
+    public WebServiceRegistry(final int maxEntries, long idleTimeoutMillis) {
+        this.maxEntries = maxEntries;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.entries = new LinkedHashMap<ConnectionKey, Registration<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ConnectionKey, Registration<V>> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the value for the given key, creating it with the loader if it is not registered yet
+     */
+    public V get(ConnectionKey key, Loader<V> loader) throws IOException {
+        V value = getIfPresent(key);
+        if (value != null) {
+            return value;
+        }
+
+        Object lock = new Object();
+        Object existingLock = creationLocks.putIfAbsent(key, lock);
+        if (existingLock != null) {
+            lock = existingLock;
+        }
+
+        synchronized (lock) {
+            try {
+                value = getIfPresent(key);
+                if (value == null) {
+                    value = loader.load(key);
+                    synchronized (entries) {
+                        entries.put(key, new Registration<>(value, currentTimeMillis()));
+                    }
+                }
+                return value;
+            } finally {
+                creationLocks.remove(key, lock);
+            }
+        }
+    }
+
+    /**
+     * Returns the value for the given key, or null if it is not registered
+     */
+    public V getIfPresent(ConnectionKey key) {
+        long now = currentTimeMillis();
+        synchronized (entries) {
+            evictIdle(now);
+            Registration<V> entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            entry.lastAccess = now;
+            return entry.value;
+        }
+    }
+
+    /**
+     * Removes the value for the given key
+     */
+    public void invalidate(ConnectionKey key) {
+        synchronized (entries) {
+            entries.remove(key);
+        }
+    }
+
+    /**
+     * Removes all values except the ones for the given keys
+     */
+    public void retainAll(List<ConnectionKey> keys) {
+        synchronized (entries) {
+            entries.keySet().retainAll(keys);
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * Returns the registered keys, least recently used first
+     */
+    public List<ConnectionKey> getKeys() {
+        synchronized (entries) {
+            return new ArrayList<>(entries.keySet());
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    private void evictIdle(long now) {
+        Iterator<Registration<V>> it = entries.values().iterator();
+        while (it.hasNext()) {
+            if (now - it.next().lastAccess >= idleTimeoutMillis) {
+                it.remove();
+            }
+        }
+    }
+
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * Creates the value of a {@link WebServiceRegistry} entry
+     */
+    public interface Loader<V> {
+        V load(ConnectionKey key) throws IOException;
+    }
+
+    private static class Registration<V> {
+        private final V value;
+        private long lastAccess;
+
+        Registration(V value, long lastAccess) {
+            this.value = value;
+            this.lastAccess = lastAccess;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.Computer;
+import jenkins.model.Jenkins;
+import jenkins.plugins.coverity.CIMInstance;
+import jenkins.plugins.coverity.CoverityPublisher;
+
+/**
+ * Prepares the web service clients of all configured Coverity Connect instances in the background once Jenkins has
+ * loaded, so the first build or configuration page after a restart does not pay for building the JAXB context, the
+ * service model and the ws-security processor. No calls are made to Coverity Connect.
+ */
+public class WebServiceWarmUp {
+    private static final Logger logger = Logger.getLogger(WebServiceWarmUp.class.getName());
+
+    private static final boolean DISABLED = Boolean.getBoolean(WebServiceWarmUp.class.getName() + ".disabled");
+
+    private WebServiceWarmUp() {
+    }
+
+    @Initializer(after = InitMilestone.JOB_LOADED)
+    public static void warmUpAfterLoad() {
+        if (DISABLED) {
+            return;
+        }
+
+        Jenkins jenkins = Jenkins.getInstance();
+        CoverityPublisher.DescriptorImpl descriptor = jenkins != null ? jenkins.getDescriptorByType(CoverityPublisher.DescriptorImpl.class) : null;
+        if (descriptor == null || descriptor.getInstances() == null || descriptor.getInstances().isEmpty()) {
+            return;
+        }
+
+        final List<CIMInstance> instances = new ArrayList<>(descriptor.getInstances());
+        Computer.threadPoolForRemoting.submit(new Runnable() {
+            public void run() {
+                warmUp(WebServiceFactory.getInstance(), instances);
+            }
+        });
+    }
+
+    /**
+     * Creates the first web service ports of each instance. Failures are logged and do not stop the other instances.
+     */
+    static void warmUp(WebServiceFactory factory, List<CIMInstance> instances) {
+        for (CIMInstance instance : instances) {
+            long start = System.nanoTime();
+            try {
+                factory.getDefectServicePool(instance).prepare();
+                factory.getConfigurationServicePool(instance).prepare();
+                if (DefectFetcher.STREAMING_DECODER) {
+                    factory.getDefectServiceDispatchPool(instance).prepare();
+                    StreamingDefectPageSource.getRequestContext();
+                }
+                logger.info(MessageFormat.format("Prepared Coverity Connect web service clients for instance \"{0}\" in {1}ms",
+                    instance.getName(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Unable to prepare Coverity Connect web service clients for instance \"" + instance.getName() + "\"", e);
+            }
+        }
+    }
+}
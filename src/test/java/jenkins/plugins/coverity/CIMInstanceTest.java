@@ -66,4 +66,13 @@ public class CIMInstanceTest {
 
         assertNull(result);
     }
+
+    @Test
+    public void getDefectPageConcurrency_defaultsWhenNotConfigured() {
+        CIMInstance cimInstance = new CIMInstance("test", "test.coverity", 8080, "admin", "password", false, 9080);
+        assertEquals(CIMInstance.DEFAULT_DEFECT_PAGE_CONCURRENCY, cimInstance.getDefectPageConcurrency());
+
+        cimInstance.setDefectPageConcurrency(8);
+        assertEquals(8, cimInstance.getDefectPageConcurrency());
+    }
 }
@@ -11,11 +11,13 @@
 package jenkins.plugins.coverity;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.io.File;
 import java.io.IOException;
 import java.text.MessageFormat;
 import java.util.ArrayList;
@@ -23,7 +25,9 @@ import java.util.List;
 
 import org.apache.commons.lang.StringUtils;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.powermock.api.mockito.PowerMockito;
@@ -44,6 +48,9 @@ import jenkins.plugins.coverity.ws.WebServiceFactory;
 @RunWith(PowerMockRunner.class)
 @PrepareForTest({Jenkins.class, WebServiceFactory.class})
 public class CoverityBuildActionTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     @Mock
     private Jenkins jenkins;
 
@@ -117,4 +124,46 @@ public class CoverityBuildActionTest {
         assertEquals(StringUtils.EMPTY, defects.get(1).getFilePathname());
     }
 
+    @Test
+    public void getDefects_forRecordedDefects_readsBuildRecordFile() throws IOException {
+        File buildDir = temporaryFolder.getRoot();
+        AbstractBuild build = mock(AbstractBuild.class);
+        when(build.getRootDir()).thenReturn(buildDir);
+
+        DefectRecordFile.Writer writer = new DefectRecordFile(new File(buildDir, DefectRecordFile.FILE_NAME)).openWriter();
+        writer.append(new CoverityDefect(Long.valueOf(1234), "CHECKER_NAME", "functionDisplayName", "/path/to/class"));
+        writer.append(new CoverityDefect(Long.valueOf(1235), "CHECKER_NAME", "functionDisplayName", "/path/to/other/class"));
+        writer.close();
+
+        CoverityBuildAction coverityBuildAction = new CoverityBuildAction(build, "project0", "stream1", cimInstance.getName(), 2);
+
+        assertEquals(2, coverityBuildAction.getDefectCount());
+        final List<CoverityDefect> defects = coverityBuildAction.getDefects();
+        assertEquals(2, defects.size());
+        assertEquals(Long.valueOf(1234), defects.get(0).getCid());
+        assertEquals("/path/to/other/class", defects.get(1).getFilePathname());
+    }
+
+    @Test
+    public void getDefects_forCountedDefects_fetchesInBackground() throws InterruptedException {
+        AbstractBuild build = mock(AbstractBuild.class);
+        when(build.getRootDir()).thenReturn(temporaryFolder.getRoot());
+        DescriptorImpl descriptor = mock(CoverityPublisher.DescriptorImpl.class);
+        when(descriptor.getInstance(any(String.class))).thenReturn(null);
+        when(jenkins.getDescriptorByType(CoverityPublisher.DescriptorImpl.class)).thenReturn(descriptor);
+
+        CIMStream cimStream = new CIMStream("removed-instance", "project0", "stream1", null);
+        CoverityBuildAction coverityBuildAction = new CoverityBuildAction(build, cimStream, 3, null);
+
+        // neither the count nor the first display wait for Coverity Connect
+        assertEquals(3, coverityBuildAction.getDefectCount());
+        assertEquals(0, coverityBuildAction.getDefects().size());
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (coverityBuildAction.isFetchingDefects() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertFalse(coverityBuildAction.isFetchingDefects());
+        assertFalse(DefectRecordFile.forBuild(build).exists());
+    }
 }
@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.model.AbstractBuild;
+import hudson.model.BuildListener;
+import hudson.model.Result;
+import hudson.model.TaskListener;
+import jenkins.plugins.coverity.CoverityTool.CoverityToolHandler;
+import jenkins.plugins.coverity.Utils.CoverityPublisherBuilder;
+import jenkins.plugins.coverity.ws.DefectReader;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({CheckConfig.class, CoverityPublisher.class, FilePath.class})
+public class CoverityPublisherPerformTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Mock
+    private AbstractBuild<?, ?> build;
+
+    @Mock
+    private Launcher launcher;
+
+    @Mock
+    private BuildListener listener;
+
+    @Mock
+    private CoverityToolHandler toolHandler;
+
+    @Mock
+    private DefectReader defectReader;
+
+    private CoverityPublisher publisher;
+    private ByteArrayOutputStream log;
+
+    @Before
+    public void setup() throws Exception {
+        publisher = new CoverityPublisherBuilder()
+            .withCimStream(new CIMStream("test-cim-instance", "test-project", "test-stream", null))
+            .withUnstableBuild(true)
+            .build();
+
+        log = new ByteArrayOutputStream();
+        when(listener.getLogger()).thenReturn(new PrintStream(log, true, "UTF-8"));
+        when(build.getResult()).thenReturn(Result.SUCCESS);
+
+        // the analysis is committed without running any Coverity tools
+        CoverityVersion version = new CoverityVersion(8, 7, 0);
+        PowerMockito.mockStatic(CheckConfig.class);
+        when(CheckConfig.checkNode(any(CoverityPublisher.class), any(AbstractBuild.class), any(Launcher.class), any(TaskListener.class)))
+            .thenReturn(new CheckConfig.NodeStatus(true, "valid", null, version));
+        PowerMockito.whenNew(CoverityToolHandler.class).withArguments(version).thenReturn(toolHandler);
+        when(toolHandler.perform(build, launcher, listener, publisher)).thenReturn(true);
+
+        // reading the defects finds some, which marks the build unstable
+        PowerMockito.whenNew(DefectReader.class).withArguments(build, listener, publisher).thenReturn(defectReader);
+        doAnswer(new Answer<Void>() {
+            public Void answer(InvocationOnMock invocation) {
+                publisher.setUnstableBuild(true);
+                return null;
+            }
+        }).when(defectReader).getLatestDefectsForBuild();
+    }
+
+    private String getLog() {
+        return new String(log.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void perform_readsDefectsAndDeletesIntermediateDirectory() throws Exception {
+        FilePath tempDir = new FilePath(temporaryFolder.newFolder("idir"));
+        when(build.getAction(CoverityTempDir.class)).thenReturn(new CoverityTempDir(tempDir, true));
+
+        assertTrue(publisher.perform(build, launcher, listener));
+
+        verify(defectReader).getLatestDefectsForBuild();
+        verify(build).setResult(Result.UNSTABLE);
+        assertFalse(tempDir.exists());
+        assertTrue(getLog().contains("[Coverity] deleting intermediate directory  \"" + tempDir + "\" was successful"));
+    }
+
+    @Test
+    public void perform_withFailedDeletion_reportsFailureAndStillReadsDefects() throws Exception {
+        FilePath tempDir = PowerMockito.mock(FilePath.class);
+        when(tempDir.toString()).thenReturn("/workspace/idir");
+        doThrow(new IOException("Permission denied")).when(tempDir).deleteRecursive();
+        when(build.getAction(CoverityTempDir.class)).thenReturn(new CoverityTempDir(tempDir, true));
+
+        assertTrue(publisher.perform(build, launcher, listener));
+
+        verify(defectReader).getLatestDefectsForBuild();
+        verify(build).setResult(Result.UNSTABLE);
+        verify(build, never()).setResult(Result.FAILURE);
+        assertTrue(getLog().contains("[Coverity] IOException Exception occurred during deletion of intermediate directory: /workspace/idir"));
+    }
+
+    @Test
+    public void perform_withoutCommit_doesNotReadDefects() throws Exception {
+        when(toolHandler.perform(build, launcher, listener, publisher)).thenReturn(false);
+
+        assertTrue(publisher.perform(build, launcher, listener));
+
+        verify(defectReader, never()).getLatestDefectsForBuild();
+        verify(build, never()).setResult(any(Result.class));
+    }
+}
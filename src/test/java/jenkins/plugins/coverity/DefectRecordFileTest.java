@@ -0,0 +1,140 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DefectRecordFileTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void readAll_returnsAppendedDefectsInOrder() throws IOException {
+        DefectRecordFile recordFile = new DefectRecordFile(new File(folder.getRoot(), DefectRecordFile.FILE_NAME));
+        assertFalse(recordFile.exists());
+
+        DefectRecordFile.Writer writer = recordFile.openWriter();
+        writer.append(new CoverityDefect(10L, "NULL_RETURNS", "main()", "/src/main.c"));
+        writer.append(Arrays.asList(
+            new CoverityDefect(11L, "RESOURCE_LEAK", null, "/src/io.c"),
+            new CoverityDefect(12L, "FORWARD_NULL", "read()", null)));
+        assertEquals(3, writer.getCount());
+        writer.close();
+
+        assertTrue(recordFile.exists());
+        List<CoverityDefect> defects = recordFile.readAll();
+        assertEquals(3, defects.size());
+
+        assertEquals(Long.valueOf(10), defects.get(0).getCid());
+        assertEquals("NULL_RETURNS", defects.get(0).getCheckerName());
+        assertEquals("main()", defects.get(0).getFunctionDisplayName());
+        assertEquals("/src/main.c", defects.get(0).getFilePathname());
+
+        assertEquals(Long.valueOf(11), defects.get(1).getCid());
+        assertNull(defects.get(1).getFunctionDisplayName());
+
+        assertEquals(Long.valueOf(12), defects.get(2).getCid());
+        assertNull(defects.get(2).getFilePathname());
+    }
+
+    @Test
+    public void openWriter_replacesExistingRecords() throws IOException {
+        DefectRecordFile recordFile = new DefectRecordFile(new File(folder.getRoot(), DefectRecordFile.FILE_NAME));
+
+        DefectRecordFile.Writer writer = recordFile.openWriter();
+        writer.append(new CoverityDefect(1L, "CHECKER", "f()", "/a.c"));
+        writer.append(new CoverityDefect(2L, "CHECKER", "g()", "/b.c"));
+        writer.close();
+
+        writer = recordFile.openWriter();
+        writer.append(new CoverityDefect(3L, "CHECKER", "h()", "/c.c"));
+        writer.close();
+
+        List<CoverityDefect> defects = recordFile.readAll();
+        assertEquals(1, defects.size());
+        assertEquals(Long.valueOf(3), defects.get(0).getCid());
+    }
+
+    @Test
+    public void openWriter_withLength_discardsRecordsAfterLength() throws IOException {
+        DefectRecordFile recordFile = new DefectRecordFile(new File(folder.getRoot(), DefectRecordFile.FILE_NAME));
+
+        DefectRecordFile.Writer writer = recordFile.openWriter();
+        writer.append(new CoverityDefect(1L, "CHECKER", "f()", "/a.c"));
+        writer.flush();
+        long length = writer.getLength();
+        writer.append(new CoverityDefect(2L, "CHECKER", "g()", "/b.c"));
+        writer.close();
+
+        writer = recordFile.openWriter(length, 1);
+        writer.append(new CoverityDefect(3L, "CHECKER", "h()", "/c.c"));
+        assertEquals(2, writer.getCount());
+        writer.close();
+
+        List<CoverityDefect> defects = recordFile.readAll();
+        assertEquals(2, defects.size());
+        assertEquals(Long.valueOf(1), defects.get(0).getCid());
+        assertEquals(Long.valueOf(3), defects.get(1).getCid());
+    }
+
+    @Test
+    public void readAll_returnsStringsLongerThan64KB() throws IOException {
+        DefectRecordFile recordFile = new DefectRecordFile(new File(folder.getRoot(), DefectRecordFile.FILE_NAME));
+        StringBuilder path = new StringBuilder();
+        while (path.length() < 70000) {
+            path.append("/d\u00e9p\u00f4t");
+        }
+
+        DefectRecordFile.Writer writer = recordFile.openWriter();
+        writer.append(new CoverityDefect(1L, "CHECKER", "f()", path.toString()));
+        writer.close();
+
+        List<CoverityDefect> defects = recordFile.readAll();
+        assertEquals(1, defects.size());
+        assertEquals(path.toString(), defects.get(0).getFilePathname());
+    }
+
+    @Test
+    public void readAll_readsVersion1Files() throws IOException {
+        File file = new File(folder.getRoot(), DefectRecordFile.FILE_NAME);
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+            out.writeInt(0x434F5644);
+            out.writeInt(1);
+            out.writeLong(7L);
+            out.writeBoolean(true);
+            out.writeUTF("NULL_RETURNS");
+            out.writeBoolean(false);
+            out.writeBoolean(true);
+            out.writeUTF("/src/main.c");
+        }
+
+        List<CoverityDefect> defects = new DefectRecordFile(file).readAll();
+        assertEquals(1, defects.size());
+        assertEquals(Long.valueOf(7), defects.get(0).getCid());
+        assertEquals("NULL_RETURNS", defects.get(0).getCheckerName());
+        assertNull(defects.get(0).getFunctionDisplayName());
+        assertEquals("/src/main.c", defects.get(0).getFilePathname());
+    }
+}
@@ -0,0 +1,90 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import jenkins.plugins.coverity.CIMInstance;
+
+public class CimCacheFileTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void read_returnsWrittenSnapshots() throws IOException {
+        CimCacheFile cacheFile = new CimCacheFile(new File(folder.getRoot(), CimCacheFile.FILE_NAME));
+
+        Map<String, List<String>> projectStreams = new LinkedHashMap<>();
+        projectStreams.put("project0", Arrays.asList("stream0", "stream1"));
+        projectStreams.put("project1", Collections.<String>emptyList());
+        projectStreams.put("project2", null);
+        cacheFile.write(Arrays.asList(
+            new CimCacheFile.Snapshot("instance1", "{projects=2017-01-01T00:00:00Z}", projectStreams),
+            new CimCacheFile.Snapshot("instance2", null, Collections.<String, List<String>>emptyMap())));
+
+        Map<String, CimCacheFile.Snapshot> snapshots = cacheFile.read();
+        assertEquals(2, snapshots.size());
+        assertEquals("{projects=2017-01-01T00:00:00Z}", snapshots.get("instance1").getUpdateSignature());
+        assertEquals(projectStreams, snapshots.get("instance1").getProjectStreams());
+        assertNull(snapshots.get("instance2").getUpdateSignature());
+        assertTrue(snapshots.get("instance2").getProjectStreams().isEmpty());
+        assertFalse(new File(folder.getRoot(), CimCacheFile.FILE_NAME + ".tmp").exists());
+    }
+
+    @Test
+    public void write_replacesExistingFile() throws IOException {
+        CimCacheFile cacheFile = new CimCacheFile(new File(folder.getRoot(), CimCacheFile.FILE_NAME));
+        cacheFile.write(Collections.singletonList(new CimCacheFile.Snapshot("instance1", null, Collections.<String, List<String>>emptyMap())));
+        cacheFile.write(Collections.singletonList(new CimCacheFile.Snapshot("instance2", null, Collections.<String, List<String>>emptyMap())));
+
+        assertEquals(Collections.singleton("instance2"), cacheFile.read().keySet());
+    }
+
+    @Test
+    public void read_returnsNothingWithoutFile() throws IOException {
+        CimCacheFile cacheFile = new CimCacheFile(new File(folder.getRoot(), CimCacheFile.FILE_NAME));
+
+        assertTrue(cacheFile.read().isEmpty());
+    }
+
+    @Test(expected = IOException.class)
+    public void read_rejectsUnknownFormat() throws IOException {
+        File file = folder.newFile(CimCacheFile.FILE_NAME);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+        }
+
+        new CimCacheFile(file).read();
+    }
+
+    @Test
+    public void instanceKey_doesNotContainPassword() {
+        CIMInstance cimInstance = new CIMInstance("test", "cim-host", 8080, "user", "secret-password", false, 0);
+
+        assertFalse(CimCacheFile.getInstanceKey(cimInstance).contains("secret-password"));
+    }
+}
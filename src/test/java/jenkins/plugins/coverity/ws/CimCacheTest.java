@@ -11,26 +11,62 @@
 package jenkins.plugins.coverity.ws;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.ws.WebServiceException;
 
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import com.coverity.ws.v9.ConfigurationService;
+import com.coverity.ws.v9.FeatureUpdateTimeDataObj;
+import com.coverity.ws.v9.ProjectDataObj;
+import com.coverity.ws.v9.ProjectFilterSpecDataObj;
+import com.coverity.ws.v9.ProjectIdDataObj;
+import com.coverity.ws.v9.StreamDataObj;
+import com.coverity.ws.v9.StreamIdDataObj;
+
 import jenkins.plugins.coverity.CIMInstance;
 import jenkins.plugins.coverity.ws.TestWebServiceFactory.TestConfigurationService;
 
 @RunWith(PowerMockRunner.class)
 @PrepareForTest(WebServiceFactory.class)
 public class CimCacheTest {
+    private static final AtomicInteger mockInstances = new AtomicInteger();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Before
     public void setup() throws IOException {
         // setup web service factory
@@ -88,4 +124,242 @@ public class CimCacheTest {
         streams = CimCache.getInstance().getStreams(cimInstance, "unknownProject");
         assertEquals(new ArrayList<String>(), streams);
     }
+
+    @Test
+    public void getIndex_searchesCachedProjectsAndStreams() throws IOException {
+        CIMInstance cimInstance = new CIMInstance("test-index", "test.coverity.index", 8080, "admin", "password", false, 9080);
+
+        TestConfigurationService testConfigurationService = (TestConfigurationService)WebServiceFactory.getInstance().getConfigurationService(cimInstance);
+        testConfigurationService.setupProjects("project", 12, "stream", 3);
+
+        NameIndex projects = CimCache.getInstance().getProjectIndex(cimInstance);
+        assertEquals(12, projects.size());
+        assertTrue(projects.contains("PROJECT11"));
+        assertEquals(Arrays.asList("project1", "project10", "project11"), projects.search("project1", 0, 10).getItems());
+
+        NameIndex streams = CimCache.getInstance().getStreamIndex(cimInstance, "project11");
+        assertTrue(streams.contains("stream2"));
+        assertFalse(streams.contains("stream3"));
+        assertEquals(0, CimCache.getInstance().getStreamIndex(cimInstance, "unknownProject").size());
+    }
+
+    @Test
+    public void cacheCimInstance_reloadsOnlyWhenProjectsOrStreamsChanged() throws Exception {
+        ConfigurationService service = mock(ConfigurationService.class);
+        CIMInstance cimInstance = mockInstance(service);
+        when(service.getLastUpdateTimes()).thenReturn(updateTimes("2017-01-01T00:00:00Z"));
+        when(service.getProjects(any(ProjectFilterSpecDataObj.class))).thenReturn(projects("projectA"));
+
+        assertEquals(Arrays.asList("projectA"), CimCache.getInstance().getProjects(cimInstance));
+
+        // unchanged update times, projects are not loaded again
+        CimCache.getInstance().cacheCimInstance(cimInstance);
+        verify(service, timeout(5000).times(2)).getLastUpdateTimes();
+        verify(service, times(1)).getProjects(any(ProjectFilterSpecDataObj.class));
+
+        // changed update times, projects are loaded again
+        when(service.getLastUpdateTimes()).thenReturn(updateTimes("2017-01-02T00:00:00Z"));
+        when(service.getProjects(any(ProjectFilterSpecDataObj.class))).thenReturn(projects("projectA", "projectB"));
+        CimCache.getInstance().cacheCimInstance(cimInstance);
+        verify(service, timeout(5000).times(2)).getProjects(any(ProjectFilterSpecDataObj.class));
+
+        waitForProjects(cimInstance, Arrays.asList("projectA", "projectB"));
+    }
+
+    @Test
+    public void cacheCimInstance_servesStaleDataWhileRefreshing() throws Exception {
+        ConfigurationService service = mock(ConfigurationService.class);
+        CIMInstance cimInstance = mockInstance(service);
+        when(service.getProjects(any(ProjectFilterSpecDataObj.class))).thenReturn(projects("projectA"));
+        assertEquals(Arrays.asList("projectA"), CimCache.getInstance().getProjects(cimInstance));
+
+        final CountDownLatch release = new CountDownLatch(1);
+        when(service.getProjects(any(ProjectFilterSpecDataObj.class))).thenAnswer(new Answer<List<ProjectDataObj>>() {
+            public List<ProjectDataObj> answer(InvocationOnMock invocation) throws Throwable {
+                assertTrue(release.await(10, TimeUnit.SECONDS));
+                return projects("projectB");
+            }
+        });
+        CimCache.getInstance().cacheCimInstance(cimInstance);
+        verify(service, timeout(5000).times(2)).getProjects(any(ProjectFilterSpecDataObj.class));
+
+        // the refresh is still waiting for Coverity Connect
+        assertEquals(Arrays.asList("projectA"), CimCache.getInstance().getProjects(cimInstance));
+
+        release.countDown();
+        waitForProjects(cimInstance, Arrays.asList("projectB"));
+    }
+
+    @Test
+    public void getProjects_keepsDataWhenRefreshFails() throws Exception {
+        ConfigurationService service = mock(ConfigurationService.class);
+        CIMInstance cimInstance = mockInstance(service);
+        when(service.getProjects(any(ProjectFilterSpecDataObj.class))).thenReturn(projects("projectA"));
+        assertEquals(Arrays.asList("projectA"), CimCache.getInstance().getProjects(cimInstance));
+
+        when(service.getProjects(any(ProjectFilterSpecDataObj.class))).thenThrow(new WebServiceException("unavailable"));
+        CimCache.getInstance().cacheCimInstance(cimInstance);
+        verify(service, timeout(5000).times(2)).getProjects(any(ProjectFilterSpecDataObj.class));
+
+        assertEquals(Arrays.asList("projectA"), CimCache.getInstance().getProjects(cimInstance));
+    }
+
+    @Test
+    public void getProjects_servesPersistedDataAndRevalidates() throws Exception {
+        ConfigurationService service = mock(ConfigurationService.class);
+        CIMInstance cimInstance = mockInstance(service);
+        final CountDownLatch release = new CountDownLatch(1);
+        when(service.getLastUpdateTimes()).thenReturn(updateTimes("2017-01-02T00:00:00Z"));
+        when(service.getProjects(any(ProjectFilterSpecDataObj.class))).thenAnswer(new Answer<List<ProjectDataObj>>() {
+            public List<ProjectDataObj> answer(InvocationOnMock invocation) throws Throwable {
+                assertTrue(release.await(10, TimeUnit.SECONDS));
+                return projects("projectB");
+            }
+        });
+
+        CimCacheFile cacheFile = new CimCacheFile(new File(folder.getRoot(), CimCacheFile.FILE_NAME));
+        Map<String, List<String>> projectStreams = new HashMap<>();
+        projectStreams.put("projectA", Arrays.asList("stream0"));
+        cacheFile.write(Collections.singletonList(new CimCacheFile.Snapshot(CimCacheFile.getInstanceKey(cimInstance),
+            CimCache.getUpdateSignature(updateTimes("2017-01-01T00:00:00Z")), projectStreams)));
+
+        // a fresh cache, as after a restart, answers from the file while Coverity Connect is still loading
+        CimCache cache = new CimCache(cacheFile);
+        assertEquals(Arrays.asList("projectA"), cache.getProjects(cimInstance));
+        assertEquals(Arrays.asList("stream0"), cache.getStreams(cimInstance, "projectA"));
+        verify(service, timeout(5000).atLeastOnce()).getProjects(any(ProjectFilterSpecDataObj.class));
+
+        release.countDown();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!cache.getProjects(cimInstance).equals(Arrays.asList("projectB")) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(Arrays.asList("projectB"), cache.getProjects(cimInstance));
+
+        // the reloaded data was written back
+        deadline = System.currentTimeMillis() + 5000;
+        while (!getPersistedProjects(cacheFile, cimInstance).contains("projectB") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(Collections.singleton("projectB"), getPersistedProjects(cacheFile, cimInstance));
+    }
+
+    private static Set<String> getPersistedProjects(CimCacheFile cacheFile, CIMInstance cimInstance) throws IOException {
+        CimCacheFile.Snapshot snapshot = cacheFile.read().get(CimCacheFile.getInstanceKey(cimInstance));
+        return snapshot != null ? snapshot.getProjectStreams().keySet() : Collections.<String>emptySet();
+    }
+
+    @Test
+    public void getStreams_loadsStreamsOfSelectedProjectOnly() throws Exception {
+        ConfigurationService service = mock(ConfigurationService.class);
+        CIMInstance cimInstance = mockInstance(service);
+        when(service.getProjects(any(ProjectFilterSpecDataObj.class))).thenAnswer(new Answer<List<ProjectDataObj>>() {
+            public List<ProjectDataObj> answer(InvocationOnMock invocation) throws Throwable {
+                ProjectFilterSpecDataObj filterSpec = (ProjectFilterSpecDataObj) invocation.getArguments()[0];
+                if (filterSpec.getNamePattern() == null) {
+                    assertEquals(Boolean.FALSE, filterSpec.isIncludeStreams());
+                    return projects("projectA", "projectB");
+                }
+                assertEquals("projectB", filterSpec.getNamePattern());
+                assertEquals(Boolean.TRUE, filterSpec.isIncludeStreams());
+                List<ProjectDataObj> projects = projects("projectB");
+                projects.get(0).getStreams().add(stream("stream1"));
+                projects.get(0).getStreams().add(stream("stream0"));
+                return projects;
+            }
+        });
+
+        assertEquals(Arrays.asList("projectA", "projectB"), CimCache.getInstance().getProjects(cimInstance));
+        verify(service, times(1)).getProjects(any(ProjectFilterSpecDataObj.class));
+
+        assertEquals(Arrays.asList("stream0", "stream1"), CimCache.getInstance().getStreams(cimInstance, "projectB"));
+        assertEquals(Arrays.asList("stream0", "stream1"), CimCache.getInstance().getStreams(cimInstance, "projectB"));
+        verify(service, times(2)).getProjects(any(ProjectFilterSpecDataObj.class));
+
+        // unknown projects are not looked up
+        assertEquals(new ArrayList<String>(), CimCache.getInstance().getStreams(cimInstance, "unknownProject"));
+        verify(service, times(2)).getProjects(any(ProjectFilterSpecDataObj.class));
+    }
+
+    @Test
+    public void retainAll_keepsDataOfRecreatedInstance() throws Exception {
+        ConfigurationService service = mock(ConfigurationService.class);
+        when(service.getProjects(any(ProjectFilterSpecDataObj.class))).thenReturn(projects("projectA"));
+        CimCache cache = new CimCache(null);
+        CIMInstance cimInstance = mockInstance(service, "recreated-instance");
+        assertEquals(Arrays.asList("projectA"), cache.getProjects(cimInstance));
+
+        // saving the global configuration creates new instances with the same settings
+        CIMInstance recreated = mockInstance(service, "recreated-instance");
+        cache.retainAll(Collections.singletonList(recreated));
+
+        assertEquals(Arrays.asList("projectA"), cache.getProjects(recreated));
+        verify(service, times(1)).getProjects(any(ProjectFilterSpecDataObj.class));
+
+        cache.retainAll(Collections.<CIMInstance>emptyList());
+        assertEquals(Arrays.asList("projectA"), cache.getProjects(recreated));
+        verify(service, times(2)).getProjects(any(ProjectFilterSpecDataObj.class));
+    }
+
+    @Test
+    public void getUpdateSignature_ignoresUnrelatedFeatures() throws Exception {
+        List<FeatureUpdateTimeDataObj> updateTimes = updateTimes("2017-01-01T00:00:00Z");
+        String signature = CimCache.getUpdateSignature(updateTimes);
+
+        updateTimes.add(updateTime("triage", "2017-01-05T00:00:00Z"));
+        assertEquals(signature, CimCache.getUpdateSignature(updateTimes));
+
+        updateTimes.add(updateTime("streams", "2017-01-05T00:00:00Z"));
+        assertNotEquals(signature, CimCache.getUpdateSignature(updateTimes));
+    }
+
+    private static CIMInstance mockInstance(ConfigurationService service) throws IOException {
+        return mockInstance(service, "mock-instance-" + mockInstances.incrementAndGet());
+    }
+
+    private static CIMInstance mockInstance(ConfigurationService service, String name) throws IOException {
+        CIMInstance cimInstance = mock(CIMInstance.class);
+        when(cimInstance.getName()).thenReturn(name);
+        when(cimInstance.getConfigurationService()).thenReturn(service);
+        return cimInstance;
+    }
+
+    private static List<ProjectDataObj> projects(String... names) {
+        List<ProjectDataObj> projects = new ArrayList<>();
+        for (String name : names) {
+            ProjectDataObj project = new ProjectDataObj();
+            ProjectIdDataObj projectId = new ProjectIdDataObj();
+            projectId.setName(name);
+            project.setId(projectId);
+            projects.add(project);
+        }
+        return projects;
+    }
+
+    private static StreamDataObj stream(String name) {
+        StreamDataObj stream = new StreamDataObj();
+        StreamIdDataObj streamId = new StreamIdDataObj();
+        streamId.setName(name);
+        stream.setId(streamId);
+        return stream;
+    }
+
+    private static List<FeatureUpdateTimeDataObj> updateTimes(String date) throws Exception {
+        return new ArrayList<>(Collections.singletonList(updateTime("projects", date)));
+    }
+
+    private static FeatureUpdateTimeDataObj updateTime(String feature, String date) throws Exception {
+        FeatureUpdateTimeDataObj updateTime = new FeatureUpdateTimeDataObj();
+        updateTime.setFeatureName(feature);
+        updateTime.setLastUpdateDate(DatatypeFactory.newInstance().newXMLGregorianCalendar(date));
+        return updateTime;
+    }
+
+    private static void waitForProjects(CIMInstance cimInstance, List<String> expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!expected.equals(CimCache.getInstance().getProjects(cimInstance)) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, CimCache.getInstance().getProjects(cimInstance));
+    }
 }
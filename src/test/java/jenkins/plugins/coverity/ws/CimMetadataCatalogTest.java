@@ -0,0 +1,223 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.ws.WebServiceException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.coverity.ws.v9.AttributeDefinitionDataObj;
+import com.coverity.ws.v9.AttributeDefinitionIdDataObj;
+import com.coverity.ws.v9.AttributeValueDataObj;
+import com.coverity.ws.v9.AttributeValueIdDataObj;
+import com.coverity.ws.v9.ComponentDataObj;
+import com.coverity.ws.v9.ComponentIdDataObj;
+import com.coverity.ws.v9.ComponentMapDataObj;
+import com.coverity.ws.v9.ComponentMapFilterSpecDataObj;
+import com.coverity.ws.v9.ComponentMapIdDataObj;
+import com.coverity.ws.v9.ConfigurationService;
+import com.coverity.ws.v9.FeatureUpdateTimeDataObj;
+import com.coverity.ws.v9.StreamDataObj;
+import com.coverity.ws.v9.StreamIdDataObj;
+
+import jenkins.plugins.coverity.CIMInstance;
+
+public class CimMetadataCatalogTest {
+    private ConfigurationService service;
+    private CIMInstance cimInstance;
+
+    @Before
+    public void setup() throws Exception {
+        service = mock(ConfigurationService.class);
+        when(service.getLastUpdateTimes()).thenReturn(updateTimes("2017-01-01T00:00:00Z"));
+        when(service.getAttribute(any(AttributeDefinitionIdDataObj.class))).thenReturn(attribute("Unclassified", "Bug"));
+        when(service.getCheckerNames()).thenReturn(new ArrayList<>(Arrays.asList("UNINIT", "NULL_RETURNS", "FORWARD_NULL")));
+        when(service.getComponentMaps(any(ComponentMapFilterSpecDataObj.class))).thenReturn(Arrays.asList(
+            componentMap("mapA", "Default.Other", "Default.Core"),
+            componentMap("mapB", "Web.Other")));
+
+        cimInstance = mock(CIMInstance.class);
+        when(cimInstance.getName()).thenReturn("mock-instance");
+        when(cimInstance.getConfigurationService()).thenReturn(service);
+        when(cimInstance.getMetadataLookups()).thenReturn(new MetadataLookups(service, WebServiceExecutors.getExecutor()));
+    }
+
+    @Test
+    public void getCheckerNames_loadsCatalogOnce() throws Exception {
+        CimMetadataCatalog catalog = new CimMetadataCatalog();
+
+        assertEquals(Arrays.asList("FORWARD_NULL", "NULL_RETURNS", "UNINIT"), catalog.getCheckerNames(cimInstance));
+        assertEquals(Arrays.asList("Unclassified", "Bug"), catalog.getAttributeValues(cimInstance, "Classification"));
+        assertEquals(Arrays.asList("Unclassified", "Bug"), catalog.getAttributeValues(cimInstance, "Severity"));
+        assertEquals(Collections.<String>emptyList(), catalog.getAttributeValues(cimInstance, "Legacy"));
+        assertEquals(Arrays.asList("FORWARD_NULL", "NULL_RETURNS", "UNINIT"), catalog.getCheckerNames(cimInstance));
+
+        verify(service, times(1)).getCheckerNames();
+        verify(service, times(3)).getAttribute(any(AttributeDefinitionIdDataObj.class));
+        verify(service, times(1)).getComponentMaps(any(ComponentMapFilterSpecDataObj.class));
+    }
+
+    @Test
+    public void getComponents_returnsComponentsOfStreamComponentMap() throws Exception {
+        when(cimInstance.getStream("stream1")).thenReturn(stream("stream1", "mapB"));
+        CimMetadataCatalog catalog = new CimMetadataCatalog();
+
+        assertEquals(Arrays.asList("Web.Other"), catalog.getComponents(cimInstance, "stream1"));
+        assertEquals(Arrays.asList("Web.Other"), catalog.getComponents(cimInstance, "stream1"));
+        assertEquals(Arrays.asList("Default.Other", "Default.Core", "Web.Other"), catalog.getComponents(cimInstance, null));
+
+        verify(cimInstance, times(1)).getStream("stream1");
+        verify(service, times(1)).getComponentMaps(any(ComponentMapFilterSpecDataObj.class));
+    }
+
+    @Test
+    public void getCheckerNames_reportsFailedFirstLoad() throws Exception {
+        when(service.getCheckerNames()).thenThrow(new WebServiceException("Connection refused"));
+        CimMetadataCatalog catalog = new CimMetadataCatalog();
+
+        try {
+            catalog.getCheckerNames(cimInstance);
+            fail("Expected the failed load to be reported");
+        } catch (WebServiceException e) {
+            assertEquals("Connection refused", e.getMessage());
+        }
+    }
+
+    @Test
+    public void cacheCimInstance_reloadsOnlyWhenUpdateTimesChanged() throws Exception {
+        CimMetadataCatalog catalog = new CimMetadataCatalog();
+        catalog.getCheckerNames(cimInstance);
+
+        // unchanged update times, the catalog is not loaded again
+        catalog.cacheCimInstance(cimInstance);
+        verify(service, timeout(5000).times(2)).getLastUpdateTimes();
+        verify(service, times(1)).getCheckerNames();
+
+        // changed update times, the catalog is loaded again
+        when(service.getLastUpdateTimes()).thenReturn(updateTimes("2017-01-02T00:00:00Z"));
+        when(service.getCheckerNames()).thenReturn(new ArrayList<>(Arrays.asList("RESOURCE_LEAK")));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!Arrays.asList("RESOURCE_LEAK").equals(catalog.getCheckerNames(cimInstance)) && System.currentTimeMillis() < deadline) {
+            // the first check may still be finishing, so keep asking
+            catalog.cacheCimInstance(cimInstance);
+            Thread.sleep(10);
+        }
+        assertEquals(Arrays.asList("RESOURCE_LEAK"), catalog.getCheckerNames(cimInstance));
+        verify(service, times(2)).getCheckerNames();
+    }
+
+    @Test
+    public void retainAll_keepsCatalogOfRecreatedInstance() throws Exception {
+        CimMetadataCatalog catalog = new CimMetadataCatalog();
+        catalog.getCheckerNames(cimInstance);
+
+        // saving the global configuration creates new instances with the same settings
+        CIMInstance recreated = mock(CIMInstance.class);
+        when(recreated.getName()).thenReturn("mock-instance");
+        when(recreated.getConfigurationService()).thenReturn(service);
+        when(recreated.getMetadataLookups()).thenReturn(new MetadataLookups(service, WebServiceExecutors.getExecutor()));
+        catalog.retainAll(Collections.singletonList(recreated));
+
+        assertEquals(Arrays.asList("FORWARD_NULL", "NULL_RETURNS", "UNINIT"), catalog.getCheckerNames(recreated));
+        verify(service, times(1)).getCheckerNames();
+    }
+
+    @Test
+    public void cacheCimInstance_refreshesMoreInstancesThanLookupThreads() throws Exception {
+        final int instances = WebServiceExecutors.POOL_SIZE + 1;
+        final CountDownLatch refreshing = new CountDownLatch(instances);
+        when(service.getLastUpdateTimes()).thenAnswer(new Answer<List<FeatureUpdateTimeDataObj>>() {
+            public List<FeatureUpdateTimeDataObj> answer(InvocationOnMock invocation) throws Throwable {
+                // hold each refresh until all of them run at once, or there are no threads left to run the others
+                refreshing.countDown();
+                refreshing.await(200, TimeUnit.MILLISECONDS);
+                return updateTimes("2017-01-01T00:00:00Z");
+            }
+        });
+
+        CimMetadataCatalog catalog = new CimMetadataCatalog();
+        for (int i = 0; i < instances; i++) {
+            CIMInstance instance = mock(CIMInstance.class);
+            when(instance.getName()).thenReturn("mock-instance-" + i);
+            when(instance.getConfigurationService()).thenReturn(service);
+            when(instance.getMetadataLookups()).thenReturn(new MetadataLookups(service, WebServiceExecutors.getExecutor()));
+            catalog.cacheCimInstance(instance);
+        }
+
+        // each refresh fetches its catalog on the lookup pool, which only works if the refreshes do not occupy it
+        verify(service, timeout(30000).times(instances)).getCheckerNames();
+    }
+
+    private static AttributeDefinitionDataObj attribute(String... values) {
+        AttributeDefinitionDataObj attribute = new AttributeDefinitionDataObj();
+        for (String name : values) {
+            AttributeValueDataObj value = new AttributeValueDataObj();
+            AttributeValueIdDataObj valueId = new AttributeValueIdDataObj();
+            valueId.setName(name);
+            value.setAttributeValueId(valueId);
+            attribute.getConfigurableValues().add(value);
+        }
+        return attribute;
+    }
+
+    private static ComponentMapDataObj componentMap(String name, String... components) {
+        ComponentMapDataObj map = new ComponentMapDataObj();
+        ComponentMapIdDataObj mapId = new ComponentMapIdDataObj();
+        mapId.setName(name);
+        map.setComponentMapId(mapId);
+        for (String componentName : components) {
+            ComponentDataObj component = new ComponentDataObj();
+            ComponentIdDataObj componentId = new ComponentIdDataObj();
+            componentId.setName(componentName);
+            component.setComponentId(componentId);
+            map.getComponents().add(component);
+        }
+        return map;
+    }
+
+    private static StreamDataObj stream(String name, String componentMap) {
+        StreamDataObj stream = new StreamDataObj();
+        StreamIdDataObj streamId = new StreamIdDataObj();
+        streamId.setName(name);
+        stream.setId(streamId);
+        ComponentMapIdDataObj mapId = new ComponentMapIdDataObj();
+        mapId.setName(componentMap);
+        stream.setComponentMapId(mapId);
+        return stream;
+    }
+
+    private static List<FeatureUpdateTimeDataObj> updateTimes(String date) throws Exception {
+        FeatureUpdateTimeDataObj updateTime = new FeatureUpdateTimeDataObj();
+        updateTime.setFeatureName("componentMaps");
+        updateTime.setLastUpdateDate(DatatypeFactory.newInstance().newXMLGregorianCalendar(date));
+        return new ArrayList<>(Collections.singletonList(updateTime));
+    }
+}
@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class CircuitBreakerTest {
+    private static class TestCircuitBreaker extends CircuitBreaker {
+        private long time;
+
+        TestCircuitBreaker(int failureThreshold, long openMillis) {
+            super(failureThreshold, openMillis);
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return time;
+        }
+    }
+
+    @Test
+    public void recordFailure_opensAfterConsecutiveFailures() {
+        TestCircuitBreaker circuitBreaker = new TestCircuitBreaker(3, 1000);
+
+        circuitBreaker.recordFailure();
+        circuitBreaker.recordFailure();
+        circuitBreaker.recordSuccess();
+        circuitBreaker.recordFailure();
+        circuitBreaker.recordFailure();
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertTrue(circuitBreaker.allowRequest());
+
+        circuitBreaker.recordFailure();
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertFalse(circuitBreaker.allowRequest());
+    }
+
+    @Test
+    public void allowRequest_afterOpenPeriod_allowsSingleTrialCall() {
+        TestCircuitBreaker circuitBreaker = new TestCircuitBreaker(1, 1000);
+        circuitBreaker.recordFailure();
+
+        circuitBreaker.time = 999;
+        assertFalse(circuitBreaker.allowRequest());
+
+        circuitBreaker.time = 1000;
+        assertTrue(circuitBreaker.allowRequest());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+        assertFalse(circuitBreaker.allowRequest());
+
+        // a failed trial opens the circuit again
+        circuitBreaker.recordFailure();
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertFalse(circuitBreaker.allowRequest());
+
+        // a successful trial closes it
+        circuitBreaker.time = 2000;
+        assertTrue(circuitBreaker.allowRequest());
+        circuitBreaker.recordSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertTrue(circuitBreaker.allowRequest());
+    }
+
+    @Test
+    public void recordNotSent_allowsAnotherTrialCall() {
+        TestCircuitBreaker circuitBreaker = new TestCircuitBreaker(1, 1000);
+        circuitBreaker.recordFailure();
+
+        circuitBreaker.time = 1000;
+        assertTrue(circuitBreaker.allowRequest());
+        circuitBreaker.recordNotSent();
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+        assertTrue(circuitBreaker.allowRequest());
+    }
+}
@@ -0,0 +1,231 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.ws.WebServiceException;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.coverity.ws.v9.ConfigurationService;
+import com.coverity.ws.v9.CovRemoteServiceException_Exception;
+import com.coverity.ws.v9.ProjectDataObj;
+import com.coverity.ws.v9.ProjectFilterSpecDataObj;
+import com.coverity.ws.v9.StreamDataObj;
+import com.coverity.ws.v9.StreamFilterSpecDataObj;
+import com.coverity.ws.v9.StreamIdDataObj;
+
+public class CoalescingWebServicesTest {
+    private static final int CALLERS = 8;
+
+    private final ConnectionKey connection = new ConnectionKey("cim-host", 8080, false, "user", "password");
+    private final SingleFlight<List<Object>, Object> calls = new SingleFlight<>();
+    private final ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+
+    @After
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Answers once all callers are waiting, so the test does not depend on timing
+     */
+    private Answer<Object> blockUntilReleased(final CountDownLatch release, final Object result) {
+        return new Answer<Object>() {
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                Assert.assertTrue(release.await(10, TimeUnit.SECONDS));
+                if (result instanceof Throwable) {
+                    throw (Throwable) result;
+                }
+                return result;
+            }
+        };
+    }
+
+    private <T> List<Future<T>> callConcurrently(Callable<T> call) throws InterruptedException {
+        List<Future<T>> futures = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            futures.add(executor.submit(call));
+        }
+        // wait until the first call is in flight and the others had a chance to join it
+        long deadline = System.currentTimeMillis() + 10000;
+        while (calls.getInFlightCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        Thread.sleep(200);
+        return futures;
+    }
+
+    @Test
+    public void concurrentIdenticalCalls_shareOneRequest() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ConfigurationService service = mock(ConfigurationService.class);
+        when(service.getCheckerNames()).thenAnswer(blockUntilReleased(release, Arrays.asList("FORWARD_NULL", "NULL_RETURNS")));
+        final ConfigurationService coalescing = CoalescingWebServices.wrap(ConfigurationService.class, service, connection, calls);
+
+        List<Future<List<String>>> futures = callConcurrently(new Callable<List<String>>() {
+            public List<String> call() throws Exception {
+                return coalescing.getCheckerNames();
+            }
+        });
+        release.countDown();
+
+        List<List<String>> results = new ArrayList<>();
+        for (Future<List<String>> future : futures) {
+            List<String> result = future.get(10, TimeUnit.SECONDS);
+            Assert.assertEquals(Arrays.asList("FORWARD_NULL", "NULL_RETURNS"), result);
+            for (List<String> other : results) {
+                Assert.assertNotSame(other, result);
+            }
+            results.add(result);
+        }
+        verify(service, times(1)).getCheckerNames();
+        Assert.assertEquals(0, calls.getInFlightCount());
+    }
+
+    @Test
+    public void concurrentIdenticalCalls_shareException() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ConfigurationService service = mock(ConfigurationService.class);
+        when(service.getProjects(any(ProjectFilterSpecDataObj.class))).thenAnswer(
+            blockUntilReleased(release, new CovRemoteServiceException_Exception("failed", null)));
+        final ConfigurationService coalescing = CoalescingWebServices.wrap(ConfigurationService.class, service, connection, calls);
+
+        List<Future<List<ProjectDataObj>>> futures = callConcurrently(new Callable<List<ProjectDataObj>>() {
+            public List<ProjectDataObj> call() throws Exception {
+                return coalescing.getProjects(new ProjectFilterSpecDataObj());
+            }
+        });
+        release.countDown();
+
+        for (Future<List<ProjectDataObj>> future : futures) {
+            try {
+                future.get(10, TimeUnit.SECONDS);
+                Assert.fail("expected the service exception");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof CovRemoteServiceException_Exception);
+            }
+        }
+        verify(service, times(1)).getProjects(any(ProjectFilterSpecDataObj.class));
+    }
+
+    @Test
+    public void interruptedWhileWaitingForSharedCall_throwsWebServiceException() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ConfigurationService service = mock(ConfigurationService.class);
+        when(service.getCheckerNames()).thenAnswer(blockUntilReleased(release, Arrays.asList("FORWARD_NULL")));
+        final ConfigurationService coalescing = CoalescingWebServices.wrap(ConfigurationService.class, service, connection, calls);
+
+        Future<List<String>> inFlight = executor.submit(new Callable<List<String>>() {
+            public List<String> call() throws Exception {
+                return coalescing.getCheckerNames();
+            }
+        });
+        long deadline = System.currentTimeMillis() + 10000;
+        while (calls.getInFlightCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+
+        Thread.currentThread().interrupt();
+        try {
+            coalescing.getCheckerNames();
+            Assert.fail("expected the interrupted wait to fail");
+        } catch (WebServiceException e) {
+            Assert.assertTrue(e.getCause() instanceof InterruptedException);
+            Assert.assertTrue(Thread.interrupted());
+        } finally {
+            release.countDown();
+        }
+        Assert.assertEquals(Arrays.asList("FORWARD_NULL"), inFlight.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void copy_returnsIndependentDataObjects() throws Exception {
+        ProjectDataObj project = new ProjectDataObj();
+        project.setProjectKey(1L);
+        project.setDateCreated(DatatypeFactory.newInstance().newXMLGregorianCalendar("2017-01-01T00:00:00Z"));
+        StreamDataObj stream = new StreamDataObj();
+        StreamIdDataObj streamId = new StreamIdDataObj();
+        streamId.setName("stream1");
+        stream.setId(streamId);
+        project.getStreams().add(stream);
+
+        @SuppressWarnings("unchecked")
+        List<ProjectDataObj> copy = (List<ProjectDataObj>) CoalescingWebServices.copy(Arrays.asList(project));
+        ProjectDataObj projectCopy = copy.get(0);
+        Assert.assertNotSame(project, projectCopy);
+        Assert.assertEquals(Long.valueOf(1), projectCopy.getProjectKey());
+        Assert.assertEquals(project.getDateCreated(), projectCopy.getDateCreated());
+        Assert.assertNotSame(project.getDateCreated(), projectCopy.getDateCreated());
+        Assert.assertEquals("stream1", projectCopy.getStreams().get(0).getId().getName());
+
+        // changes of one caller are not seen by the others
+        projectCopy.getStreams().get(0).getId().setName("changed");
+        projectCopy.getStreams().clear();
+        Assert.assertEquals("stream1", project.getStreams().get(0).getId().getName());
+    }
+
+    @Test
+    public void sequentialCalls_areNotCached() throws Exception {
+        ConfigurationService service = mock(ConfigurationService.class);
+        when(service.getCheckerNames()).thenReturn(new ArrayList<String>());
+        ConfigurationService coalescing = CoalescingWebServices.wrap(ConfigurationService.class, service, connection, calls);
+
+        coalescing.getCheckerNames();
+        coalescing.getCheckerNames();
+
+        verify(service, times(2)).getCheckerNames();
+    }
+
+    @Test
+    public void describe_comparesDataObjectsByValue() {
+        StreamFilterSpecDataObj filter = new StreamFilterSpecDataObj();
+        filter.setNamePattern("stream*");
+        filter.getLanguageList().add("CXX");
+        StreamFilterSpecDataObj sameFilter = new StreamFilterSpecDataObj();
+        sameFilter.setNamePattern("stream*");
+        sameFilter.getLanguageList().add("CXX");
+        StreamFilterSpecDataObj otherFilter = new StreamFilterSpecDataObj();
+        otherFilter.setNamePattern("other*");
+
+        Assert.assertEquals(CoalescingWebServices.describe(filter), CoalescingWebServices.describe(sameFilter));
+        Assert.assertEquals(CoalescingWebServices.describe(filter).hashCode(), CoalescingWebServices.describe(sameFilter).hashCode());
+        Assert.assertNotEquals(CoalescingWebServices.describe(filter), CoalescingWebServices.describe(otherFilter));
+        Assert.assertNotEquals(CoalescingWebServices.describe(new ProjectFilterSpecDataObj()), CoalescingWebServices.describe(new StreamFilterSpecDataObj()));
+    }
+
+    @Test
+    public void otherOperations_areNotCoalesced() {
+        Assert.assertFalse(CoalescingWebServices.COALESCED_OPERATIONS.contains("createStream"));
+        Assert.assertFalse(CoalescingWebServices.COALESCED_OPERATIONS.contains("getMergedDefectsForStreams"));
+    }
+}
@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+import javax.xml.transform.Source;
+import javax.xml.ws.BindingProvider;
+import javax.xml.ws.Dispatch;
+import javax.xml.ws.Service;
+import javax.xml.ws.handler.Handler;
+import javax.xml.ws.soap.SOAPBinding;
+
+import com.coverity.ws.v9.DefectService;
+import com.coverity.ws.v9.PageSpecDataObj;
+import com.coverity.ws.v9.SnapshotScopeSpecDataObj;
+import com.coverity.ws.v9.StreamIdDataObj;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Measures reading a page of 1000 defects end to end, from the HTTP response of a local server through the JAX-WS
+ * client and its handler chain to the decoded defects. Compares {@link StreamingDefectPageSource} with and without the
+ * handlers attached by {@link WebServiceFactory}, and {@link JaxbDefectPageSource}. The response is sent chunked, as
+ * it is for compressed responses, so the handlers cannot rely on a Content-Length. Not run as part of the unit tests,
+ * run the main method from the test classpath:
+ * <pre>
+ * java -cp target/classes:target/test-classes:&lt;test classpath&gt; jenkins.plugins.coverity.ws.DefectPageDispatchBenchmark [iterations]
+ * </pre>
+ */
+public class DefectPageDispatchBenchmark {
+    private static final int PAGE_SIZE = 1000;
+    private static final QName SERVICE_NAME = new QName(WebServiceFactory.COVERITY_V9_NAMESPACE, "DefectServiceService");
+    private static final QName PORT_NAME = new QName(WebServiceFactory.COVERITY_V9_NAMESPACE, "DefectServicePort");
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+
+        final byte[] response = toEnvelope(MergedDefectsPageDecoderTest.marshalPage(MergedDefectsPageDecoderTest.getTestPage(PAGE_SIZE, PAGE_SIZE)));
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext(WebServiceFactory.DEFECT_SERVICE_V9_ENDPOINT, new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                byte[] buffer = new byte[8192];
+                while (exchange.getRequestBody().read(buffer) >= 0) {
+                    // the request is not looked at
+                }
+                exchange.getResponseHeaders().set("Content-Type", "text/xml; charset=utf-8");
+                exchange.sendResponseHeaders(200, 0);
+                OutputStream out = exchange.getResponseBody();
+                out.write(response);
+                out.close();
+            }
+        });
+        server.start();
+
+        try {
+            String endpoint = "http://localhost:" + server.getAddress().getPort() + WebServiceFactory.DEFECT_SERVICE_V9_ENDPOINT;
+            System.out.println("Response size: " + response.length + " bytes, " + PAGE_SIZE + " defects");
+
+            Service service = Service.create(SERVICE_NAME);
+            service.addPort(PORT_NAME, SOAPBinding.SOAP11HTTP_BINDING, endpoint);
+
+            Dispatch<Source> plainDispatch = service.createDispatch(PORT_NAME, Source.class, Service.Mode.PAYLOAD);
+            Dispatch<Source> dispatch = service.createDispatch(PORT_NAME, Source.class, Service.Mode.PAYLOAD);
+            attachHandlers(dispatch, endpoint);
+            DefectService defectService = service.getPort(PORT_NAME, DefectService.class);
+            ((BindingProvider) defectService).getRequestContext().put(BindingProvider.ENDPOINT_ADDRESS_PROPERTY, endpoint);
+            attachHandlers((BindingProvider) defectService, endpoint);
+
+            DefectPageSource streamingWithoutHandlers = new StreamingDefectPageSource(plainDispatch);
+            DefectPageSource streaming = new StreamingDefectPageSource(dispatch);
+            DefectPageSource jaxb = new JaxbDefectPageSource(defectService);
+
+            // warm up all paths before measuring
+            run("StAX, no handlers (warm-up)", streamingWithoutHandlers, iterations);
+            run("StAX (warm-up)", streaming, iterations);
+            run("JAXB (warm-up)", jaxb, iterations);
+            run("StAX, no handlers", streamingWithoutHandlers, iterations);
+            run("StAX", streaming, iterations);
+            run("JAXB", jaxb, iterations);
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    /**
+     * The security and metrics handlers, as attached to each client by {@link WebServiceFactory}
+     */
+    private static void attachHandlers(BindingProvider client, String server) {
+        client.getBinding().setHandlerChain(Arrays.<Handler>asList(
+            new PrecomputedSecurityHeaderHandler("test-user", "password"), new MetricsHandler(server)));
+    }
+
+    private static byte[] toEnvelope(byte[] payload) {
+        String body = new String(payload, StandardCharsets.UTF_8);
+        if (body.startsWith("<?xml")) {
+            body = body.substring(body.indexOf("?>") + 2);
+        }
+        return ("<S:Envelope xmlns:S=\"http://schemas.xmlsoap.org/soap/envelope/\"><S:Body>" + body + "</S:Body></S:Envelope>")
+            .getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void run(String name, DefectPageSource source, int iterations) throws Exception {
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        List<StreamIdDataObj> streamIds = Collections.singletonList(new StreamIdDataObj());
+        PageSpecDataObj pageSpec = new PageSpecDataObj();
+        pageSpec.setPageSize(PAGE_SIZE);
+        pageSpec.setStartIndex(0);
+
+        int defects = 0;
+        long allocatedBefore = threadBean.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            defects += source.getMergedDefectsForStreams(new ArrayList<>(streamIds), null, pageSpec, new SnapshotScopeSpecDataObj()).getDefects().size();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        if (defects != PAGE_SIZE * iterations) {
+            throw new IllegalStateException(name + " decoded " + defects + " defects");
+        }
+        System.out.println(String.format("%-30s %8.3f ms/page %12d bytes/page", name,
+            elapsed / 1e6 / iterations, allocated / iterations));
+    }
+}
@@ -11,27 +11,57 @@
 package jenkins.plugins.coverity.ws;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
+import java.io.File;
 import java.io.IOException;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.ws.WebServiceException;
 
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import com.coverity.ws.v9.AttributeDefinitionDataObj;
+import com.coverity.ws.v9.AttributeDefinitionIdDataObj;
+import com.coverity.ws.v9.AttributeValueDataObj;
+import com.coverity.ws.v9.AttributeValueIdDataObj;
+import com.coverity.ws.v9.ConfigurationService;
 import com.coverity.ws.v9.CovRemoteServiceException_Exception;
+import com.coverity.ws.v9.DefectService;
+import com.coverity.ws.v9.MergedDefectDataObj;
+import com.coverity.ws.v9.MergedDefectFilterSpecDataObj;
+import com.coverity.ws.v9.MergedDefectsPageDataObj;
+import com.coverity.ws.v9.PageSpecDataObj;
+import com.coverity.ws.v9.SnapshotFilterSpecDataObj;
+import com.coverity.ws.v9.SnapshotIdDataObj;
+import com.coverity.ws.v9.SnapshotScopeSpecDataObj;
+import com.coverity.ws.v9.StreamIdDataObj;
 
 import hudson.model.AbstractBuild;
 import hudson.model.BuildListener;
@@ -41,9 +71,11 @@ import jenkins.model.Jenkins;
 import jenkins.plugins.coverity.CIMInstance;
 import jenkins.plugins.coverity.CIMStream;
 import jenkins.plugins.coverity.CoverityBuildAction;
+import jenkins.plugins.coverity.CoverityDefect;
 import jenkins.plugins.coverity.CoverityPublisher;
 import jenkins.plugins.coverity.CoverityPublisher.DescriptorImpl;
 import jenkins.plugins.coverity.DefectFilters;
+import jenkins.plugins.coverity.DefectRecordFile;
 import jenkins.plugins.coverity.Utils.CoverityPublisherBuilder;
 import jenkins.plugins.coverity.Utils.TestableConsoleLogger;
 import jenkins.plugins.coverity.ws.TestWebServiceFactory.TestDefectService;
@@ -51,6 +83,12 @@ import jenkins.plugins.coverity.ws.TestWebServiceFactory.TestDefectService;
 @RunWith(PowerMockRunner.class)
 @PrepareForTest(Jenkins.class)
 public class DefectReaderTest {
+    @Rule
+    public TemporaryFolder buildDir = new TemporaryFolder();
+
+    @Rule
+    public TemporaryFolder jenkinsHome = new TemporaryFolder();
+
     @Mock
     private Jenkins jenkins;
 
@@ -64,6 +102,7 @@ public class DefectReaderTest {
     private DescriptorImpl descriptor;
 
     private TestableConsoleLogger consoleLogger;
+    private CIMInstance cimInstance;
     private TestDefectService defectService;
     private static final String cimInstanceName = "cim-instance";
 
@@ -77,10 +116,14 @@ public class DefectReaderTest {
         consoleLogger = new TestableConsoleLogger();
         when(listener.getLogger()).thenReturn(consoleLogger.getPrintStream());
 
+        // defects are recorded in the build directory
+        when(build.getRootDir()).thenReturn(buildDir.getRoot());
+
         // setup global configuration (DescriptorImpl) with TestWebService
-        CIMInstance cimInstance = mock(CIMInstance.class);
+        cimInstance = mock(CIMInstance.class);
         defectService = (TestDefectService)new TestWebServiceFactory().getDefectService(cimInstance);
         when(cimInstance.getDefectService()).thenReturn(defectService);
+        when(cimInstance.getConfigurationService()).thenReturn(new TestWebServiceFactory().getConfigurationService(cimInstance));
         when(descriptor.getInstance(cimInstanceName)).thenReturn(cimInstance);
         when(jenkins.getDescriptorOrDie(CoverityPublisher.class)).thenReturn(descriptor);
     }
@@ -185,6 +228,260 @@ public class DefectReaderTest {
             "Coverity details: rootUrl/buildUrl/coverity_defects");
     }
 
+    @Test
+    public void getLatestDefectsForBuild_withConcurrentPageFetch_keepsDefectOrder() throws Descriptor.FormException, ParseException, DatatypeConfigurationException, IOException, CovRemoteServiceException_Exception {
+        when(jenkins.getRootUrl()).thenReturn("rootUrl/");
+        when(build.getUrl()).thenReturn("buildUrl/");
+        when(cimInstance.getDefectPageConcurrency()).thenReturn(3);
+
+        CIMStream cimStream = new CIMStream(cimInstanceName, "test-project", "test-stream", getMatchingDefectFilters());
+
+        CoverityPublisher publisher = new CoverityPublisherBuilder().withCimStream(cimStream).build();
+
+        defectService.setupMergedDefects(5500);
+
+        DefectReader reader = new DefectReader(build, listener, publisher);
+
+        reader.getLatestDefectsForBuild();
+
+        // assert build action added to build with all defects in page order
+        ArgumentCaptor<CoverityBuildAction> buildAction = ArgumentCaptor.forClass(CoverityBuildAction.class);
+        verify(build).addAction(buildAction.capture());
+        List<CoverityDefect> defects = buildAction.getValue().getDefects();
+        assertEquals(5500, defects.size());
+        for (int i = 0; i < defects.size(); i++) {
+            assertEquals(Long.valueOf(i), defects.get(i).getCid());
+        }
+
+        // verify all expected log messages were written
+        consoleLogger.verifyMessages(
+            "[Coverity] Fetching defects for stream \"test-stream\"",
+            "[Coverity] Fetching defects for stream \"test-stream\" (fetched 1,000 of 5,500)",
+            "[Coverity] Fetching defects for stream \"test-stream\" (fetched 2,000 of 5,500)",
+            "[Coverity] Fetching defects for stream \"test-stream\" (fetched 3,000 of 5,500)",
+            "[Coverity] Fetching defects for stream \"test-stream\" (fetched 4,000 of 5,500)",
+            "[Coverity] Fetching defects for stream \"test-stream\" (fetched 5,000 of 5,500)",
+            "[Coverity] Found 5,500 defects matching all filters",
+            "Coverity details: rootUrl/buildUrl/coverity_defects");
+    }
+
+    @Test
+    public void getLatestDefectsForBuild_fetchingIncrementally_combinesPreviousDefectsWithChanges() throws IOException, CovRemoteServiceException_Exception {
+        when(jenkins.getRootUrl()).thenReturn("rootUrl/");
+        when(build.getUrl()).thenReturn("buildUrl/");
+
+        CIMStream cimStream = new CIMStream(cimInstanceName, "test-project", "test-stream", null);
+        CoverityPublisher publisher = new CoverityPublisherBuilder().withCimStream(cimStream).build();
+        publisher.setFetchDefectsIncrementally(true);
+
+        // latest snapshot of the stream is 12
+        ConfigurationService configurationService = mock(ConfigurationService.class);
+        when(configurationService.getSnapshotsForStream(any(StreamIdDataObj.class), any(SnapshotFilterSpecDataObj.class)))
+            .thenReturn(Arrays.asList(newSnapshotId(10), newSnapshotId(12), newSnapshotId(11)));
+        when(cimInstance.getConfigurationService()).thenReturn(configurationService);
+
+        // the first build fetches all defects of snapshot 12
+        DefectService deltaService = mock(DefectService.class);
+        when(cimInstance.getDefectService()).thenReturn(deltaService);
+        when(deltaService.getMergedDefectsForStreams(anyListOf(StreamIdDataObj.class), any(MergedDefectFilterSpecDataObj.class), any(PageSpecDataObj.class), any(SnapshotScopeSpecDataObj.class)))
+            .thenReturn(newPage(1, 2, 3));
+
+        new DefectReader(build, listener, publisher).getLatestDefectsForBuild();
+
+        ArgumentCaptor<CoverityBuildAction> previousAction = ArgumentCaptor.forClass(CoverityBuildAction.class);
+        verify(build).addAction(previousAction.capture());
+        assertEquals(Long.valueOf(12), previousAction.getValue().getSnapshotId());
+
+        // the next build compares snapshot 13 against 12: cid 2 was fixed and cid 4 is new
+        AbstractBuild<?, ?> nextBuild = mock(AbstractBuild.class);
+        when(nextBuild.getRootDir()).thenReturn(buildDir.newFolder());
+        when(nextBuild.getUrl()).thenReturn("nextBuildUrl/");
+        doReturn(build).when(nextBuild).getPreviousBuild();
+        when(build.getAction(CoverityBuildAction.class)).thenReturn(previousAction.getValue());
+        when(configurationService.getSnapshotsForStream(any(StreamIdDataObj.class), any(SnapshotFilterSpecDataObj.class)))
+            .thenReturn(Arrays.asList(newSnapshotId(12), newSnapshotId(13)));
+
+        reset(deltaService);
+        when(deltaService.getMergedDefectsForStreams(anyListOf(StreamIdDataObj.class), any(MergedDefectFilterSpecDataObj.class), any(PageSpecDataObj.class), any(SnapshotScopeSpecDataObj.class)))
+            .thenAnswer(new Answer<MergedDefectsPageDataObj>() {
+                public MergedDefectsPageDataObj answer(InvocationOnMock invocation) {
+                    MergedDefectFilterSpecDataObj filter = (MergedDefectFilterSpecDataObj)invocation.getArguments()[1];
+                    SnapshotScopeSpecDataObj snapshotScope = (SnapshotScopeSpecDataObj)invocation.getArguments()[3];
+                    assertEquals("13", snapshotScope.getShowSelector());
+                    assertEquals("12", snapshotScope.getCompareSelector());
+                    return "Fixed".equals(filter.getSnapshotComparisonField()) ? newPage(2) : newPage(4);
+                }
+            });
+
+        new DefectReader(nextBuild, listener, publisher).getLatestDefectsForBuild();
+
+        ArgumentCaptor<CoverityBuildAction> buildAction = ArgumentCaptor.forClass(CoverityBuildAction.class);
+        verify(nextBuild).addAction(buildAction.capture());
+        assertEquals(Long.valueOf(13), buildAction.getValue().getSnapshotId());
+        List<CoverityDefect> defects = buildAction.getValue().getDefects();
+        assertEquals(3, defects.size());
+        assertEquals(Long.valueOf(1), defects.get(0).getCid());
+        assertEquals(Long.valueOf(3), defects.get(1).getCid());
+        assertEquals(Long.valueOf(4), defects.get(2).getCid());
+        verify(deltaService, times(2)).getMergedDefectsForStreams(anyListOf(StreamIdDataObj.class), any(MergedDefectFilterSpecDataObj.class), any(PageSpecDataObj.class), any(SnapshotScopeSpecDataObj.class));
+    }
+
+    @Test
+    public void getLatestDefectsForBuild_fetchingIncrementallyWithTriageFilters_fetchesAllDefects() throws IOException, CovRemoteServiceException_Exception {
+        CIMStream cimStream = new CIMStream(cimInstanceName, "test-project", "test-stream", getMatchingDefectFilters());
+        CoverityPublisher publisher = new CoverityPublisherBuilder().withCimStream(cimStream).build();
+        publisher.setFetchDefectsIncrementally(true);
+
+        // only some of the classifications are selected, a defect can be dismissed without a new snapshot
+        ConfigurationService configurationService = mock(ConfigurationService.class);
+        when(configurationService.getSnapshotsForStream(any(StreamIdDataObj.class), any(SnapshotFilterSpecDataObj.class)))
+            .thenReturn(Arrays.asList(newSnapshotId(12)));
+        when(configurationService.getAttribute(any(AttributeDefinitionIdDataObj.class)))
+            .thenReturn(newAttribute("Unclassified", "False Positive", "Undecided", "Unspecified", "Major", "Moderate", "Minor"));
+        when(cimInstance.getConfigurationService()).thenReturn(configurationService);
+        when(cimInstance.getMetadataLookups()).thenReturn(new MetadataLookups(configurationService, WebServiceExecutors.getExecutor()));
+
+        DefectService fullService = mock(DefectService.class);
+        when(cimInstance.getDefectService()).thenReturn(fullService);
+        when(fullService.getMergedDefectsForStreams(anyListOf(StreamIdDataObj.class), any(MergedDefectFilterSpecDataObj.class), any(PageSpecDataObj.class), any(SnapshotScopeSpecDataObj.class)))
+            .thenReturn(newPage(1, 2, 3));
+
+        new DefectReader(build, listener, publisher).getLatestDefectsForBuild();
+        ArgumentCaptor<CoverityBuildAction> previousAction = ArgumentCaptor.forClass(CoverityBuildAction.class);
+        verify(build).addAction(previousAction.capture());
+
+        // the next build reads snapshot 13 without comparing it to snapshot 12
+        AbstractBuild<?, ?> nextBuild = mock(AbstractBuild.class);
+        when(nextBuild.getRootDir()).thenReturn(buildDir.newFolder());
+        doReturn(build).when(nextBuild).getPreviousBuild();
+        when(build.getAction(CoverityBuildAction.class)).thenReturn(previousAction.getValue());
+        when(configurationService.getSnapshotsForStream(any(StreamIdDataObj.class), any(SnapshotFilterSpecDataObj.class)))
+            .thenReturn(Arrays.asList(newSnapshotId(12), newSnapshotId(13)));
+        reset(fullService);
+        when(fullService.getMergedDefectsForStreams(anyListOf(StreamIdDataObj.class), any(MergedDefectFilterSpecDataObj.class), any(PageSpecDataObj.class), any(SnapshotScopeSpecDataObj.class)))
+            .thenAnswer(new Answer<MergedDefectsPageDataObj>() {
+                public MergedDefectsPageDataObj answer(InvocationOnMock invocation) {
+                    MergedDefectFilterSpecDataObj filter = (MergedDefectFilterSpecDataObj)invocation.getArguments()[1];
+                    SnapshotScopeSpecDataObj snapshotScope = (SnapshotScopeSpecDataObj)invocation.getArguments()[3];
+                    assertEquals(null, filter.getSnapshotComparisonField());
+                    assertEquals(null, snapshotScope.getCompareSelector());
+                    // cid 2 was dismissed since the previous build
+                    return newPage(1, 3);
+                }
+            });
+
+        new DefectReader(nextBuild, listener, publisher).getLatestDefectsForBuild();
+
+        ArgumentCaptor<CoverityBuildAction> buildAction = ArgumentCaptor.forClass(CoverityBuildAction.class);
+        verify(nextBuild).addAction(buildAction.capture());
+        List<CoverityDefect> defects = buildAction.getValue().getDefects();
+        assertEquals(2, defects.size());
+        assertEquals(Long.valueOf(1), defects.get(0).getCid());
+        assertEquals(Long.valueOf(3), defects.get(1).getCid());
+    }
+
+    @Test
+    public void getLatestDefectsForBuild_fetchingIncrementallyAfterUnsortedRecords_fetchesAllDefects() throws IOException, CovRemoteServiceException_Exception {
+        CIMStream cimStream = new CIMStream(cimInstanceName, "test-project", "test-stream", null);
+        CoverityPublisher publisher = new CoverityPublisherBuilder().withCimStream(cimStream).build();
+        publisher.setFetchDefectsIncrementally(true);
+
+        ConfigurationService configurationService = mock(ConfigurationService.class);
+        when(configurationService.getSnapshotsForStream(any(StreamIdDataObj.class), any(SnapshotFilterSpecDataObj.class)))
+            .thenReturn(Arrays.asList(newSnapshotId(13)));
+        when(cimInstance.getConfigurationService()).thenReturn(configurationService);
+
+        // the previous build recorded its defects out of cid order
+        AbstractBuild<?, ?> previousBuild = mock(AbstractBuild.class);
+        when(previousBuild.getRootDir()).thenReturn(buildDir.newFolder());
+        DefectRecordFile.Writer writer = DefectRecordFile.forBuild(previousBuild).openWriter();
+        writer.append(new CoverityDefect(3L, "TEST_CHECKER", null, null));
+        writer.append(new CoverityDefect(1L, "TEST_CHECKER", null, null));
+        writer.close();
+        CoverityBuildAction previousAction = new CoverityBuildAction(previousBuild, "test-project", "test-stream", cimInstanceName, 2,
+            12L, DefectFetcher.getFilterSignature(cimStream));
+        doReturn(previousBuild).when(build).getPreviousBuild();
+        when(previousBuild.getAction(CoverityBuildAction.class)).thenReturn(previousAction);
+
+        DefectService service = mock(DefectService.class);
+        when(cimInstance.getDefectService()).thenReturn(service);
+        when(service.getMergedDefectsForStreams(anyListOf(StreamIdDataObj.class), any(MergedDefectFilterSpecDataObj.class), any(PageSpecDataObj.class), any(SnapshotScopeSpecDataObj.class)))
+            .thenAnswer(new Answer<MergedDefectsPageDataObj>() {
+                public MergedDefectsPageDataObj answer(InvocationOnMock invocation) {
+                    MergedDefectFilterSpecDataObj filter = (MergedDefectFilterSpecDataObj)invocation.getArguments()[1];
+                    if ("Fixed".equals(filter.getSnapshotComparisonField())) {
+                        return newPage();
+                    }
+                    return "New".equals(filter.getSnapshotComparisonField()) ? newPage(4) : newPage(1, 3, 4);
+                }
+            });
+
+        new DefectReader(build, listener, publisher).getLatestDefectsForBuild();
+
+        ArgumentCaptor<CoverityBuildAction> buildAction = ArgumentCaptor.forClass(CoverityBuildAction.class);
+        verify(build).addAction(buildAction.capture());
+        List<CoverityDefect> defects = buildAction.getValue().getDefects();
+        assertEquals(3, defects.size());
+        assertEquals(Long.valueOf(1), defects.get(0).getCid());
+        assertEquals(Long.valueOf(4), defects.get(2).getCid());
+    }
+
+    private static AttributeDefinitionDataObj newAttribute(String... values) {
+        AttributeDefinitionDataObj attribute = new AttributeDefinitionDataObj();
+        for (String name : values) {
+            AttributeValueDataObj value = new AttributeValueDataObj();
+            AttributeValueIdDataObj valueId = new AttributeValueIdDataObj();
+            valueId.setName(name);
+            value.setAttributeValueId(valueId);
+            attribute.getConfigurableValues().add(value);
+        }
+        return attribute;
+    }
+
+    @Test
+    public void getLatestSnapshotId_looksUpRecentSnapshotsOnly() throws Exception {
+        final List<SnapshotFilterSpecDataObj> filterSpecs = new ArrayList<>();
+        ConfigurationService configurationService = mock(ConfigurationService.class);
+        when(configurationService.getSnapshotsForStream(any(StreamIdDataObj.class), any(SnapshotFilterSpecDataObj.class)))
+            .thenAnswer(new Answer<List<SnapshotIdDataObj>>() {
+                public List<SnapshotIdDataObj> answer(InvocationOnMock invocation) throws Throwable {
+                    filterSpecs.add((SnapshotFilterSpecDataObj) invocation.getArguments()[1]);
+                    // no snapshot on the last day, so the lookup is widened
+                    return filterSpecs.size() == 1 ? new ArrayList<SnapshotIdDataObj>() : Arrays.asList(newSnapshotId(7), newSnapshotId(9));
+                }
+            });
+        when(cimInstance.getConfigurationService()).thenReturn(configurationService);
+
+        CIMStream cimStream = new CIMStream(cimInstanceName, "test-project", "test-stream", null);
+        DefectFetcher fetcher = new DefectFetcher(cimInstance, cimStream, consoleLogger.getPrintStream());
+
+        long now = System.currentTimeMillis();
+        assertEquals(Long.valueOf(9), fetcher.getLatestSnapshotId());
+        assertEquals(2, filterSpecs.size());
+        long day = TimeUnit.DAYS.toMillis(1);
+        long lookupDays = DefectFetcher.SNAPSHOT_LOOKUP_DAYS;
+        assertEquals(now - day, filterSpecs.get(0).getStartDate().toGregorianCalendar().getTimeInMillis(), 60000);
+        assertEquals(now - lookupDays * day, filterSpecs.get(1).getStartDate().toGregorianCalendar().getTimeInMillis(), 2 * 60 * 60 * 1000);
+    }
+
+    private static SnapshotIdDataObj newSnapshotId(long id) {
+        SnapshotIdDataObj snapshotId = new SnapshotIdDataObj();
+        snapshotId.setId(id);
+        return snapshotId;
+    }
+
+    private static MergedDefectsPageDataObj newPage(long... cids) {
+        MergedDefectsPageDataObj page = new MergedDefectsPageDataObj();
+        page.setTotalNumberOfRecords(cids.length);
+        for (long cid : cids) {
+            MergedDefectDataObj defect = new MergedDefectDataObj();
+            defect.setCid(cid);
+            defect.setCheckerName("TEST_CHECKER");
+            page.getMergedDefects().add(defect);
+        }
+        return page;
+    }
+
     @Test
     public void getLatestDefectsForBuild_withMatchingDefectFilters_setsBuildResultAsFailed() throws ParseException, DatatypeConfigurationException, IOException, CovRemoteServiceException_Exception {
         // set initial state as success (result can only get worse)
@@ -211,6 +508,128 @@ public class DefectReaderTest {
             "[Coverity] Found 3 defects matching all filters");
     }
 
+    @Test
+    public void getLatestDefectsForBuild_countingDefectsOnly_setsBuildResultAndFetchesDefectsWhenDisplayed() throws ParseException, DatatypeConfigurationException, IOException, CovRemoteServiceException_Exception {
+        when(build.getResult()).thenReturn(Result.SUCCESS);
+
+        CIMStream cimStream = new CIMStream(cimInstanceName, "test-project", "test-stream", getMatchingDefectFilters());
+        CoverityPublisher publisher = new CoverityPublisherBuilder().withCimStream(cimStream).withFailBuild(true).build();
+        publisher.setCountDefectsOnly(true);
+
+        ConfigurationService configurationService = mock(ConfigurationService.class);
+        when(configurationService.getSnapshotsForStream(any(StreamIdDataObj.class), any(SnapshotFilterSpecDataObj.class)))
+            .thenReturn(Arrays.asList(newSnapshotId(5)));
+        when(cimInstance.getConfigurationService()).thenReturn(configurationService);
+
+        defectService.setupMergedDefects(3750);
+
+        DefectReader reader = new DefectReader(build, listener, publisher);
+
+        reader.getLatestDefectsForBuild();
+
+        // only the count is fetched during the build
+        ArgumentCaptor<CoverityBuildAction> buildAction = ArgumentCaptor.forClass(CoverityBuildAction.class);
+        verify(build).addAction(buildAction.capture());
+        verify(build).setResult(Result.FAILURE);
+        assertEquals(3750, buildAction.getValue().getDefectCount());
+        assertEquals(Long.valueOf(5), buildAction.getValue().getSnapshotId());
+        assertFalse(DefectRecordFile.forBuild(build).exists());
+
+        consoleLogger.verifyMessages(
+            "[Coverity] Fetching defects for stream \"test-stream\"",
+            "[Coverity] Found 3,750 defects matching all filters");
+
+        // defects are fetched the first time they are displayed
+        when(jenkins.getDescriptorByType(DescriptorImpl.class)).thenReturn(descriptor);
+        assertEquals(3750, buildAction.getValue().getDefects().size());
+        assertTrue(DefectRecordFile.forBuild(build).exists());
+    }
+
+    @Test
+    public void getLatestDefectsForBuild_forCachedSnapshot_readsDefectsWithoutWebServiceCalls() throws ParseException, DatatypeConfigurationException, IOException, CovRemoteServiceException_Exception {
+        when(jenkins.getRootDir()).thenReturn(jenkinsHome.getRoot());
+
+        CIMStream cimStream = new CIMStream(cimInstanceName, "test-project", "test-stream", getMatchingDefectFilters());
+        CoverityPublisher publisher = new CoverityPublisherBuilder().withCimStream(cimStream).build();
+
+        ConfigurationService configurationService = mock(ConfigurationService.class);
+        when(configurationService.getSnapshotsForStream(any(StreamIdDataObj.class), any(SnapshotFilterSpecDataObj.class)))
+            .thenReturn(Arrays.asList(newSnapshotId(20)));
+        when(configurationService.getAttribute(any(AttributeDefinitionIdDataObj.class)))
+            .thenReturn(newAttribute("Unclassified", "Bug", "Undecided", "Fix Required", "Unspecified", "Major", "Moderate", "Minor"));
+        when(cimInstance.getConfigurationService()).thenReturn(configurationService);
+        when(cimInstance.getMetadataLookups()).thenReturn(new MetadataLookups(configurationService, WebServiceExecutors.getExecutor()));
+
+        defectService.setupMergedDefects(1200);
+
+        new DefectReader(build, listener, publisher).getLatestDefectsForBuild();
+
+        // another build (for example from another job) reads the same snapshot with the same filters
+        AbstractBuild<?, ?> otherBuild = mock(AbstractBuild.class);
+        when(otherBuild.getRootDir()).thenReturn(buildDir.newFolder());
+        DefectService unusedDefectService = mock(DefectService.class);
+        when(cimInstance.getDefectService()).thenReturn(unusedDefectService);
+
+        new DefectReader(otherBuild, listener, publisher).getLatestDefectsForBuild();
+
+        ArgumentCaptor<CoverityBuildAction> buildAction = ArgumentCaptor.forClass(CoverityBuildAction.class);
+        verify(otherBuild).addAction(buildAction.capture());
+        List<CoverityDefect> defects = buildAction.getValue().getDefects();
+        assertEquals(1200, defects.size());
+        assertEquals(Long.valueOf(1199), defects.get(1199).getCid());
+        verifyZeroInteractions(unusedDefectService);
+
+        consoleLogger.verifyMessages(
+            "[Coverity] Fetching defects for stream \"test-stream\"",
+            "[Coverity] Fetching defects for stream \"test-stream\" (fetched 1,000 of 1,200)",
+            "[Coverity] Found 1,200 defects matching all filters",
+            "[Coverity] Fetching defects for stream \"test-stream\"",
+            "[Coverity] Using cached defects of snapshot 20",
+            "[Coverity] Found 1,200 defects matching all filters");
+    }
+
+    @Test
+    public void getLatestDefectsForBuild_withFailedPage_continuesAfterLastFetchedDefect() throws ParseException, DatatypeConfigurationException, IOException, CovRemoteServiceException_Exception {
+        CIMStream cimStream = new CIMStream(cimInstanceName, "test-project", "test-stream", getMatchingDefectFilters());
+        CoverityPublisher publisher = new CoverityPublisherBuilder().withCimStream(cimStream).build();
+
+        // the connection is reset once while fetching the third page
+        TestDefectService flakyDefectService = new TestDefectService(defectService.getUrl()) {
+            private boolean failed;
+
+            @Override
+            public MergedDefectsPageDataObj getMergedDefectsForStreams(List<StreamIdDataObj> streamIds, MergedDefectFilterSpecDataObj filterSpec, PageSpecDataObj pageSpec, SnapshotScopeSpecDataObj snapshotScope) throws CovRemoteServiceException_Exception {
+                assertEquals("cid", pageSpec.getSortField());
+                if (!failed && pageSpec.getStartIndex() == 2000) {
+                    failed = true;
+                    throw new WebServiceException("Connection reset");
+                }
+                return super.getMergedDefectsForStreams(streamIds, filterSpec, pageSpec, snapshotScope);
+            }
+        };
+        flakyDefectService.setupMergedDefects(3500);
+        when(cimInstance.getDefectService()).thenReturn(flakyDefectService);
+
+        new DefectReader(build, listener, publisher).getLatestDefectsForBuild();
+
+        ArgumentCaptor<CoverityBuildAction> buildAction = ArgumentCaptor.forClass(CoverityBuildAction.class);
+        verify(build).addAction(buildAction.capture());
+        List<CoverityDefect> defects = buildAction.getValue().getDefects();
+        assertEquals(3500, defects.size());
+        for (int i = 0; i < defects.size(); i++) {
+            assertEquals(Long.valueOf(i), defects.get(i).getCid());
+        }
+        assertFalse(new File(buildDir.getRoot(), DefectRecordFile.FILE_NAME + ".checkpoint").exists());
+
+        consoleLogger.verifyMessages(
+            "[Coverity] Fetching defects for stream \"test-stream\"",
+            "[Coverity] Fetching defects for stream \"test-stream\" (fetched 1,000 of 3,500)",
+            "[Coverity] Fetching defects for stream \"test-stream\" (fetched 2,000 of 3,500)",
+            "[Coverity] Fetching defects failed (Connection reset), continuing after 2,000 defects (attempt 2 of 3)",
+            "[Coverity] Fetching defects for stream \"test-stream\" (fetched 3,000 of 3,500)",
+            "[Coverity] Found 3,500 defects matching all filters");
+    }
+
     @Test
     public void getLatestDefectsForBuild_skipsFetchingDefects() throws Descriptor.FormException, ParseException, DatatypeConfigurationException, IOException, CovRemoteServiceException_Exception {
         CoverityPublisher publisher = new CoverityPublisherBuilder().withSkipFetchingDefects(true).build();
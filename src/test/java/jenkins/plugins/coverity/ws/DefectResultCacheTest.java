@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import jenkins.plugins.coverity.CoverityDefect;
+import jenkins.plugins.coverity.DefectRecordFile;
+
+public class DefectResultCacheTest {
+    private static final String SIGNATURE = "cim-instance\ntest-stream\nfilters";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private DefectRecordFile newRecords(long... cids) throws IOException {
+        DefectRecordFile records = new DefectRecordFile(folder.newFile());
+        DefectRecordFile.Writer writer = records.openWriter();
+        for (long cid : cids) {
+            writer.append(new CoverityDefect(cid, "TEST_CHECKER", null, null));
+        }
+        writer.close();
+        return records;
+    }
+
+    private static File getFile(DefectResultCache.Entry entry) {
+        File file = entry.getRecords().getFile();
+        entry.close();
+        return file;
+    }
+
+    @Test
+    public void get_returnsCachedDefects() throws IOException {
+        DefectResultCache cache = new DefectResultCache(folder.newFolder());
+        assertNull(cache.get(SIGNATURE, 10, false));
+
+        cache.put(SIGNATURE, 10, newRecords(1, 2, 3));
+
+        DefectResultCache.Entry entry = cache.get(SIGNATURE, 10, false);
+        assertEquals(3, entry.getRecords().readAll().size());
+        entry.close();
+        assertNull(cache.get(SIGNATURE, 11, false));
+        assertNull(cache.get(SIGNATURE + "\nother", 10, false));
+    }
+
+    @Test
+    public void get_filteredByTriage_doesNotReturnOldDefects() throws IOException {
+        DefectResultCache cache = new DefectResultCache(folder.newFolder());
+        cache.put(SIGNATURE, 10, newRecords(1, 2, 3));
+        assertNotNull(getFile(cache.get(SIGNATURE, 10, true)));
+
+        // triage may have changed since the defects were fetched, the snapshot alone still matches
+        File file = getFile(cache.get(SIGNATURE, 10, false));
+        assertTrue(file.setLastModified(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1)));
+
+        assertNull(cache.get(SIGNATURE, 10, true));
+        assertNotNull(getFile(cache.get(SIGNATURE, 10, false)));
+    }
+
+    @Test
+    public void put_aboveMaxEntries_keepsDefectsBeingRead() throws IOException {
+        DefectResultCache cache = new DefectResultCache(folder.newFolder(), 1);
+        cache.put(SIGNATURE, 10, newRecords(1, 2, 3));
+        DefectResultCache.Entry entry = cache.get(SIGNATURE, 10, false);
+        setLastUse(entry.getRecords().getFile(), TimeUnit.HOURS.toMillis(1));
+
+        // snapshot 10 is the least recently used, but another build is still reading it
+        cache.put(SIGNATURE, 11, newRecords(1, 2));
+        assertEquals(3, entry.getRecords().readAll().size());
+        File snapshot11 = getFile(cache.get(SIGNATURE, 11, false));
+        setLastUse(snapshot11, TimeUnit.MINUTES.toMillis(1));
+
+        entry.close();
+        setLastUse(entry.getRecords().getFile(), TimeUnit.HOURS.toMillis(1));
+        cache.put(SIGNATURE, 12, newRecords(1));
+        assertFalse(entry.getRecords().exists());
+        assertFalse(snapshot11.exists());
+        assertNotNull(getFile(cache.get(SIGNATURE, 12, false)));
+    }
+
+    private static void setLastUse(File file, long age) throws IOException {
+        FileTime time = FileTime.fromMillis(System.currentTimeMillis() - age);
+        Files.getFileAttributeView(file.toPath(), BasicFileAttributeView.class).setTimes(time, time, null);
+    }
+}
@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBElement;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+
+import org.junit.Test;
+
+import com.coverity.ws.v9.GetMergedDefectsForStreamsResponse;
+import com.coverity.ws.v9.MergedDefectsPageDataObj;
+import com.coverity.ws.v9.PageSpecDataObj;
+import com.coverity.ws.v9.StreamIdDataObj;
+
+import jenkins.plugins.coverity.CoverityDefect;
+import jenkins.plugins.coverity.ws.TestWebServiceFactory.TestDefectService;
+
+public class MergedDefectsPageDecoderTest {
+
+    /**
+     * Marshals a page of test defects the same way the web service response is serialized
+     */
+    static byte[] marshalPage(MergedDefectsPageDataObj page) throws Exception {
+        GetMergedDefectsForStreamsResponse response = new GetMergedDefectsForStreamsResponse();
+        response.setReturn(page);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JAXBContext.newInstance(GetMergedDefectsForStreamsResponse.class).createMarshaller().marshal(
+            new JAXBElement<>(new QName(WebServiceFactory.COVERITY_V9_NAMESPACE, "getMergedDefectsForStreamsResponse"),
+                GetMergedDefectsForStreamsResponse.class, response),
+            out);
+        return out.toByteArray();
+    }
+
+    static MergedDefectsPageDataObj getTestPage(int defectCount, int pageSize) throws Exception {
+        TestDefectService defectService = new TestDefectService(new URL("http://localhost:8080/"));
+        defectService.setupMergedDefects(defectCount);
+
+        PageSpecDataObj pageSpec = new PageSpecDataObj();
+        pageSpec.setPageSize(pageSize);
+        pageSpec.setStartIndex(0);
+        return defectService.getMergedDefectsForStreams(new ArrayList<StreamIdDataObj>(), null, pageSpec, null);
+    }
+
+    @Test
+    public void decode_readsSameDefectsAsJaxb() throws Exception {
+        MergedDefectsPageDataObj page = getTestPage(25, 10);
+
+        DefectPage decoded = MergedDefectsPageDecoder.decode(
+            XMLInputFactory.newInstance().createXMLStreamReader(new ByteArrayInputStream(marshalPage(page))));
+
+        assertEquals(25, decoded.getTotalNumberOfRecords());
+        List<CoverityDefect> expected = JaxbDefectPageSource.toCoverityDefects(page.getMergedDefects());
+        assertEquals(expected.size(), decoded.getDefects().size());
+        for (int i = 0; i < expected.size(); i++) {
+            CoverityDefect defect = decoded.getDefects().get(i);
+            assertEquals(expected.get(i).getCid(), defect.getCid());
+            assertEquals(expected.get(i).getCheckerName(), defect.getCheckerName());
+            assertEquals(expected.get(i).getFunctionDisplayName(), defect.getFunctionDisplayName());
+            assertEquals(expected.get(i).getFilePathname(), defect.getFilePathname());
+        }
+    }
+
+    @Test
+    public void decode_ignoresNestedAndNilElements() throws Exception {
+        String xml = "<ns2:getMergedDefectsForStreamsResponse xmlns:ns2=\"http://ws.coverity.com/v9\""
+            + " xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"><return>"
+            + "<mergedDefectIds><cid>99</cid></mergedDefectIds>"
+            + "<mergedDefects xsi:nil=\"true\"/>"
+            + "<mergedDefects><checkerName>NULL_RETURNS</checkerName><cid>7</cid>"
+            + "<defectStateAttributeValues><attributeDefinitionId><name>cid</name></attributeDefinitionId></defectStateAttributeValues>"
+            + "<filePathname>/src/a.c</filePathname></mergedDefects>"
+            + "<totalNumberOfRecords>1</totalNumberOfRecords>"
+            + "</return></ns2:getMergedDefectsForStreamsResponse>";
+
+        DefectPage decoded = MergedDefectsPageDecoder.decode(
+            XMLInputFactory.newInstance().createXMLStreamReader(new StringReader(xml)));
+
+        assertEquals(1, decoded.getTotalNumberOfRecords());
+        assertEquals(1, decoded.getDefects().size());
+        CoverityDefect defect = decoded.getDefects().get(0);
+        assertEquals(Long.valueOf(7), defect.getCid());
+        assertEquals("NULL_RETURNS", defect.getCheckerName());
+        assertEquals(null, defect.getFunctionDisplayName());
+        assertEquals("/src/a.c", defect.getFilePathname());
+    }
+}
@@ -0,0 +1,175 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.namespace.QName;
+import javax.xml.soap.SOAPMessage;
+import javax.xml.ws.handler.MessageContext;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.coverity.ws.v9.ConfigurationService;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import jenkins.plugins.coverity.CIMInstance;
+import jenkins.plugins.coverity.ws.PrecomputedSecurityHeaderHandlerTest.TestMessageContext;
+import jenkins.plugins.coverity.ws.WebServiceMetrics.OperationMetrics;
+
+public class MetricsHandlerTest {
+    private static final String SERVER = "metrics-test-host:8080";
+
+    private final MetricsHandler handler = new MetricsHandler(SERVER);
+
+    @Before
+    public void setup() {
+        WebServiceMetrics.reset();
+    }
+
+    private TestMessageContext send() throws Exception {
+        SOAPMessage request = PrecomputedSecurityHeaderHandlerTest.newMessage();
+        TestMessageContext context = new TestMessageContext(request, true);
+        context.put(MessageContext.WSDL_OPERATION, new QName(WebServiceFactory.COVERITY_V9_NAMESPACE, "getVersion"));
+        handler.handleMessage(context);
+        return context;
+    }
+
+    private void receive(TestMessageContext context) throws Exception {
+        context.put(MessageContext.MESSAGE_OUTBOUND_PROPERTY, false);
+        context.setMessage(PrecomputedSecurityHeaderHandlerTest.newMessage());
+    }
+
+    @Test
+    public void handleMessage_records_successful_call() throws Exception {
+        TestMessageContext context = send();
+        receive(context);
+        handler.handleMessage(context);
+        handler.close(context);
+
+        OperationMetrics metrics = WebServiceMetrics.getMetrics().get(SERVER).get("getVersion");
+        Assert.assertEquals(1, metrics.getCalls());
+        Assert.assertEquals(0, metrics.getErrors());
+    }
+
+    @Test
+    public void handleMessage_does_not_read_messages() throws Exception {
+        TestMessageContext context = new TestMessageContext(null, true) {
+            @Override
+            public SOAPMessage getMessage() {
+                // reading a message as SAAJ would materialize the request and prevent streaming the response
+                throw new AssertionError("message was read");
+            }
+        };
+        context.put(MessageContext.WSDL_OPERATION, new QName(WebServiceFactory.COVERITY_V9_NAMESPACE, "getVersion"));
+        handler.handleMessage(context);
+        context.put(MessageContext.MESSAGE_OUTBOUND_PROPERTY, false);
+        handler.handleMessage(context);
+
+        Assert.assertEquals(1, WebServiceMetrics.getMetrics().get(SERVER).get("getVersion").getCalls());
+    }
+
+    @Test
+    public void handleMessage_uses_operation_from_request_context() throws Exception {
+        TestMessageContext context = new TestMessageContext(null, true);
+        context.put(MetricsHandler.OPERATION_PROPERTY, "getMergedDefectsForStreams");
+        handler.handleMessage(context);
+        handler.close(context);
+
+        Assert.assertEquals(1, WebServiceMetrics.getMetrics().get(SERVER).get("getMergedDefectsForStreams").getCalls());
+    }
+
+    @Test
+    public void port_of_factory_records_operation_name() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext(WebServiceFactory.CONFIGURATION_SERVICE_V9_ENDPOINT, new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                byte[] buffer = new byte[8192];
+                while (exchange.getRequestBody().read(buffer) >= 0) {
+                    // the request is not looked at
+                }
+                byte[] response = ("<S:Envelope xmlns:S=\"http://schemas.xmlsoap.org/soap/envelope/\"><S:Body>"
+                    + "<ns2:getVersionResponse xmlns:ns2=\"" + WebServiceFactory.COVERITY_V9_NAMESPACE + "\">"
+                    + "<return><externalVersion>2017.07</externalVersion></return>"
+                    + "</ns2:getVersionResponse></S:Body></S:Envelope>").getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/xml; charset=utf-8");
+                exchange.sendResponseHeaders(200, response.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(response);
+                out.close();
+            }
+        });
+        server.start();
+
+        try {
+            int port = server.getAddress().getPort();
+            CIMInstance cimInstance = new CIMInstance("test", "localhost", port, "test-user", "password", false, 0);
+            ConfigurationService configurationService = new WebServiceFactory().createConfigurationService(cimInstance);
+
+            Assert.assertEquals("2017.07", configurationService.getVersion().getExternalVersion());
+
+            OperationMetrics metrics = WebServiceMetrics.getMetrics().get("localhost:" + port).get("getVersion");
+            Assert.assertEquals(1, metrics.getCalls());
+            Assert.assertEquals(0, metrics.getErrors());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void handleFault_records_error() throws Exception {
+        TestMessageContext context = send();
+        receive(context);
+        handler.handleFault(context);
+        handler.close(context);
+
+        OperationMetrics metrics = WebServiceMetrics.getMetrics().get(SERVER).get("getVersion");
+        Assert.assertEquals(1, metrics.getCalls());
+        Assert.assertEquals(1, metrics.getErrors());
+    }
+
+    @Test
+    public void close_records_call_without_response_as_error() throws Exception {
+        TestMessageContext context = send();
+        handler.close(context);
+
+        OperationMetrics metrics = WebServiceMetrics.getMetrics().get(SERVER).get("getVersion");
+        Assert.assertEquals(1, metrics.getCalls());
+        Assert.assertEquals(1, metrics.getErrors());
+    }
+
+    @Test
+    public void operationMetrics_latency_histogram() {
+        OperationMetrics metrics = new OperationMetrics();
+        for (long latency : Arrays.asList(5L, 5L, 40L, 200L, 60000L)) {
+            metrics.record(TimeUnit.MILLISECONDS.toNanos(latency), false);
+        }
+
+        long[] histogram = metrics.getLatencyHistogram();
+        Assert.assertEquals(2, histogram[0]);
+        Assert.assertEquals(1, histogram[2]);
+        Assert.assertEquals(1, histogram[4]);
+        Assert.assertEquals(1, histogram[WebServiceMetrics.LATENCY_BUCKETS_MILLIS.length]);
+        Assert.assertEquals(10, metrics.getLatencyPercentileMillis(40));
+        Assert.assertEquals(250, metrics.getLatencyPercentileMillis(80));
+        Assert.assertEquals(-1, metrics.getLatencyPercentileMillis(99));
+        Assert.assertEquals(12050, metrics.getAverageLatencyMillis());
+    }
+}
@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class NameIndexTest {
+    private final NameIndex index = new NameIndex(Arrays.asList("web-server", "Alpha", "backend", "Web-Client", "alphabet", "mobile-web"));
+
+    @Test
+    public void getNames_sortsIgnoringCase() {
+        assertEquals(Arrays.asList("Alpha", "alphabet", "backend", "mobile-web", "Web-Client", "web-server"), index.getNames());
+        assertEquals(6, index.size());
+    }
+
+    @Test
+    public void contains_ignoresCase() {
+        assertTrue(index.contains("Alpha"));
+        assertTrue(index.contains("ALPHA"));
+        assertTrue(index.contains("web-client"));
+        assertFalse(index.contains("alph"));
+        assertFalse(index.contains(""));
+        assertFalse(index.contains(null));
+        assertFalse(NameIndex.EMPTY.contains("Alpha"));
+    }
+
+    @Test
+    public void search_returnsPrefixMatchesBeforeSubstringMatches() {
+        NameIndex.Page page = index.search("WEB", 0, 10);
+
+        assertEquals(Arrays.asList("Web-Client", "web-server", "mobile-web"), page.getItems());
+        assertFalse(page.hasMore());
+    }
+
+    @Test
+    public void search_withoutQueryReturnsAllNames() {
+        assertEquals(index.getNames(), index.search(null, 0, 10).getItems());
+        assertEquals(index.getNames(), index.search("", 0, 10).getItems());
+    }
+
+    @Test
+    public void search_withoutMatchesReturnsEmptyPage() {
+        NameIndex.Page page = index.search("nothing", 0, 10);
+
+        assertEquals(Collections.<String>emptyList(), page.getItems());
+        assertFalse(page.hasMore());
+        assertFalse(NameIndex.EMPTY.search("a", 0, 10).hasMore());
+    }
+
+    @Test
+    public void search_pagesThroughAllMatches() {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            names.add(String.format("stream-%02d", i));
+            names.add(String.format("other-stream-%02d", i));
+        }
+        NameIndex large = new NameIndex(names);
+
+        List<String> found = new ArrayList<>();
+        NameIndex.Page page;
+        do {
+            page = large.search("stream", found.size(), 7);
+            assertTrue(page.getItems().size() <= 7);
+            found.addAll(page.getItems());
+        } while (page.hasMore());
+
+        assertEquals(50, found.size());
+        assertEquals("stream-00", found.get(0));
+        assertEquals("stream-24", found.get(24));
+        assertEquals("other-stream-00", found.get(25));
+        assertEquals("other-stream-24", found.get(49));
+    }
+
+    @Test
+    public void search_lastFullPageHasNoMore() {
+        NameIndex.Page page = index.search("alpha", 0, 2);
+
+        assertEquals(Arrays.asList("Alpha", "alphabet"), page.getItems());
+        assertFalse(page.hasMore());
+        assertTrue(index.search("alpha", 0, 1).hasMore());
+    }
+}
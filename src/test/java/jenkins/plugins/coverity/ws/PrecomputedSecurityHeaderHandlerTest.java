@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import java.util.HashMap;
+import java.util.Set;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.namespace.QName;
+import javax.xml.soap.MessageFactory;
+import javax.xml.soap.SOAPConstants;
+import javax.xml.soap.SOAPException;
+import javax.xml.soap.SOAPHeader;
+import javax.xml.soap.SOAPMessage;
+import javax.xml.ws.handler.MessageContext;
+import javax.xml.ws.handler.soap.SOAPMessageContext;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+public class PrecomputedSecurityHeaderHandlerTest {
+    private static final String WSSE = ClientAuthenticationHandlerWSS.WSS_AUTH_URI;
+
+    @Test
+    public void handleMessage_adds_security_header_to_outbound_message() throws Exception {
+        TestMessageContext context = new TestMessageContext(newMessage(), true);
+
+        new PrecomputedSecurityHeaderHandler("test-user", "p<a\"ss").handleMessage(context);
+
+        SOAPHeader header = context.getMessage().getSOAPHeader();
+        Element security = getSecurityHeader(header);
+        Assert.assertEquals("1", security.getAttributeNS(SOAPConstants.URI_NS_SOAP_1_1_ENVELOPE, "mustUnderstand"));
+        Assert.assertEquals("test-user", getText(security, "Username"));
+        Assert.assertEquals("p<a\"ss", getText(security, "Password"));
+        Assert.assertEquals(PrecomputedSecurityHeaderHandler.PASSWORD_TEXT_TYPE,
+            ((Element) security.getElementsByTagNameNS(WSSE, "Password").item(0)).getAttribute("Type"));
+    }
+
+    @Test
+    public void handleMessage_reuses_header_for_each_message() throws Exception {
+        PrecomputedSecurityHeaderHandler handler = new PrecomputedSecurityHeaderHandler("test-user", "password");
+        TestMessageContext context = new TestMessageContext(newMessage(), true);
+        TestMessageContext context2 = new TestMessageContext(newMessage(), true);
+
+        handler.handleMessage(context);
+        handler.handleMessage(context2);
+
+        Assert.assertEquals(1, context.getMessage().getSOAPHeader().getElementsByTagNameNS(WSSE, "Security").getLength());
+        Assert.assertEquals("test-user", getText(getSecurityHeader(context2.getMessage().getSOAPHeader()), "Username"));
+    }
+
+    @Test
+    public void handleMessage_ignores_inbound_message() throws Exception {
+        TestMessageContext context = new TestMessageContext(newMessage(), false);
+
+        new PrecomputedSecurityHeaderHandler("test-user", "password").handleMessage(context);
+
+        Assert.assertEquals(0, context.getMessage().getSOAPHeader().getElementsByTagNameNS(WSSE, "Security").getLength());
+    }
+
+    @Test
+    public void handleMessage_matches_xwss_username_token() throws Exception {
+        TestMessageContext xwssContext = new TestMessageContext(newMessage(), true);
+        TestMessageContext context = new TestMessageContext(newMessage(), true);
+
+        new ClientAuthenticationHandlerWSS("test-user", "password").handleMessage(xwssContext);
+        new PrecomputedSecurityHeaderHandler("test-user", "password").handleMessage(context);
+
+        Element xwssSecurity = getSecurityHeader(xwssContext.getMessage().getSOAPHeader());
+        Element security = getSecurityHeader(context.getMessage().getSOAPHeader());
+        Assert.assertEquals(getText(xwssSecurity, "Username"), getText(security, "Username"));
+        Assert.assertEquals(getText(xwssSecurity, "Password"), getText(security, "Password"));
+        Assert.assertEquals(((Element) xwssSecurity.getElementsByTagNameNS(WSSE, "Password").item(0)).getAttribute("Type"),
+            ((Element) security.getElementsByTagNameNS(WSSE, "Password").item(0)).getAttribute("Type"));
+    }
+
+    static SOAPMessage newMessage() throws SOAPException {
+        SOAPMessage message = MessageFactory.newInstance().createMessage();
+        message.getSOAPBody().addChildElement(new QName(WebServiceFactory.COVERITY_V9_NAMESPACE, "getVersion", "ws"));
+        message.saveChanges();
+        return message;
+    }
+
+    private static Element getSecurityHeader(SOAPHeader header) {
+        NodeList securityHeaders = header.getElementsByTagNameNS(WSSE, "Security");
+        Assert.assertEquals(1, securityHeaders.getLength());
+        return (Element) securityHeaders.item(0);
+    }
+
+    private static String getText(Element security, String localName) {
+        return security.getElementsByTagNameNS(WSSE, localName).item(0).getTextContent();
+    }
+
+    /**
+     * Minimal message context for calling SOAP handlers outside of a JAX-WS runtime
+     */
+    static class TestMessageContext extends HashMap<String, Object> implements SOAPMessageContext {
+        private SOAPMessage message;
+
+        TestMessageContext(SOAPMessage message, boolean outbound) {
+            this.message = message;
+            put(MessageContext.MESSAGE_OUTBOUND_PROPERTY, outbound);
+        }
+
+        public SOAPMessage getMessage() {
+            return message;
+        }
+
+        public void setMessage(SOAPMessage message) {
+            this.message = message;
+        }
+
+        public Object[] getHeaders(QName header, JAXBContext context, boolean allRoles) {
+            throw new UnsupportedOperationException();
+        }
+
+        public Set<String> getRoles() {
+            throw new UnsupportedOperationException();
+        }
+
+        public void setScope(String name, Scope scope) {
+        }
+
+        public Scope getScope(String name) {
+            return Scope.HANDLER;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import jenkins.plugins.coverity.CIMInstance;
+
+public class RateLimiterTest {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void bucket_allowsBurstThenSpacesRequests() {
+        RateLimiter.Bucket bucket = new RateLimiter.Bucket();
+        bucket.setRate(2, SECOND);
+
+        Assert.assertEquals(0, bucket.reserve(SECOND));
+        Assert.assertEquals(0, bucket.reserve(SECOND));
+        Assert.assertEquals(SECOND / 2, bucket.reserve(SECOND));
+        // waiting requests queue up in order
+        Assert.assertEquals(SECOND, bucket.reserve(SECOND));
+    }
+
+    @Test
+    public void bucket_refillsOverTimeUpToCapacity() {
+        RateLimiter.Bucket bucket = new RateLimiter.Bucket();
+        bucket.setRate(2, SECOND);
+        bucket.reserve(SECOND);
+        bucket.reserve(SECOND);
+
+        Assert.assertEquals(0, bucket.reserve(SECOND + SECOND / 2));
+        Assert.assertTrue(bucket.reserve(SECOND + SECOND / 2) > 0);
+
+        // a long idle period does not allow more than one second's worth of requests
+        long later = 100 * SECOND;
+        Assert.assertEquals(0, bucket.reserve(later));
+        Assert.assertEquals(0, bucket.reserve(later));
+        Assert.assertTrue(bucket.reserve(later) > 0);
+    }
+
+    @Test
+    public void bucket_withoutRateIsUnlimited() {
+        RateLimiter.Bucket bucket = new RateLimiter.Bucket();
+        bucket.setRate(0, SECOND);
+
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertEquals(0, bucket.reserve(SECOND));
+        }
+    }
+
+    @Test
+    public void bucket_isFullWhenLimitIsSwitchedOn() {
+        RateLimiter.Bucket bucket = new RateLimiter.Bucket();
+        bucket.setRate(0, SECOND);
+        bucket.reserve(SECOND);
+        bucket.setRate(1, 2 * SECOND);
+
+        Assert.assertEquals(0, bucket.reserve(2 * SECOND));
+        Assert.assertEquals(SECOND, bucket.reserve(2 * SECOND));
+    }
+
+    @Test
+    public void lanes_shareTheRateOfTheServer() throws InterruptedException {
+        RateLimiter limiter = new RateLimiter(2);
+
+        Assert.assertEquals(0, limiter.acquire(RateLimiter.Lane.INTERACTIVE));
+        Assert.assertEquals(0, limiter.acquire(RateLimiter.Lane.INTERACTIVE));
+        // the build lane has tokens of its own left, but the server's budget is used up
+        Assert.assertTrue(limiter.acquire(RateLimiter.Lane.BUILD) > 0);
+
+        Assert.assertEquals(2, limiter.getStatistics(RateLimiter.Lane.INTERACTIVE).getRequests());
+        Assert.assertEquals(1, limiter.getStatistics(RateLimiter.Lane.BUILD).getDelayedRequests());
+    }
+
+    @Test
+    public void buildLane_leavesShareForInteractiveRequests() throws InterruptedException {
+        RateLimiter limiter = new RateLimiter(10);
+        int buildBurst = (int) (10 * RateLimiter.Lane.BUILD.getMaxShare());
+        for (int i = 0; i < buildBurst; i++) {
+            Assert.assertEquals(0, limiter.acquire(RateLimiter.Lane.BUILD));
+        }
+
+        // builds have used their share, interactive requests still go through right away
+        Assert.assertEquals(0, limiter.acquire(RateLimiter.Lane.INTERACTIVE));
+        Assert.assertTrue(limiter.acquire(RateLimiter.Lane.BUILD) > 0);
+    }
+
+    @Test
+    public void configure_appliesLowestLimitOfInstancesOnSameServer() {
+        CIMInstance fast = new CIMInstance("fast", "rate-test-host", 8080, "user", "password", false, 0);
+        fast.setMaxRequestsPerSecond(5);
+        CIMInstance slow = new CIMInstance("slow", "rate-test-host", 8080, "other-user", "password", false, 0);
+        slow.setMaxRequestsPerSecond(2);
+        CIMInstance unlimited = new CIMInstance("unlimited", "rate-test-host", 8080, "user", "password", false, 0);
+
+        RateLimiter.configure(Arrays.asList(fast, slow, unlimited));
+        Assert.assertEquals(2, RateLimiter.get("rate-test-host:8080").getRequestsPerSecond(), 0);
+
+        // a server which is no longer configured is not limited anymore
+        RateLimiter.configure(Collections.<CIMInstance>emptyList());
+        Assert.assertEquals(0, RateLimiter.get("rate-test-host:8080").getRequestsPerSecond(), 0);
+    }
+
+    @Test
+    public void acquire_recordsWaitTime() throws InterruptedException {
+        RateLimiter limiter = new RateLimiter(20);
+        for (int i = 0; i < 22; i++) {
+            limiter.acquire(RateLimiter.Lane.BUILD);
+        }
+
+        RateLimiter.LaneStatistics statistics = limiter.getStatistics(RateLimiter.Lane.BUILD);
+        Assert.assertEquals(22, statistics.getRequests());
+        Assert.assertTrue(statistics.getDelayedRequests() > 0);
+        Assert.assertTrue(statistics.getTotalWaitMillis() > 0);
+        Assert.assertTrue(statistics.getMaxWaitMillis() <= statistics.getTotalWaitMillis());
+    }
+
+    @Test
+    public void currentLane_defaultsToInteractiveOutsideOfBuilds() {
+        Assert.assertEquals(RateLimiter.Lane.INTERACTIVE, RateLimiter.getCurrentLane());
+
+        RateLimiter.Lane previous = RateLimiter.setCurrentLane(RateLimiter.Lane.BUILD);
+        try {
+            Assert.assertNull(previous);
+            Assert.assertEquals(RateLimiter.Lane.BUILD, RateLimiter.getCurrentLane());
+        } finally {
+            RateLimiter.setCurrentLane(previous);
+        }
+        Assert.assertEquals(RateLimiter.Lane.INTERACTIVE, RateLimiter.getCurrentLane());
+    }
+}
@@ -0,0 +1,200 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+
+import javax.xml.soap.SOAPFault;
+import javax.xml.ws.WebServiceException;
+import javax.xml.ws.soap.SOAPFaultException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.coverity.ws.v9.ConfigurationService;
+import com.coverity.ws.v9.CovRemoteServiceException_Exception;
+import com.coverity.ws.v9.ProjectIdDataObj;
+import com.coverity.ws.v9.ProjectSpecDataObj;
+import com.coverity.ws.v9.VersionDataObj;
+
+public class ResilientWebServicesTest {
+    private ConfigurationService configurationService;
+    private CircuitBreaker circuitBreaker;
+    private WebServiceCallStatistics statistics;
+    private ConfigurationService resilientService;
+
+    @Before
+    public void setup() {
+        configurationService = mock(ConfigurationService.class);
+        circuitBreaker = new CircuitBreaker(5, 60000);
+        statistics = new WebServiceCallStatistics();
+        resilientService = ResilientWebServices.wrap(ConfigurationService.class, configurationService, "test-host:8080",
+            circuitBreaker, statistics, 3, 1);
+    }
+
+    @Test
+    public void readOperation_withConnectionFailures_isRetried() throws CovRemoteServiceException_Exception {
+        VersionDataObj version = new VersionDataObj();
+        when(configurationService.getVersion())
+            .thenThrow(new WebServiceException("Connection refused"))
+            .thenThrow(new WebServiceException("Connection refused"))
+            .thenReturn(version);
+
+        assertSame(version, resilientService.getVersion());
+
+        verify(configurationService, times(3)).getVersion();
+        assertEquals(3, statistics.getCalls());
+        assertEquals(2, statistics.getRetries());
+        assertEquals(2, statistics.getFailures());
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    public void readOperation_withServiceFault_isNotRetried() throws CovRemoteServiceException_Exception {
+        SOAPFaultException fault = new SOAPFaultException(mock(SOAPFault.class));
+        when(configurationService.getVersion()).thenThrow(fault);
+
+        try {
+            resilientService.getVersion();
+            fail("expected SOAPFaultException");
+        } catch (SOAPFaultException e) {
+            assertSame(fault, e);
+        }
+
+        verify(configurationService, times(1)).getVersion();
+        assertEquals(0, statistics.getRetries());
+    }
+
+    @Test
+    public void writeOperation_withConnectionFailure_isNotRetried() throws CovRemoteServiceException_Exception {
+        doThrow(new WebServiceException("Connection reset")).when(configurationService).createProject(any(ProjectSpecDataObj.class));
+
+        try {
+            resilientService.createProject(new ProjectSpecDataObj());
+            fail("expected WebServiceException");
+        } catch (WebServiceException e) {
+            assertEquals("Connection reset", e.getMessage());
+        }
+
+        verify(configurationService, times(1)).createProject(any(ProjectSpecDataObj.class));
+    }
+
+    @Test
+    public void openCircuit_failsFastWithoutCallingService() throws CovRemoteServiceException_Exception {
+        when(configurationService.getVersion()).thenThrow(new WebServiceException("Connection refused"));
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                resilientService.getVersion();
+                fail("expected WebServiceException");
+            } catch (WebServiceException e) {
+                // expected
+            }
+        }
+
+        // five failed attempts opened the circuit, the sixth attempt is rejected
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        verify(configurationService, times(5)).getVersion();
+        assertEquals(1, statistics.getRejected());
+
+        try {
+            resilientService.deleteProject(new ProjectIdDataObj());
+            fail("expected WebServiceException");
+        } catch (WebServiceException e) {
+            // expected
+        }
+        verify(configurationService, times(0)).deleteProject(any(ProjectIdDataObj.class));
+    }
+
+    @Test
+    public void readOperation_withoutPooledPort_isNotCountedAsFailure() throws CovRemoteServiceException_Exception {
+        when(configurationService.getVersion()).thenThrow(new ServicePortPool.PortUnavailableException("Timed out", null));
+
+        for (int i = 0; i < 10; i++) {
+            try {
+                resilientService.getVersion();
+                fail("expected PortUnavailableException");
+            } catch (ServicePortPool.PortUnavailableException e) {
+                // expected
+            }
+        }
+
+        // the calls never reached the server, so they are not retried and do not open the circuit
+        verify(configurationService, times(10)).getVersion();
+        assertEquals(0, statistics.getRetries());
+        assertEquals(0, statistics.getFailures());
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    public void interruptedRateLimitWait_isNotCountedAsFailure_andHoldsNoPort() throws Exception {
+        ServicePortPool<ConfigurationService> pool = new ServicePortPool<>(new ServicePortPool.PortFactory<ConfigurationService>() {
+            public ConfigurationService create() throws IOException {
+                return configurationService;
+            }
+        }, 1, 1000);
+        ConfigurationService pooledService = ResilientWebServices.wrap(ConfigurationService.class,
+            pool.newClient(ConfigurationService.class), "rate-limited-host:8080", circuitBreaker, statistics, 3, 1);
+        RateLimiter limiter = RateLimiter.get("rate-limited-host:8080");
+        limiter.setRequestsPerSecond(0.001);
+        try {
+            // take the only token, so the next request has to wait
+            limiter.acquire(RateLimiter.getCurrentLane());
+
+            Thread.currentThread().interrupt();
+            try {
+                pooledService.getVersion();
+                fail("expected WebServiceException");
+            } catch (WebServiceException e) {
+                assertTrue(e.getCause() instanceof InterruptedException);
+            }
+            assertTrue(Thread.interrupted());
+        } finally {
+            limiter.setRequestsPerSecond(0);
+        }
+
+        // the request waited for the rate limit without a port and was never sent
+        assertEquals(0, pool.getSize());
+        verify(configurationService, times(0)).getVersion();
+        assertEquals(0, statistics.getFailures());
+        assertEquals(0, statistics.getRetries());
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    public void withoutRetries_makesSingleAttemptThroughSameCircuitBreaker() throws CovRemoteServiceException_Exception {
+        when(configurationService.getVersion()).thenThrow(new WebServiceException("Connection refused"));
+        ConfigurationService singleAttempt = ResilientWebServices.withoutRetries(ConfigurationService.class, resilientService);
+
+        try {
+            singleAttempt.getVersion();
+            fail("expected WebServiceException");
+        } catch (WebServiceException e) {
+            assertEquals("Connection refused", e.getMessage());
+        }
+
+        verify(configurationService, times(1)).getVersion();
+        assertEquals(1, statistics.getFailures());
+        assertEquals(0, statistics.getRetries());
+        assertSame(configurationService, ResilientWebServices.withoutRetries(ConfigurationService.class, configurationService));
+    }
+}
@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import java.lang.management.ManagementFactory;
+
+import javax.xml.ws.handler.soap.SOAPHandler;
+import javax.xml.ws.handler.soap.SOAPMessageContext;
+
+import jenkins.plugins.coverity.ws.PrecomputedSecurityHeaderHandlerTest.TestMessageContext;
+
+/**
+ * Rough timing of {@link ClientAuthenticationHandlerWSS} and {@link PrecomputedSecurityHeaderHandler}, printing the
+ * time and allocated bytes per message of several rounds. This is a plain loop in a single JVM, not a JMH benchmark:
+ * there are no forks, and JIT effects are only reduced by the warm-up rounds. It is good for spotting differences of
+ * several times, such as XWSS building its security context for every message, not for small ones. Not run as part of
+ * the unit tests, run the main method from the test classpath:
+ * <pre>
+ * java -cp target/classes:target/test-classes:&lt;test classpath&gt; jenkins.plugins.coverity.ws.SecurityHeaderHandlerBenchmark [iterations] [rounds]
+ * </pre>
+ */
+public class SecurityHeaderHandlerBenchmark {
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        SOAPHandler<SOAPMessageContext> xwss = new ClientAuthenticationHandlerWSS("test-user", "password");
+        SOAPHandler<SOAPMessageContext> precomputed = new PrecomputedSecurityHeaderHandler("test-user", "password");
+
+        // warm up both paths before measuring
+        for (int i = 0; i < 2; i++) {
+            run("XWSS (warm-up)", xwss, iterations);
+            run("Precomputed (warm-up)", precomputed, iterations);
+        }
+        // alternate the handlers, so a change of the machine load affects both the same way
+        for (int i = 0; i < rounds; i++) {
+            run("XWSS", xwss, iterations);
+            run("Precomputed", precomputed, iterations);
+        }
+    }
+
+    private static void run(String name, SOAPHandler<SOAPMessageContext> handler, int iterations) throws Exception {
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        // messages are created up front so only the handler is measured
+        TestMessageContext[] contexts = new TestMessageContext[iterations];
+        for (int i = 0; i < iterations; i++) {
+            contexts[i] = new TestMessageContext(PrecomputedSecurityHeaderHandlerTest.newMessage(), true);
+        }
+
+        long allocatedBefore = threadBean.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (TestMessageContext context : contexts) {
+            handler.handleMessage(context);
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        System.out.println(String.format("%-22s %8.1f us/message %10d bytes/message", name,
+            elapsed / 1e3 / iterations, allocated / iterations));
+    }
+}
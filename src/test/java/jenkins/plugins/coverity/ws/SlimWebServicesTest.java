@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Map;
+
+import javax.xml.ws.BindingProvider;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.coverity.ws.v9.ConfigurationService;
+import com.coverity.ws.v9.DefectService;
+import com.coverity.ws.v9.ProjectFilterSpecDataObj;
+
+import jenkins.plugins.coverity.ws.TestWebServiceFactory.TestConfigurationService;
+
+public class SlimWebServicesTest {
+    @Test
+    public void slim_interfaces_match_full_interfaces() {
+        assertMatches(DefectService.class, SlimDefectService.class);
+        assertMatches(ConfigurationService.class, SlimConfigurationService.class);
+    }
+
+    private void assertMatches(Class<?> serviceInterface, Class<?> slimInterface) {
+        Map<Method, Method> mapping = SlimWebServices.getMethodMapping(serviceInterface, slimInterface);
+
+        Assert.assertEquals(slimInterface.getMethods().length, mapping.size());
+        for (Map.Entry<Method, Method> entry : mapping.entrySet()) {
+            Method method = entry.getKey();
+            Method slimMethod = entry.getValue();
+            Assert.assertEquals(method.getGenericReturnType(), slimMethod.getGenericReturnType());
+            Assert.assertTrue(Arrays.equals(method.getExceptionTypes(), slimMethod.getExceptionTypes()));
+            Assert.assertEquals(Arrays.toString(method.getAnnotations()), Arrays.toString(slimMethod.getAnnotations()));
+            Assert.assertEquals(Arrays.deepToString(method.getParameterAnnotations()), Arrays.deepToString(slimMethod.getParameterAnnotations()));
+        }
+    }
+
+    @Test
+    public void adapt_calls_slim_port() throws Exception {
+        TestConfigurationService port = new TestConfigurationService(new URL("http://cim-host:8080/"));
+        port.setupProjects("project", 1, "stream", 2);
+        SlimConfigurationService slimPort = toSlimPort(port);
+
+        ConfigurationService configurationService = SlimWebServices.adapt(ConfigurationService.class, SlimConfigurationService.class, slimPort);
+
+        Assert.assertEquals(1, configurationService.getProjects(new ProjectFilterSpecDataObj()).size());
+        Assert.assertFalse(configurationService instanceof BindingProvider);
+    }
+
+    @Test
+    public void adapt_supports_last_update_times() throws Exception {
+        TestConfigurationService port = new TestConfigurationService(new URL("http://cim-host:8080/"));
+        SlimConfigurationService slimPort = toSlimPort(port);
+
+        ConfigurationService configurationService = SlimWebServices.adapt(ConfigurationService.class, SlimConfigurationService.class, slimPort);
+
+        Assert.assertEquals(port.getLastUpdateTimes().size(), configurationService.getLastUpdateTimes().size());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void adapt_rejects_operations_missing_from_slim_interface() throws Exception {
+        SlimConfigurationService slimPort = toSlimPort(new TestConfigurationService(new URL("http://cim-host:8080/")));
+
+        ConfigurationService configurationService = SlimWebServices.adapt(ConfigurationService.class, SlimConfigurationService.class, slimPort);
+
+        configurationService.getMessageOfTheDay();
+    }
+
+    /**
+     * Exposes the operations of a full test service through the slim interface
+     */
+    private static SlimConfigurationService toSlimPort(final ConfigurationService service) {
+        return (SlimConfigurationService) Proxy.newProxyInstance(SlimConfigurationService.class.getClassLoader(),
+            new Class<?>[] { SlimConfigurationService.class }, new InvocationHandler() {
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    try {
+                        return ConfigurationService.class.getMethod(method.getName(), method.getParameterTypes()).invoke(service, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                }
+            });
+    }
+}
@@ -10,6 +10,7 @@
  *******************************************************************************/
 package jenkins.plugins.coverity.ws;
 
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.text.ParseException;
@@ -121,11 +122,41 @@ public class TestWebServiceFactory extends WebServiceFactory {
         return new TestConfigurationService(
             new URL(getURL(cimInstance), CONFIGURATION_SERVICE_V9_WSDL));
     }
+
+    /**
+     * The test services hold the data set up by each test, so instead of a client borrowing a port for each call, the
+     * test service of the connection is returned itself
+     */
+    @Override
+    public DefectService getDefectService(CIMInstance cimInstance) throws IOException {
+        return getTestService(getDefectServicePool(cimInstance));
+    }
+
+    @Override
+    public ConfigurationService getConfigurationService(CIMInstance cimInstance) throws IOException {
+        return getTestService(getConfigurationServicePool(cimInstance));
+    }
+
+    /**
+     * Returns the most recently released port of the pool, which is the same one as long as tests do not borrow ports
+     * concurrently
+     */
+    private static <T> T getTestService(ServicePortPool<T> pool) throws IOException {
+        try {
+            T port = pool.borrow();
+            pool.release(port);
+            return port;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
     
     public static class TestConfigurationService implements ConfigurationService {
         private URL url;
         private List<SnapshotIdDataObj> snapshotList;
         private List<ProjectDataObj> projects;
+        private int projectUpdates;
 
         public TestConfigurationService(URL url) {
 
@@ -159,6 +190,7 @@ public class TestWebServiceFactory extends WebServiceFactory {
 
                 projects.add(projectDataObj);
             }
+            projectUpdates++;
         }
 
         @Override
@@ -313,7 +345,18 @@ public class TestWebServiceFactory extends WebServiceFactory {
 
         @Override
         public List<FeatureUpdateTimeDataObj> getLastUpdateTimes() {
-            throw new NotImplementedException();
+            FeatureUpdateTimeDataObj projectUpdateTime = new FeatureUpdateTimeDataObj();
+            projectUpdateTime.setFeatureName("Projects");
+            GregorianCalendar calendar = new GregorianCalendar();
+            calendar.setTimeInMillis(projectUpdates * 1000L);
+            try {
+                projectUpdateTime.setLastUpdateDate(DatatypeFactory.newInstance().newXMLGregorianCalendar(calendar));
+            } catch (DatatypeConfigurationException e) {
+                throw new IllegalStateException(e);
+            }
+            List<FeatureUpdateTimeDataObj> updateTimes = new ArrayList<>();
+            updateTimes.add(projectUpdateTime);
+            return updateTimes;
         }
 
         @Override
@@ -658,17 +701,23 @@ public class TestWebServiceFactory extends WebServiceFactory {
         public MergedDefectsPageDataObj getMergedDefectsForStreams(List<StreamIdDataObj> streamIds, MergedDefectFilterSpecDataObj filterSpec, PageSpecDataObj pageSpec, SnapshotScopeSpecDataObj snapshotScope) throws CovRemoteServiceException_Exception {
             MergedDefectsPageDataObj mergedDefectsPageDataObj = new MergedDefectsPageDataObj();
 
-            final int totalRecords = mergedDefects.size();
+            // defects are set up in cid order, so a minimum cid skips the first defects
+            int fromIndex = 0;
+            if (filterSpec != null && filterSpec.getMinCid() != null)
+                fromIndex = (int)Math.min(filterSpec.getMinCid(), mergedDefects.size());
+
+            final int totalRecords = mergedDefects.size() - fromIndex;
             mergedDefectsPageDataObj.setTotalNumberOfRecords(totalRecords);
 
-            int toIndex = pageSpec.getStartIndex() + pageSpec.getPageSize();
+            int startIndex = fromIndex + pageSpec.getStartIndex();
+            int toIndex = startIndex + pageSpec.getPageSize();
             if (toIndex > mergedDefects.size())
                 toIndex = mergedDefects.size();
 
-            List<MergedDefectIdDataObj> defectIds = mergedDefectIds.subList(pageSpec.getStartIndex(), toIndex);
+            List<MergedDefectIdDataObj> defectIds = mergedDefectIds.subList(startIndex, toIndex);
             mergedDefectsPageDataObj.getMergedDefectIds().addAll(defectIds);
 
-            List<MergedDefectDataObj> defects = mergedDefects.subList(pageSpec.getStartIndex(), toIndex);
+            List<MergedDefectDataObj> defects = mergedDefects.subList(startIndex, toIndex);
             mergedDefectsPageDataObj.getMergedDefects().addAll(defects);
 
             return mergedDefectsPageDataObj;
@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.ws.WebServiceException;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.coverity.ws.v9.AttributeDefinitionDataObj;
+import com.coverity.ws.v9.AttributeDefinitionIdDataObj;
+import com.coverity.ws.v9.ConfigurationService;
+import com.coverity.ws.v9.CovRemoteServiceException_Exception;
+import com.google.common.util.concurrent.ListenableFuture;
+
+public class WebServiceExecutorsTest {
+    @Test
+    public void get_returnsResult() throws Exception {
+        ListenableFuture<String> future = WebServiceExecutors.submit(new Callable<String>() {
+            public String call() {
+                return "result";
+            }
+        });
+
+        Assert.assertEquals("result", WebServiceExecutors.get(future));
+    }
+
+    @Test(expected = CovRemoteServiceException_Exception.class)
+    public void get_rethrowsServiceException() throws Exception {
+        WebServiceExecutors.get(WebServiceExecutors.submit(new Callable<String>() {
+            public String call() throws Exception {
+                throw new CovRemoteServiceException_Exception("failed", null);
+            }
+        }));
+    }
+
+    @Test(expected = IOException.class)
+    public void get_rethrowsIOException() throws Exception {
+        WebServiceExecutors.get(WebServiceExecutors.submit(new Callable<String>() {
+            public String call() throws Exception {
+                throw new IOException("failed");
+            }
+        }));
+    }
+
+    @Test(expected = WebServiceException.class)
+    public void get_rethrowsRuntimeException() throws Exception {
+        WebServiceExecutors.get(WebServiceExecutors.submit(new Callable<String>() {
+            public String call() {
+                throw new WebServiceException("failed");
+            }
+        }));
+    }
+
+    @Test
+    public void submit_keepsLaneOfCaller() throws Exception {
+        Callable<RateLimiter.Lane> currentLane = new Callable<RateLimiter.Lane>() {
+            public RateLimiter.Lane call() {
+                return RateLimiter.getCurrentLane();
+            }
+        };
+
+        RateLimiter.Lane previous = RateLimiter.setCurrentLane(RateLimiter.Lane.BUILD);
+        try {
+            Assert.assertEquals(RateLimiter.Lane.BUILD, WebServiceExecutors.get(WebServiceExecutors.submit(currentLane)));
+        } finally {
+            RateLimiter.setCurrentLane(previous);
+        }
+        Assert.assertEquals(RateLimiter.Lane.BACKGROUND, WebServiceExecutors.get(WebServiceExecutors.submitInBackground(currentLane)));
+    }
+
+    @Test
+    public void metadataLookups_runConcurrently() throws Exception {
+        final CountDownLatch started = new CountDownLatch(2);
+        ConfigurationService service = mock(ConfigurationService.class);
+        Answer<Object> waitForOtherCall = new Answer<Object>() {
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                started.countDown();
+                // only completes if both calls are in progress at the same time
+                if (!started.await(10, TimeUnit.SECONDS)) {
+                    throw new IOException("calls did not run concurrently");
+                }
+                return invocation.getMethod().getName().equals("getCheckerNames")
+                    ? Arrays.asList("NULL_RETURNS", "FORWARD_NULL")
+                    : new AttributeDefinitionDataObj();
+            }
+        };
+        when(service.getCheckerNames()).thenAnswer(waitForOtherCall);
+        when(service.getAttribute(any(AttributeDefinitionIdDataObj.class))).thenAnswer(waitForOtherCall);
+
+        MetadataLookups lookups = new MetadataLookups(service, WebServiceExecutors.getExecutor());
+        ListenableFuture<List<String>> checkers = lookups.getCheckerNames();
+        ListenableFuture<AttributeDefinitionDataObj> attribute = lookups.getAttribute(new AttributeDefinitionIdDataObj());
+
+        Assert.assertEquals(Arrays.asList("NULL_RETURNS", "FORWARD_NULL"), WebServiceExecutors.get(checkers));
+        Assert.assertNotNull(WebServiceExecutors.get(attribute));
+    }
+}
@@ -12,12 +12,35 @@ package jenkins.plugins.coverity.ws;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.transform.Source;
+import javax.xml.ws.BindingProvider;
+import javax.xml.ws.Dispatch;
+import javax.xml.ws.handler.MessageContext;
 
 import org.junit.Assert;
 import org.junit.Test;
 
 import com.coverity.ws.v9.ConfigurationService;
+import com.coverity.ws.v9.CovRemoteServiceException_Exception;
 import com.coverity.ws.v9.DefectService;
+import com.coverity.ws.v9.MergedDefectFilterSpecDataObj;
+import com.coverity.ws.v9.MergedDefectsPageDataObj;
+import com.coverity.ws.v9.PageSpecDataObj;
+import com.coverity.ws.v9.SnapshotScopeSpecDataObj;
+import com.coverity.ws.v9.StreamIdDataObj;
 
 import jenkins.plugins.coverity.CIMInstance;
 import jenkins.plugins.coverity.ws.TestWebServiceFactory.TestConfigurationService;
@@ -109,4 +132,193 @@ public class WebServiceFactoryTest {
         Assert.assertTrue(result2 instanceof TestConfigurationService);
         Assert.assertEquals(getExpectedUrl(cimInstance, WebServiceFactory.CONFIGURATION_SERVICE_V9_WSDL), ((TestConfigurationService)result2).getUrl());
     }
+
+    @Test
+    public void getDefectService_borrows_port_for_each_call() throws Exception {
+        WebServiceFactory factory = new WebServiceFactory() {
+            @Override
+            protected DefectService createDefectService(CIMInstance cimInstance) throws MalformedURLException {
+                return new TestDefectService(new URL(getURL(cimInstance), DEFECT_SERVICE_V9_WSDL));
+            }
+        };
+
+        DefectService client = factory.getDefectService(cimInstance);
+        ServicePortPool<DefectService> pool = factory.getDefectServicePool(cimInstance);
+
+        // the client is shared by all callers of the connection, so it never hands out a port itself
+        Assert.assertFalse(client instanceof TestDefectService);
+        Assert.assertSame(client, factory.getDefectService(new CIMInstance("test copy", "cim-host", 8080, "test-user", "password", false, 0)));
+        Assert.assertEquals(0, pool.getSize());
+
+        client.getMergedDefectsForStreams(null, null, new PageSpecDataObj(), null);
+        Assert.assertEquals(1, pool.getSize());
+        DefectService borrowed = pool.borrow();
+        Assert.assertTrue(borrowed instanceof TestDefectService);
+        pool.release(borrowed);
+    }
+
+    @Test
+    public void getDefectService_concurrent_calls_never_share_a_port() throws Exception {
+        final int threads = 40;
+        final int callsPerThread = 25;
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicInteger maxActive = new AtomicInteger();
+        final List<String> errors = Collections.synchronizedList(new ArrayList<String>());
+
+        WebServiceFactory factory = new WebServiceFactory() {
+            @Override
+            protected DefectService createDefectService(CIMInstance cimInstance) throws MalformedURLException {
+                return new TestDefectService(new URL(getURL(cimInstance), DEFECT_SERVICE_V9_WSDL)) {
+                    private final AtomicBoolean inUse = new AtomicBoolean();
+
+                    @Override
+                    public MergedDefectsPageDataObj getMergedDefectsForStreams(List<StreamIdDataObj> streamIds, MergedDefectFilterSpecDataObj filterSpec, PageSpecDataObj pageSpec, SnapshotScopeSpecDataObj snapshotScope) throws CovRemoteServiceException_Exception {
+                        if (!inUse.compareAndSet(false, true)) {
+                            errors.add("port used by two threads at once");
+                        }
+                        int current = active.incrementAndGet();
+                        while (maxActive.get() < current && !maxActive.compareAndSet(maxActive.get(), current)) {
+                        }
+                        try {
+                            Thread.sleep(1);
+                            return super.getMergedDefectsForStreams(streamIds, filterSpec, pageSpec, snapshotScope);
+                        } catch (InterruptedException e) {
+                            throw new IllegalStateException(e);
+                        } finally {
+                            active.decrementAndGet();
+                            inUse.set(false);
+                        }
+                    }
+                };
+            }
+        };
+
+        final DefectService defectService = factory.getDefectService(cimInstance);
+        final PageSpecDataObj pageSpec = new PageSpecDataObj();
+        pageSpec.setPageSize(10);
+        final CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(new Callable<Integer>() {
+                    public Integer call() throws Exception {
+                        start.await();
+                        int calls = 0;
+                        for (int j = 0; j < callsPerThread; j++) {
+                            defectService.getMergedDefectsForStreams(null, null, pageSpec, null);
+                            calls++;
+                        }
+                        return calls;
+                    }
+                }));
+            }
+            start.countDown();
+
+            int calls = 0;
+            for (Future<Integer> result : results) {
+                calls += result.get(60, TimeUnit.SECONDS);
+            }
+
+            Assert.assertEquals(threads * callsPerThread, calls);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Assert.assertEquals(Collections.<String>emptyList(), errors);
+        Assert.assertEquals(0, active.get());
+        Assert.assertTrue("calls should run in parallel", maxActive.get() > 1);
+        Assert.assertTrue(maxActive.get() <= WebServiceFactory.MAX_PORTS_PER_INSTANCE);
+        Assert.assertTrue(factory.getDefectServicePool(cimInstance).getSize() <= WebServiceFactory.MAX_PORTS_PER_INSTANCE);
+    }
+
+    @Test
+    public void getDefectService_shares_port_for_same_connection() throws IOException {
+        WebServiceFactory factory = new TestWebServiceFactory();
+
+        DefectService result = factory.getDefectService(cimInstance);
+        DefectService result2 = factory.getDefectService(new CIMInstance("test copy", "cim-host", 8080, "test-user", "password", false, 0));
+
+        Assert.assertSame(result, result2);
+        Assert.assertEquals(1, factory.getConnections().size());
+    }
+
+    @Test
+    public void getDefectService_returns_new_instance_for_new_credentials() throws IOException {
+        WebServiceFactory factory = new TestWebServiceFactory();
+
+        DefectService result = factory.getDefectService(cimInstance);
+        DefectService result2 = factory.getDefectService(new CIMInstance("test", "cim-host", 8080, "test-user", "new-password", false, 0));
+
+        Assert.assertNotSame(result, result2);
+    }
+
+    @Test
+    public void retainAll_releases_ports_of_removed_instances() throws IOException {
+        WebServiceFactory factory = new TestWebServiceFactory();
+        CIMInstance otherInstance = new CIMInstance("test instance 2", "other-cim-host", 8443, "test-user", "password", true, 0);
+
+        DefectService result = factory.getDefectService(cimInstance);
+        factory.getDefectService(otherInstance);
+        factory.retainAll(Collections.singletonList(cimInstance));
+
+        Assert.assertEquals(Collections.singletonList(ConnectionKey.of(cimInstance)), factory.getConnections());
+        Assert.assertSame(result, factory.getDefectService(cimInstance));
+
+        factory.invalidate(cimInstance);
+        Assert.assertNotSame(result, factory.getDefectService(cimInstance));
+    }
+
+    @Test
+    public void createDefectService_uses_endpoint_of_instance_without_wsdl() throws IOException {
+        WebServiceFactory factory = new WebServiceFactory();
+
+        DefectService result = factory.createDefectService(cimInstance);
+        DefectService result2 = factory.createDefectService(new CIMInstance("test instance 2", "other-cim-host", 8443, "test-user", "password", true, 0));
+
+        Assert.assertEquals("http://cim-host:8080" + WebServiceFactory.DEFECT_SERVICE_V9_ENDPOINT,
+            ((BindingProvider)result).getRequestContext().get(BindingProvider.ENDPOINT_ADDRESS_PROPERTY));
+        Assert.assertEquals("https://other-cim-host:8443" + WebServiceFactory.DEFECT_SERVICE_V9_ENDPOINT,
+            ((BindingProvider)result2).getRequestContext().get(BindingProvider.ENDPOINT_ADDRESS_PROPERTY));
+    }
+
+    @Test
+    public void createConfigurationService_uses_endpoint_of_instance_without_wsdl() throws IOException {
+        WebServiceFactory factory = new WebServiceFactory();
+
+        ConfigurationService result = factory.createConfigurationService(cimInstance);
+        Dispatch<Source> dispatch = factory.createDefectServiceDispatch(cimInstance);
+
+        Assert.assertEquals("http://cim-host:8080" + WebServiceFactory.CONFIGURATION_SERVICE_V9_ENDPOINT,
+            ((BindingProvider)result).getRequestContext().get(BindingProvider.ENDPOINT_ADDRESS_PROPERTY));
+        Assert.assertEquals("http://cim-host:8080" + WebServiceFactory.DEFECT_SERVICE_V9_ENDPOINT,
+            dispatch.getRequestContext().get(BindingProvider.ENDPOINT_ADDRESS_PROPERTY));
+    }
+
+    @Test
+    public void createDefectService_requests_gzip_when_compression_enabled() throws IOException {
+        WebServiceFactory factory = new WebServiceFactory();
+        CIMInstance compressedInstance = new CIMInstance("test", "cim-host", 8080, "test-user", "password", false, 0);
+        compressedInstance.setUseCompression(true);
+
+        DefectService result = factory.createDefectService(compressedInstance);
+        Dispatch<Source> dispatch = factory.createDefectServiceDispatch(compressedInstance);
+        DefectService uncompressed = factory.createDefectService(cimInstance);
+
+        Map<?, ?> headers = (Map<?, ?>)((BindingProvider)result).getRequestContext().get(MessageContext.HTTP_REQUEST_HEADERS);
+        Assert.assertEquals(Collections.singletonList("gzip"), headers.get("Accept-Encoding"));
+        headers = (Map<?, ?>)dispatch.getRequestContext().get(MessageContext.HTTP_REQUEST_HEADERS);
+        Assert.assertEquals(Collections.singletonList("gzip"), headers.get("Accept-Encoding"));
+        Assert.assertNull(((BindingProvider)uncompressed).getRequestContext().get(MessageContext.HTTP_REQUEST_HEADERS));
+    }
+
+    @Test
+    public void getDefectService_returns_new_instance_when_compression_changes() throws IOException {
+        WebServiceFactory factory = new TestWebServiceFactory();
+        CIMInstance compressedInstance = new CIMInstance("test", "cim-host", 8080, "test-user", "password", false, 0);
+        compressedInstance.setUseCompression(true);
+
+        Assert.assertNotSame(factory.getDefectService(cimInstance), factory.getDefectService(compressedInstance));
+    }
 }
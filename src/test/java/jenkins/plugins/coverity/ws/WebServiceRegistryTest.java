@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import jenkins.plugins.coverity.CIMInstance;
+
+public class WebServiceRegistryTest {
+    private final ConnectionKey key1 = new ConnectionKey("cim-host", 8080, false, "user", "password");
+    private final ConnectionKey key2 = new ConnectionKey("cim-host", 8443, true, "user", "password");
+    private final ConnectionKey key3 = new ConnectionKey("other-cim-host", 8080, false, "user", "password");
+
+    private long now = 1000;
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private final WebServiceRegistry.Loader<String> loader = new WebServiceRegistry.Loader<String>() {
+        public String load(ConnectionKey key) {
+            return key.toString() + "#" + loads.incrementAndGet();
+        }
+    };
+
+    private WebServiceRegistry<String> newRegistry(int maxEntries, long idleTimeoutMillis) {
+        return new WebServiceRegistry<String>(maxEntries, idleTimeoutMillis) {
+            @Override
+            protected long currentTimeMillis() {
+                return now;
+            }
+        };
+    }
+
+    @Test
+    public void connectionKey_ignores_instance_name_and_host_case() {
+        CIMInstance instance = new CIMInstance("test", "cim-host", 8080, "user", "password", false, 0);
+        CIMInstance renamed = new CIMInstance("renamed", "CIM-Host", 8080, "user", "password", false, 9090);
+
+        Assert.assertEquals(ConnectionKey.of(instance), ConnectionKey.of(renamed));
+        Assert.assertEquals(ConnectionKey.of(instance).hashCode(), ConnectionKey.of(renamed).hashCode());
+    }
+
+    @Test
+    public void connectionKey_differs_by_credentials_and_ssl() {
+        Assert.assertNotEquals(key1, new ConnectionKey("cim-host", 8080, false, "user", "new-password"));
+        Assert.assertNotEquals(key1, new ConnectionKey("cim-host", 8080, false, "other-user", "password"));
+        Assert.assertNotEquals(key1, new ConnectionKey("cim-host", 8080, true, "user", "password"));
+        Assert.assertFalse(key1.toString().contains("password"));
+    }
+
+    @Test
+    public void get_loads_value_once() throws IOException {
+        WebServiceRegistry<String> registry = newRegistry(10, 60000);
+
+        String value = registry.get(key1, loader);
+
+        Assert.assertSame(value, registry.get(key1, loader));
+        Assert.assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void get_evicts_least_recently_used_entry() throws IOException {
+        WebServiceRegistry<String> registry = newRegistry(2, 60000);
+
+        registry.get(key1, loader);
+        registry.get(key2, loader);
+        registry.get(key1, loader);
+        registry.get(key3, loader);
+
+        Assert.assertEquals(Arrays.asList(key1, key3), registry.getKeys());
+        Assert.assertNull(registry.getIfPresent(key2));
+    }
+
+    @Test
+    public void get_evicts_idle_entries() throws IOException {
+        WebServiceRegistry<String> registry = newRegistry(10, 60000);
+
+        registry.get(key1, loader);
+        now += 30000;
+        registry.get(key2, loader);
+        now += 30000;
+
+        Assert.assertNull(registry.getIfPresent(key1));
+        Assert.assertEquals(Collections.singletonList(key2), registry.getKeys());
+    }
+
+    @Test
+    public void retainAll_removes_other_entries() throws IOException {
+        WebServiceRegistry<String> registry = newRegistry(10, 60000);
+
+        registry.get(key1, loader);
+        registry.get(key2, loader);
+        registry.retainAll(Collections.singletonList(key2));
+
+        Assert.assertEquals(Collections.singletonList(key2), registry.getKeys());
+        registry.invalidate(key2);
+        Assert.assertEquals(0, registry.size());
+    }
+}
@@ -0,0 +1,57 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Synopsys, Inc
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Synopsys, Inc - initial implementation and documentation
+ *******************************************************************************/
+package jenkins.plugins.coverity.ws;
+
+import java.net.MalformedURLException;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.coverity.ws.v9.DefectService;
+
+import jenkins.plugins.coverity.CIMInstance;
+
+public class WebServiceWarmUpTest {
+    private final CIMInstance cimInstance = new CIMInstance("test", "cim-host", 8080, "test-user", "password", false, 0);
+    private final CIMInstance otherInstance = new CIMInstance("test instance 2", "other-cim-host", 8443, "test-user", "password", true, 0);
+
+    @Test
+    public void warmUp_creates_ports_of_each_instance() throws Exception {
+        WebServiceFactory factory = new TestWebServiceFactory();
+
+        WebServiceWarmUp.warmUp(factory, Arrays.asList(cimInstance, otherInstance));
+
+        Assert.assertEquals(1, factory.getDefectServicePool(cimInstance).getSize());
+        Assert.assertEquals(1, factory.getConfigurationServicePool(cimInstance).getSize());
+        Assert.assertEquals(1, factory.getDefectServicePool(otherInstance).getSize());
+        Assert.assertEquals(1, factory.getConfigurationServicePool(otherInstance).getSize());
+    }
+
+    @Test
+    public void warmUp_continues_after_failing_instance() throws Exception {
+        WebServiceFactory factory = new TestWebServiceFactory() {
+            @Override
+            protected DefectService createDefectService(CIMInstance cimInstance) throws MalformedURLException {
+                if (cimInstance.getHost().equals("cim-host")) {
+                    throw new MalformedURLException("test failure");
+                }
+                return super.createDefectService(cimInstance);
+            }
+        };
+
+        WebServiceWarmUp.warmUp(factory, Arrays.asList(cimInstance, otherInstance));
+
+        Assert.assertEquals(0, factory.getDefectServicePool(cimInstance).getSize());
+        Assert.assertEquals(1, factory.getDefectServicePool(otherInstance).getSize());
+        Assert.assertEquals(1, factory.getConfigurationServicePool(otherInstance).getSize());
+    }
+}